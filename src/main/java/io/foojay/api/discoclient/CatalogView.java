@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.cache.DistributionIndex;
+import io.foojay.api.discoclient.cache.MajorVersionIndex;
+import io.foojay.api.discoclient.cache.PkgCatalog;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.Platform;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+
+/**
+ * Read only view on one pinned cache generation, all queries of a view see the same catalog even if the
+ * cache is refreshed meanwhile. Views never query the disco api and must be closed to release the generation.
+ */
+public class CatalogView implements AutoCloseable {
+    private final DiscoClient     discoClient;
+    private final CacheGeneration generation;
+    private final AtomicBoolean   closed;
+
+
+    // ******************** Constructors **************************************
+    CatalogView(final DiscoClient discoClient, final CacheGeneration generation) {
+        this.discoClient = discoClient;
+        this.generation  = generation;
+        this.closed      = new AtomicBoolean(false);
+    }
+
+
+    // ******************** Methods *******************************************
+    public CacheGeneration getGeneration() { return generation; }
+
+    /**
+     * @return true if the pinned generation contains the complete catalog, false if it was pinned while the catalog was loading
+     */
+    public boolean isComplete() { return generation.isComplete(); }
+
+    public Queue<Pkg> getAllPackages() {
+        checkOpen();
+        return generation.getAllPkgs();
+    }
+
+    public List<Pkg> getPkgs(final PkgQuery query) {
+        checkOpen();
+        return discoClient.getPkgsFromCache(generation, query);
+    }
+
+    public Map<PkgQuery, List<Pkg>> getPkgs(final Collection<PkgQuery> queries) {
+        checkOpen();
+        return discoClient.getPkgsFromCache(generation, queries);
+    }
+
+    public PkgPage getPkgs(final PkgQuery query, final int offset, final int limit) {
+        checkOpen();
+        return discoClient.getPkgsFromCache(generation, query, offset, limit);
+    }
+
+    public PkgPage getPkgs(final PkgQuery query, final String cursor, final int limit) {
+        checkOpen();
+        return discoClient.getPkgsFromCache(generation, query, cursor, limit);
+    }
+
+    /**
+     * @return lazily evaluated result of the query, only valid while the view is open
+     */
+    public Stream<Pkg> streamPkgs(final PkgQuery query) {
+        checkOpen();
+        final PkgCatalog catalog = generation.getCatalog();
+        return query.compile().stream(generation).mapToObj(catalog::getPkg);
+    }
+
+    public Iterator<Pkg> iteratePkgs(final PkgQuery query) { return streamPkgs(query).iterator(); }
+
+    public PkgFacets getFacets(final PkgQuery query) {
+        checkOpen();
+        return discoClient.getFacetsFromCache(generation, query);
+    }
+
+    public QueryExplain explain(final PkgQuery query) {
+        checkOpen();
+        return query.compile().explain(generation);
+    }
+
+    /**
+     * @return the best package of the pinned generation that is installable on this host, see DiscoClient.resolveBest()
+     */
+    public Pkg resolveBest(final String versionSpec, final ResolvePreferences preferences) { return resolveBest(versionSpec, preferences, Platform.current()); }
+    public Pkg resolveBest(final String versionSpec, final ResolvePreferences preferences, final Platform platform) {
+        checkOpen();
+        return DiscoClient.resolveBest(generation, versionSpec, preferences, platform);
+    }
+
+    public Pkg getPkg(final String pkgId) {
+        checkOpen();
+        return discoClient.getPkgFromCache(generation, pkgId);
+    }
+
+    public MajorVersionIndex getMajorVersionIndex() { return generation.getMajorVersionIndex(); }
+
+    public DistributionIndex getDistributionIndex() { return generation.getDistributionIndex(); }
+
+    @Override public void close() {
+        if (closed.compareAndSet(false, true)) { generation.release(); }
+    }
+
+    private void checkOpen() {
+        if (closed.get()) { throw new IllegalStateException("CatalogView is closed"); }
+    }
+}
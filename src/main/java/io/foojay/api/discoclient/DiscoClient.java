@@ -25,12 +25,28 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import io.foojay.api.discoclient.cache.CacheConfig;
+import io.foojay.api.discoclient.cache.CacheEngine;
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.cache.DistributionIndex;
+import io.foojay.api.discoclient.cache.GenerationChange;
+import io.foojay.api.discoclient.cache.HeapPkgCatalog;
+import io.foojay.api.discoclient.cache.LatestIndex;
+import io.foojay.api.discoclient.cache.MajorVersionIndex;
+import io.foojay.api.discoclient.cache.PkgCatalog;
+import io.foojay.api.discoclient.cache.PlatformView;
+import io.foojay.api.discoclient.cache.QueryResultCache;
+import io.foojay.api.discoclient.cache.ScopeMask;
+import io.foojay.api.discoclient.cache.TtlCache;
+import io.foojay.api.discoclient.cache.VersionIndex;
+import io.foojay.api.discoclient.cache.VersionKey;
 import io.foojay.api.discoclient.event.CacheEvt;
 import io.foojay.api.discoclient.event.DCEvt;
 import io.foojay.api.discoclient.event.DownloadEvt;
 import io.foojay.api.discoclient.event.Evt;
 import io.foojay.api.discoclient.event.EvtObserver;
 import io.foojay.api.discoclient.event.EvtType;
+import io.foojay.api.discoclient.event.PkgChangeEvt;
 import io.foojay.api.discoclient.pkg.Architecture;
 import io.foojay.api.discoclient.pkg.ArchiveType;
 import io.foojay.api.discoclient.pkg.Bitness;
@@ -41,6 +57,7 @@ import io.foojay.api.discoclient.pkg.MajorVersion;
 import io.foojay.api.discoclient.pkg.OperatingSystem;
 import io.foojay.api.discoclient.pkg.PackageType;
 import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.Platform;
 import io.foojay.api.discoclient.pkg.ReleaseStatus;
 import io.foojay.api.discoclient.pkg.Scope;
 import io.foojay.api.discoclient.pkg.SemVer;
@@ -59,19 +76,25 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.net.http.HttpResponse;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -80,45 +103,94 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Predicate;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toSet;
-
-
-public class DiscoClient {
-    private static final Logger                         LOGGER            = LoggerFactory.getLogger(DiscoClient.class);
-    public         final AtomicBoolean                  cacheReady        = new AtomicBoolean(false);
-    private        final Queue<Pkg>                     pkgCache          = new ConcurrentLinkedQueue<>(); // Collections.synchronizedList(new LinkedList<>());
-    private        final Queue<MajorVersion>            majorVersionCache = new ConcurrentLinkedQueue<>(); // Collections.synchronizedList(new LinkedList<>());
-    private        final Map<String, List<EvtObserver>> observers         = new ConcurrentHashMap<>();
-    private        final ScheduledExecutorService       service           = Executors.newScheduledThreadPool(2);
-    private        final Runnable                       updateCache       = () -> {
-        cacheReady.set(false);
-        fireEvt(new CacheEvt(DiscoClient.this, CacheEvt.CACHE_UPDATING));
-        pkgCache.clear();
-        getAllPackagesAsync().thenAccept(r -> {
-            List<Pkg>    tmpList = new LinkedList<>(r);
-            HashSet<Pkg> unique  = new HashSet<>(tmpList);
-            pkgCache.addAll(unique);
-            cacheReady.set(true);
-            fireEvt(new CacheEvt(DiscoClient.this, CacheEvt.CACHE_READY));
-        });
-    };
+
+public class DiscoClient implements AutoCloseable {
+    private static final Logger                                LOGGER       = LoggerFactory.getLogger(DiscoClient.class);
+    private static final Pattern                               VERSION_SPEC = Pattern.compile("^(<=|>=|<|>|=)?\\s*((?:1\\.)?(\\d+(?:\\.\\d+)*).*)$");
+    public         final AtomicBoolean                         cacheReady;
+    private        final CacheEngine                           engine;
+    private        final Consumer<CacheEvt>                    cacheListener;
+    private        final Consumer<GenerationChange>            changeListener;
+    private        final List<StandingQuery>                   standingQueries;
+    private        final AtomicBoolean                         closed       = new AtomicBoolean(false);
+    private        final Map<String, List<EvtObserver>>        observers    = new ConcurrentHashMap<>();
+    private        final QueryResultCache<PkgQuery, List<Pkg>> queryResultCache;
+    private        final QueryResultCache<PkgQuery, PkgFacets> facetCache;
+    private        final TtlCache<String, PkgInfo>             pkgInfoCache;
 
 
     public DiscoClient() {
-        getAllMajorVersionsAsync(true).thenAccept(r -> majorVersionCache.addAll(r));
-        service.scheduleAtFixedRate(updateCache, 1, 3600, TimeUnit.SECONDS);
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> service.shutdownNow()));
+        this(CacheConfig.DEFAULT);
+    }
+    /**
+     * All clients of an api url with equal cache configs share one cache engine, a client with a different config gets an engine of its own.
+     */
+    public DiscoClient(final CacheConfig cacheConfig) {
+        this.engine           = CacheEngine.acquire(getDiscoApiUrl(), cacheConfig, new CacheEngine.Loader() {
+            @Override public CompletableFuture<Queue<Pkg>> loadPkgs() { return fetchAllPackagesAsync(); }
+            @Override public CompletableFuture<Queue<Pkg>> loadPkgs(final Distribution distribution) { return fetchPkgsAsync(distribution); }
+            @Override public CompletableFuture<List<MajorVersion>> loadMajorVersions() { return fetchAllMajorVersionsAsync(true); }
+            @Override public CompletableFuture<Map<Distribution, List<VersionNumber>>> loadVersionsPerDistribution() { return getVersionsPerDistributionAsync(); }
+        });
+        this.cacheReady       = engine.getCacheReady();
+        this.queryResultCache = engine.getQueryResultCache();
+        this.facetCache       = engine.getFacetCache();
+        this.pkgInfoCache     = engine.getPkgInfoCache();
+        this.cacheListener    = evt -> fireEvt(new CacheEvt(DiscoClient.this, evt.getEvtType(), evt.getSlicesLoaded(), evt.getSlicesTotal()));
+        engine.addListener(cacheListener);
+        this.standingQueries  = new CopyOnWriteArrayList<>();
+        this.changeListener   = change -> standingQueries.forEach(standingQuery -> {
+            final PkgChangeEvt evt = standingQuery.apply(DiscoClient.this, change);
+            if (null != evt) { fireEvt(evt); }
+        });
+    }
+
+
+    /**
+     * Returns the configuration of the cache engine, it is shared with all clients of the api url that were created with an equal config.
+     */
+    public CacheConfig getCacheConfig() { return engine.getCacheConfig(); }
+
+    /**
+     * Returns the current cache generation pinned for the caller, its catalog stays readable until the caller
+     * calls release() on it. Use openView() to query one generation and release it by closing the view.
+     */
+    public CacheGeneration getCacheGeneration() { return engine.pinGeneration(); }
+
+    /**
+     * Refreshes the cache immediately, calls while a refresh is running share its result.
+     * @return future that completes with the generation that is served after the refresh
+     */
+    public CompletableFuture<CacheGeneration> refreshNow() { return engine.refreshNow(); }
+
+    /**
+     * Opens a view that answers all its queries from the current cache generation, even if the cache is
+     * refreshed meanwhile. The generation stays in memory until the view is closed.
+     */
+    public CatalogView openView() { return new CatalogView(this, engine.pinGeneration()); }
+
+    /**
+     * Detaches this client from the shared cache engine, the engine is stopped when its last client is closed.
+     */
+    @Override public void close() {
+        if (!closed.compareAndSet(false, true)) { return; }
+        engine.removeListener(cacheListener);
+        engine.removeChangeListener(changeListener);
+        standingQueries.clear();
+        engine.release();
     }
 
 
     public Queue<Pkg> getAllPackages() {
-        if (cacheReady.get()) { return pkgCache; }
+        if (isCacheUsable()) { return engine.getGeneration().getAllPkgs(); }
 
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.PACKAGES_PATH)
@@ -149,19 +221,25 @@ public class DiscoClient {
         return pkgs;
     }
     public CompletableFuture<Queue<Pkg>> getAllPackagesAsync() {
-        if (cacheReady.get()) {
+        if (isCacheUsable()) {
             CompletableFuture<Queue<Pkg>> future = new CompletableFuture<>();
-            future.complete(pkgCache);
+            future.complete(engine.getGeneration().getAllPkgs());
             return future;
         }
+        return fetchAllPackagesAsync();
+    }
+    private static CompletableFuture<Queue<Pkg>> fetchAllPackagesAsync() { return fetchPkgsAsync(null); }
+    private static CompletableFuture<Queue<Pkg>> fetchPkgsAsync(final Distribution distribution) {
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.PACKAGES_PATH)
                                                         .append("?release_status=ea")
                                                         .append("&release_status=ga");
+        if (null != distribution) {
+            queryBuilder.append("&").append(Constants.API_DISTRIBUTION).append("=").append(distribution.getApiString());
+        }
         String query = queryBuilder.toString();
 
         CompletableFuture<Queue<Pkg>> future = Helper.getAsync(query).thenApply(response -> {
-            if (cacheReady.get()) { return pkgCache; }
             Queue<Pkg>  pkgsFound = new ConcurrentLinkedQueue<>();
             Gson        gson      = new Gson();
             JsonElement element   = gson.fromJson(response, JsonElement.class);
@@ -281,7 +359,7 @@ public class DiscoClient {
         String query = queryBuilder.toString();
         if (query.isEmpty()) { return List.of(); }
 
-        if (cacheReady.get()) {
+        if (isCacheUsable(Distribution.NONE == distributionCache ? List.of() : List.of(distributionCache))) {
             return getPkgsFromCache(versionNumber,
                                     Comparison.EQUAL,
                                     Distribution.NONE    == distributionCache    ? new ArrayList<>() : List.of(distributionCache),
@@ -422,7 +500,7 @@ public class DiscoClient {
         String query = queryBuilder.toString();
         if (query.isEmpty()) { return new CompletableFuture<>(); }
 
-        if (cacheReady.get()) {
+        if (isCacheUsable(Distribution.NONE == distributionCache ? List.of() : List.of(distributionCache))) {
             CompletableFuture<List<Pkg>> future = new CompletableFuture<>();
             future.complete(getPkgsFromCache(versionNumber,
                                              Comparison.EQUAL,
@@ -461,6 +539,35 @@ public class DiscoClient {
     }
 
 
+    /**
+     * @return unmodifiable list of the packages that match the query, from the cache if it is usable and from the disco api otherwise
+     */
+    public List<Pkg> getPkgs(final PkgQuery query) {
+        if (isCacheUsable(query.getDistributions())) { return getPkgsFromCache(query); }
+        return toPkgs(query, Helper.get(query.compile().toUrl(getDiscoApiUrl())));
+    }
+    public CompletableFuture<List<Pkg>> getPkgsAsync(final PkgQuery query) {
+        if (isCacheUsable(query.getDistributions())) { return CompletableFuture.completedFuture(getPkgsFromCache(query)); }
+        return Helper.getAsync(query.compile().toUrl(getDiscoApiUrl())).thenApply(bodyText -> toPkgs(query, bodyText));
+    }
+
+    // Parses the packages of a disco api response, a result that the request could not restrict completely is filtered by the plan
+    private List<Pkg> toPkgs(final PkgQuery query, final String bodyText) {
+        final Set<Pkg>    pkgsFound = new LinkedHashSet<>();
+        final Gson        gson      = new Gson();
+        final JsonElement element   = gson.fromJson(bodyText, JsonElement.class);
+        if (element instanceof JsonArray) {
+            final JsonArray jsonArray = element.getAsJsonArray();
+            for (int i = 0; i < jsonArray.size(); i++) {
+                pkgsFound.add(new Pkg(jsonArray.get(i).getAsJsonObject().toString()));
+            }
+        }
+        if (query.compile().isRemoteExact()) { return List.copyOf(pkgsFound); }
+        final CacheGeneration responseGeneration = new CacheGeneration(new HeapPkgCatalog(pkgsFound), engine.getGeneration().getMajorVersions(), Map.of(), Instant.now());
+        return List.copyOf(query.compile().execute(responseGeneration));
+    }
+
+
     public String getPkgsAsJson(final Distribution distribution, final VersionNumber versionNumber, final Latest latest, final OperatingSystem operatingSystem,
                                 final LibCType libcType, final Architecture architecture, final Bitness bitness, final ArchiveType archiveType, final PackageType packageType,
                                 final Boolean javafxBundled, final Boolean directlyDownloadable, final ReleaseStatus releaseStatus, final TermOfSupport termOfSupport, final Scope scope) {
@@ -524,6 +631,9 @@ public class DiscoClient {
 
     public final Queue<MajorVersion> getAllMajorVersions() { return getAllMajorVersions(false); }
     public final Queue<MajorVersion> getAllMajorVersions(final boolean include_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return new ConcurrentLinkedQueue<>(majorVersionIndex.getAll(include_ea)); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.MAJOR_VERSIONS_PATH)
                                                         .append("?ea=")
@@ -545,6 +655,9 @@ public class DiscoClient {
         return majorVersionsFound;
     }
     public final List<MajorVersion> getAllMajorVersions(final Optional<Boolean> maintained, final Optional<Boolean> includingEA, final Optional<Boolean> includingGA) {
+        final List<MajorVersion> majorVersionsFromCache = getMajorVersionsFromCache(maintained, includingEA, includingGA);
+        if (null != majorVersionsFromCache) { return majorVersionsFromCache; }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.MAJOR_VERSIONS_PATH);
         int initialLength = queryBuilder.length();
@@ -580,6 +693,11 @@ public class DiscoClient {
 
     public final CompletableFuture<List<MajorVersion>> getAllMajorVersionsAsync() { return getAllMajorVersionsAsync(false); }
     public final CompletableFuture<List<MajorVersion>> getAllMajorVersionsAsync(final boolean include_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return CompletableFuture.completedFuture(new CopyOnWriteArrayList<>(majorVersionIndex.getAll(include_ea))); }
+        return fetchAllMajorVersionsAsync(include_ea);
+    }
+    private static CompletableFuture<List<MajorVersion>> fetchAllMajorVersionsAsync(final boolean include_ea) {
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.MAJOR_VERSIONS_PATH)
                                                         .append("?ea=")
@@ -600,6 +718,9 @@ public class DiscoClient {
         });
     }
     public final CompletableFuture<List<MajorVersion>> getAllMajorVersionsAsync(final Optional<Boolean> maintained, final Optional<Boolean> includingEA, final Optional<Boolean> includingGA) {
+        final List<MajorVersion> majorVersionsFromCache = getMajorVersionsFromCache(maintained, includingEA, includingGA);
+        if (null != majorVersionsFromCache) { return CompletableFuture.completedFuture(majorVersionsFromCache); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.MAJOR_VERSIONS_PATH);
         int initialLength = queryBuilder.length();
@@ -634,6 +755,9 @@ public class DiscoClient {
 
 
     public final MajorVersion getMajorVersion(final int featureVersion, final boolean include_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return majorVersionIndex.get(featureVersion, include_ea).orElse(null); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.MAJOR_VERSIONS_PATH)
                                                         .append("?include_ea=")
@@ -659,6 +783,9 @@ public class DiscoClient {
         }
     }
     public final CompletableFuture<MajorVersion> getMajorVersionAsync(final int featureVersion, final boolean include_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return CompletableFuture.completedFuture(majorVersionIndex.get(featureVersion, include_ea).orElse(null)); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.MAJOR_VERSIONS_PATH)
                                                         .append("?include_ea=")
@@ -716,6 +843,9 @@ public class DiscoClient {
 
     public final List<MajorVersion> getMaintainedMajorVersions() { return getMaintainedMajorVersions(false); }
     public final List<MajorVersion> getMaintainedMajorVersions(final boolean include_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return new ArrayList<>(majorVersionIndex.getMaintained(include_ea)); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.MAJOR_VERSIONS_PATH)
                                                         .append("?maintained=true&ga=true")
@@ -741,6 +871,9 @@ public class DiscoClient {
 
     public final CompletableFuture<List<MajorVersion>> getMaintainedMajorVersionsAsync() { return getMaintainedMajorVersionsAsync(false); }
     public final CompletableFuture<List<MajorVersion>> getMaintainedMajorVersionsAsync(final boolean include_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return CompletableFuture.completedFuture(new ArrayList<>(majorVersionIndex.getMaintained(include_ea))); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.MAJOR_VERSIONS_PATH)
                                                         .append("?maintained=true&ga=true")
@@ -811,6 +944,9 @@ public class DiscoClient {
 
 
     public final MajorVersion getLatestLts(final boolean including_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return majorVersionIndex.getLatest(TermOfSupport.LTS, including_ea).orElseThrow(); }
+
         Queue<MajorVersion> majorVersions = getAllMajorVersions(including_ea);
         return majorVersions.stream()
                             .filter(majorVersion -> TermOfSupport.LTS == majorVersion.getTermOfSupport())
@@ -818,6 +954,9 @@ public class DiscoClient {
                             .findFirst().get();
     }
     public final CompletableFuture<MajorVersion> getLatestLtsAsync(final boolean including_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return CompletableFuture.completedFuture(majorVersionIndex.getLatest(TermOfSupport.LTS, including_ea).orElseThrow()); }
+
         return getAllMajorVersionsAsync(including_ea).thenApply(majorVersions -> majorVersions.stream()
                                                                                               .filter(majorVersion -> TermOfSupport.LTS == majorVersion.getTermOfSupport())
                                                                                               .filter(majorVersion -> including_ea ? majorVersion.getVersions().size() > 0 : majorVersion.getVersions().size() > 1)
@@ -827,6 +966,9 @@ public class DiscoClient {
 
 
     public final MajorVersion getLatestMts(final boolean including_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return majorVersionIndex.getLatest(TermOfSupport.MTS, including_ea).orElseThrow(); }
+
         Queue<MajorVersion> majorVersions = getAllMajorVersions(including_ea);
         return majorVersions.stream()
                             .filter(majorVersion -> TermOfSupport.MTS == majorVersion.getTermOfSupport())
@@ -834,6 +976,9 @@ public class DiscoClient {
                             .findFirst().get();
     }
     public final CompletableFuture<MajorVersion> getLatestMtsAsync(final boolean including_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return CompletableFuture.completedFuture(majorVersionIndex.getLatest(TermOfSupport.MTS, including_ea).orElseThrow()); }
+
         return getAllMajorVersionsAsync(including_ea).thenApply(majorVersions -> majorVersions.stream()
                                                                                               .filter(majorVersion -> TermOfSupport.MTS == majorVersion.getTermOfSupport())
                                                                                               .filter(majorVersion -> including_ea ? majorVersion.getVersions().size() > 0 : majorVersion.getVersions().size() > 1)
@@ -842,6 +987,9 @@ public class DiscoClient {
 
 
     public final MajorVersion getLatestSts(final boolean including_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return majorVersionIndex.getLatestNonLts(including_ea).orElseThrow(); }
+
         Queue<MajorVersion> majorVersions = getAllMajorVersions(including_ea);
         return majorVersions.stream()
                             .filter(majorVersion -> TermOfSupport.LTS != majorVersion.getTermOfSupport())
@@ -849,6 +997,9 @@ public class DiscoClient {
                             .findFirst().get();
     }
     public final CompletableFuture<MajorVersion> getLatestStsAsync(final boolean including_ea) {
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null != majorVersionIndex) { return CompletableFuture.completedFuture(majorVersionIndex.getLatestNonLts(including_ea).orElseThrow()); }
+
         return getAllMajorVersionsAsync(including_ea).thenApply(majorVersions -> majorVersions.stream()
                                                                                               .filter(majorVersion -> TermOfSupport.LTS != majorVersion.getTermOfSupport())
                                                                                               .filter(majorVersion -> including_ea ? majorVersion.getVersions().size() > 0 : majorVersion.getVersions().size() > 1)
@@ -906,6 +1057,9 @@ public class DiscoClient {
 
 
     public final List<Distribution> getDistributions() {
+        final DistributionIndex distributionIndex = getDistributionIndex();
+        if (null != distributionIndex) { return new ArrayList<>(distributionIndex.getDistributions()); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.DISTRIBUTIONS_PATH);
 
@@ -926,6 +1080,9 @@ public class DiscoClient {
         return distributionsFound;
     }
     public final CompletableFuture<List<Distribution>> getDistributionsAsync() {
+        final DistributionIndex distributionIndex = getDistributionIndex();
+        if (null != distributionIndex) { return CompletableFuture.completedFuture(new ArrayList<>(distributionIndex.getDistributions())); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.DISTRIBUTIONS_PATH);
         String query = queryBuilder.toString();
@@ -947,6 +1104,9 @@ public class DiscoClient {
 
 
     public final List<Distribution> getDistributionsForSemVer(final SemVer semVer) {
+        final DistributionIndex distributionIndex = getDistributionIndex();
+        if (null != distributionIndex) { return distributionIndex.getDistributionsForVersion(VersionKey.of(semVer.getVersionNumber())); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.DISTRIBUTIONS_PATH)
                                                         .append("/versions/")
@@ -969,6 +1129,9 @@ public class DiscoClient {
         return distributionsFound;
     }
     public final CompletableFuture<List<Distribution>> getDistributionsForSemVerAsync(final SemVer semVer) {
+        final DistributionIndex distributionIndex = getDistributionIndex();
+        if (null != distributionIndex) { return CompletableFuture.completedFuture(distributionIndex.getDistributionsForVersion(VersionKey.of(semVer.getVersionNumber()))); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.DISTRIBUTIONS_PATH)
                                                         .append("/versions/")
@@ -993,6 +1156,9 @@ public class DiscoClient {
 
 
     public final List<Distribution> getDistributionsForVersion(final VersionNumber versionNumber) {
+        final DistributionIndex distributionIndex = getDistributionIndex();
+        if (null != distributionIndex) { return distributionIndex.getDistributionsForVersion(VersionKey.of(versionNumber)); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.DISTRIBUTIONS_PATH)
                                                         .append("/versions/")
@@ -1015,6 +1181,9 @@ public class DiscoClient {
         return distributionsFound;
     }
     public final CompletableFuture<List<Distribution>> getDistributionsForVersionAsync(final VersionNumber versionNumber) {
+        final DistributionIndex distributionIndex = getDistributionIndex();
+        if (null != distributionIndex) { return CompletableFuture.completedFuture(distributionIndex.getDistributionsForVersion(VersionKey.of(versionNumber))); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.DISTRIBUTIONS_PATH)
                                                         .append("/versions/")
@@ -1112,13 +1281,38 @@ public class DiscoClient {
 
 
     public PkgInfo getPkgInfo(final String ephemeralId, final SemVer javaVersion) {
+        final TtlCache.Lookup<PkgInfo> cachedPkgInfo = pkgInfoCache.get(ephemeralId);
+        if (cachedPkgInfo.isCached()) { return withJavaVersion(cachedPkgInfo.getValue(), javaVersion); }
+
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.EPHEMERAL_IDS_PATH)
                                                         .append("/")
                                                         .append(ephemeralId);
 
+        String               query    = queryBuilder.toString();
+        HttpResponse<String> response = Helper.getResponse(query);
+        if (null == response) { return null; }
+        return toPkgInfo(pkgInfoCache, ephemeralId, response.statusCode(), response.body(), javaVersion);
+    }
+    public CompletableFuture<PkgInfo> getPkgInfoAsync(final String ephemeralId, final SemVer javaVersion) {
+        final TtlCache.Lookup<PkgInfo> cachedPkgInfo = pkgInfoCache.get(ephemeralId);
+        if (cachedPkgInfo.isCached()) { return CompletableFuture.completedFuture(withJavaVersion(cachedPkgInfo.getValue(), javaVersion)); }
+
+        StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
+                                                        .append(Constants.EPHEMERAL_IDS_PATH)
+                                                        .append("/")
+                                                        .append(ephemeralId);
         String query           = queryBuilder.toString();
-        String packageInfoBody = Helper.get(query);
+        return Helper.getResponseAsync(query).thenApply(response -> toPkgInfo(pkgInfoCache, ephemeralId, response.statusCode(), response.body(), javaVersion));
+    }
+
+    // Only a not found response is cached as a miss, failed requests and unexpected responses are retried by the next call
+    static PkgInfo toPkgInfo(final TtlCache<String, PkgInfo> pkgInfoCache, final String ephemeralId, final int statusCode, final String packageInfoBody, final SemVer javaVersion) {
+        if (404 == statusCode) {
+            pkgInfoCache.put(ephemeralId, null);
+            return null;
+        }
+        if (200 != statusCode) { return null; }
 
         Gson        packageInfoGson    = new Gson();
         JsonElement packageInfoElement = packageInfoGson.fromJson(packageInfoBody, JsonElement.class);
@@ -1127,29 +1321,17 @@ public class DiscoClient {
             final String     filename          = packageInfoJson.get(PkgInfo.FIELD_FILENAME).getAsString();
             final String     directDownloadUri = packageInfoJson.get(PkgInfo.FIELD_DIRECT_DOWNLOAD_URI).getAsString();
             final String     downloadSiteUri   = packageInfoJson.get(PkgInfo.FIELD_DOWNLOAD_SITE_URI).getAsString();
-            return new PkgInfo(filename, javaVersion, directDownloadUri, downloadSiteUri);
+            final PkgInfo    pkgInfo           = new PkgInfo(filename, javaVersion, directDownloadUri, downloadSiteUri);
+            pkgInfoCache.put(ephemeralId, pkgInfo);
+            return pkgInfo;
         }
-
         return null;
     }
-    public CompletableFuture<PkgInfo> getPkgInfoAsync(final String ephemeralId, final SemVer javaVersion) {
-        StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
-                                                        .append(Constants.EPHEMERAL_IDS_PATH)
-                                                        .append("/")
-                                                        .append(ephemeralId);
-        String query           = queryBuilder.toString();
-        return Helper.getAsync(query).thenApply(packageInfoBody -> {
-            Gson        packageInfoGson    = new Gson();
-            JsonElement packageInfoElement = packageInfoGson.fromJson(packageInfoBody, JsonElement.class);
-            if (packageInfoElement instanceof JsonObject) {
-                final JsonObject packageInfoJson   = packageInfoElement.getAsJsonObject();
-                final String     filename          = packageInfoJson.get(PkgInfo.FIELD_FILENAME).getAsString();
-                final String     directDownloadUri = packageInfoJson.get(PkgInfo.FIELD_DIRECT_DOWNLOAD_URI).getAsString();
-                final String     downloadSiteUri   = packageInfoJson.get(PkgInfo.FIELD_DOWNLOAD_SITE_URI).getAsString();
-                return new PkgInfo(filename, javaVersion, directDownloadUri, downloadSiteUri);
-            }
-            return null;
-        });
+
+    // Cached infos are shared between callers, the java version is the one of the caller
+    private static PkgInfo withJavaVersion(final PkgInfo pkgInfo, final SemVer javaVersion) {
+        if (null == pkgInfo || pkgInfo.getJavaVersion() == javaVersion) { return pkgInfo; }
+        return new PkgInfo(pkgInfo.getFileName(), javaVersion, pkgInfo.getDirectDownloadUri(), pkgInfo.getDownloadSiteUri());
     }
 
 
@@ -1181,7 +1363,7 @@ public class DiscoClient {
 
 
     public Pkg getPkg(final String pkgId) {
-        if (cacheReady.get()) { return pkgCache.stream().filter(pkg -> pkg.getId().equals(pkgId)).findFirst().orElse(null); }
+        if (isCacheUsable()) { return getPkgFromCache(pkgId); }
         StringBuilder queryBuilder = new StringBuilder().append(getDiscoApiUrl())
                                                         .append(Constants.PACKAGES_PATH)
                                                         .append("/")
@@ -1204,9 +1386,9 @@ public class DiscoClient {
                                                         .append("/")
                                                         .append(pkgId);
         String query = queryBuilder.toString();
-        if (cacheReady.get()) {
+        if (isCacheUsable()) {
             CompletableFuture<Pkg> future = new CompletableFuture<>();
-            future.complete(pkgCache.stream().filter(pkg -> pkg.getId().equals(pkgId)).findFirst().orElse(null));
+            future.complete(getPkgFromCache(pkgId));
             return future;
         }
         return Helper.getAsync(query).thenApply(bodyText -> {
@@ -1221,20 +1403,7 @@ public class DiscoClient {
     }
 
 
-    public final  OperatingSystem getOperatingSystem() {
-        String os = System.getProperty("os.name").toLowerCase();
-        if (os.indexOf("win") >= 0) {
-            return OperatingSystem.WINDOWS;
-        } else if (os.indexOf("mac") >= 0) {
-            return OperatingSystem.MACOS;
-        } else if (os.indexOf("nix") >= 0 || os.indexOf("nux") >= 0) {
-            return OperatingSystem.LINUX;
-        } else if (os.indexOf("sunos") >= 0) {
-            return OperatingSystem.SOLARIS;
-        } else {
-            return OperatingSystem.NONE;
-        }
-    }
+    public final  OperatingSystem getOperatingSystem() { return Platform.detectOperatingSystem(); }
 
     public final List<ArchiveType> getArchiveTypes(final OperatingSystem os) {
         switch (os) {
@@ -1283,257 +1452,297 @@ public class DiscoClient {
 
 
     // ******************** Cache *********************************************
+    private boolean isCacheUsable() { return engine.isCacheUsable(); }
+
+    // While the catalog is loaded queries restricted to already loaded distributions are answered from the cache
+    private boolean isCacheUsable(final List<Distribution> distributions) { return engine.isCacheUsable(distributions); }
+
     public List<Pkg> getPkgsFromCache(final VersionNumber versionNumber, final Comparison comparison, final List<Distribution> distributions, final List<Architecture> architectures, final List<ArchiveType> archiveTypes,
                                       final PackageType packageType, final List<OperatingSystem> operatingSystems, final List<LibCType> libCTypes, final List<ReleaseStatus> releaseStatus, final List<TermOfSupport> termsOfSupport,
                                       final Bitness bitness, final Boolean javafxBundled, final Boolean directlyDownloadable, final Latest latest, final List<Scope> scopes) {
-        List<Pkg> pkgsFound;
-        if (Comparison.EQUAL == comparison) {
-            switch(latest) {
-                case OVERALL:
-                    final VersionNumber maxNumber;
-                    if (null == versionNumber || versionNumber.getFeature().isEmpty()) {
-                        Optional<Pkg> pkgWithMaxVersionNumber = pkgCache.stream()
-                                                                        .filter(pkg -> distributions.isEmpty()                    ? (pkg.getDistribution() != null &&
-                                                                                                                                     pkg.getDistribution() != Distribution.GRAALVM_CE8 &&
-                                                                                                                                     pkg.getDistribution() != Distribution.GRAALVM_CE11 &&
-                                                                                                                                     pkg.getDistribution() != Distribution.LIBERICA_NATIVE &&
-                                                                                                                                     pkg.getDistribution() != Distribution.MANDREL) : distributions.contains(pkg.getDistribution()))
-                                                                        .filter(pkg -> Constants.SCOPE_LOOKUP.get(pkg.getDistribution()).stream().anyMatch(scopes.stream().collect(toSet())::contains))
-                                                                        .filter(pkg -> architectures.isEmpty()                    ? pkg.getArchitecture()        != null          : architectures.contains(pkg.getArchitecture()))
-                                                                        .filter(pkg -> archiveTypes.isEmpty()                     ? pkg.getArchiveType()         != null          : archiveTypes.contains(pkg.getArchiveType()))
-                                                                        .filter(pkg -> operatingSystems.isEmpty()                 ? pkg.getOperatingSystem()     != null          : operatingSystems.contains(pkg.getOperatingSystem()))
-                                                                        .filter(pkg -> libCTypes.isEmpty()                        ? pkg.getLibCType()            != null          : libCTypes.contains(pkg.getLibCType()))
-                                                                        .filter(pkg -> termsOfSupport.isEmpty()                   ? pkg.getTermOfSupport()       != null          : termsOfSupport.contains(pkg.getTermOfSupport()))
-                                                                        .filter(pkg -> PackageType.NONE   == packageType          ? pkg.getPackageType()         != packageType   : pkg.getPackageType()         == packageType)
-                                                                        .filter(pkg -> releaseStatus.isEmpty()                    ? pkg.getReleaseStatus()       != null          : releaseStatus.contains(pkg.getReleaseStatus()))
-                                                                        .filter(pkg -> Bitness.NONE       == bitness              ? pkg.getBitness()             != bitness       : pkg.getBitness()             == bitness)
-                                                                        .filter(pkg -> null               == javafxBundled        ? pkg.isJavaFXBundled()        != null          : pkg.isJavaFXBundled()        == javafxBundled)
-                                                                        .filter(pkg -> null               == directlyDownloadable ? pkg.isDirectlyDownloadable() != null          : pkg.isDirectlyDownloadable() == directlyDownloadable)
-                                                                        .max(Comparator.comparing(pkg -> pkg.getJavaVersion().getVersionNumber()));
-                        if (pkgWithMaxVersionNumber.isPresent()) {
-                            maxNumber = pkgWithMaxVersionNumber.get().getJavaVersion().getVersionNumber();
-                        } else {
-                            maxNumber = versionNumber;
-                        }
-                    } else {
-                        int featureVersion = versionNumber.getFeature().getAsInt();
-                        Optional<Pkg> pkgWithMaxVersionNumber = pkgCache.stream()
-                                                                        .filter(pkg -> distributions.isEmpty()                    ? pkg.getDistribution()        != null          : distributions.contains(pkg.getDistribution()))
-                                                                        .filter(pkg -> Constants.SCOPE_LOOKUP.get(pkg.getDistribution()).stream().anyMatch(scopes.stream().collect(toSet())::contains))
-                                                                        .filter(pkg -> architectures.isEmpty()                    ? pkg.getArchitecture()        != null          : architectures.contains(pkg.getArchitecture()))
-                                                                        .filter(pkg -> archiveTypes.isEmpty()                     ? pkg.getArchiveType()         != null          : archiveTypes.contains(pkg.getArchiveType()))
-                                                                        .filter(pkg -> operatingSystems.isEmpty()                 ? pkg.getOperatingSystem()     != null          : operatingSystems.contains(pkg.getOperatingSystem()))
-                                                                        .filter(pkg -> libCTypes.isEmpty()                        ? pkg.getLibCType()            != null          : libCTypes.contains(pkg.getLibCType()))
-                                                                        .filter(pkg -> termsOfSupport.isEmpty()                   ? pkg.getTermOfSupport()       != null          : termsOfSupport.contains(pkg.getTermOfSupport()))
-                                                                        .filter(pkg -> PackageType.NONE   == packageType          ? pkg.getPackageType()         != packageType   : pkg.getPackageType()         == packageType)
-                                                                        .filter(pkg -> releaseStatus.isEmpty()                    ? pkg.getReleaseStatus()       != null          : releaseStatus.contains(pkg.getReleaseStatus()))
-                                                                        .filter(pkg -> Bitness.NONE       == bitness              ? pkg.getBitness()             != bitness       : pkg.getBitness()             == bitness)
-                                                                        .filter(pkg -> null               == javafxBundled        ? pkg.isJavaFXBundled()        != null          : pkg.isJavaFXBundled()        == javafxBundled)
-                                                                        .filter(pkg -> null               == directlyDownloadable ? pkg.isDirectlyDownloadable() != null          : pkg.isDirectlyDownloadable() == directlyDownloadable)
-                                                                        .filter(pkg -> featureVersion     == pkg.getJavaVersion().getVersionNumber().getFeature().getAsInt())
-                                                                        .max(Comparator.comparing(pkg -> pkg.getJavaVersion().getVersionNumber()));
-                        if (pkgWithMaxVersionNumber.isPresent()) {
-                            maxNumber = pkgWithMaxVersionNumber.get().getJavaVersion().getVersionNumber();
-                        } else {
-                            maxNumber = versionNumber;
-                        }
-                    }
-                    pkgsFound = pkgCache.stream()
-                                        .filter(pkg -> distributions.isEmpty()                    ? pkg.getDistribution()        != null          : distributions.contains(pkg.getDistribution()))
-                                        .filter(pkg -> Constants.SCOPE_LOOKUP.get(pkg.getDistribution()).stream().anyMatch(scopes.stream().collect(toSet())::contains))
-                                        .filter(pkg -> architectures.isEmpty()                    ? pkg.getArchitecture()        != null          : architectures.contains(pkg.getArchitecture()))
-                                        .filter(pkg -> archiveTypes.isEmpty()                     ? pkg.getArchiveType()         != null          : archiveTypes.contains(pkg.getArchiveType()))
-                                        .filter(pkg -> operatingSystems.isEmpty()                 ? pkg.getOperatingSystem()     != null          : operatingSystems.contains(pkg.getOperatingSystem()))
-                                        .filter(pkg -> libCTypes.isEmpty()                        ? pkg.getLibCType()            != null          : libCTypes.contains(pkg.getLibCType()))
-                                        .filter(pkg -> termsOfSupport.isEmpty()                   ? pkg.getTermOfSupport()       != null          : termsOfSupport.contains(pkg.getTermOfSupport()))
-                                        .filter(pkg -> PackageType.NONE   == packageType          ? pkg.getPackageType()         != packageType   : pkg.getPackageType()         == packageType)
-                                        .filter(pkg -> releaseStatus.isEmpty()                    ? pkg.getReleaseStatus()       != null          : releaseStatus.contains(pkg.getReleaseStatus()))
-                                        .filter(pkg -> Bitness.NONE       == bitness              ? pkg.getBitness()             != bitness       : pkg.getBitness()             == bitness)
-                                        .filter(pkg -> null               == javafxBundled        ? pkg.isJavaFXBundled()        != null          : pkg.isJavaFXBundled()        == javafxBundled)
-                                        .filter(pkg -> null               == directlyDownloadable ? pkg.isDirectlyDownloadable() != null          : pkg.isDirectlyDownloadable() == directlyDownloadable)
-                                        .filter(pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(maxNumber) == 0)
-                                        .sorted(Comparator.comparing(Pkg::getDistributionName).reversed().thenComparing(Comparator.comparing((Pkg pkg1) -> pkg1.getJavaVersion().getVersionNumber()).reversed()))
-                                        .collect(Collectors.toList());
-                    break;
-                case PER_DISTRIBUTION:
-                    List<Distribution>               distributionsToCheck      = distributions.isEmpty() ? Distribution.getAsList().stream().filter(distribution -> Constants.SCOPE_LOOKUP.get(distribution).stream().anyMatch(scopes.stream().collect(toSet())::contains)).collect(Collectors.toList()) : distributions.stream().filter(distribution -> Constants.SCOPE_LOOKUP.get(distribution).stream().anyMatch(scopes.stream().collect(toSet())::contains)).collect(Collectors.toList());
-                    List<Pkg>                        pkgsTmp                   = new ArrayList<>();
-                    Map<Distribution, VersionNumber> maxVersionPerDistribution = new ConcurrentHashMap<>();
-                    distributionsToCheck.forEach(distro -> {
-                        Optional<Pkg> pkgFound = pkgCache.stream()
-                                                         .filter(pkg -> pkg.getDistribution().equals(distro))
-                                                         .filter(pkg -> architectures.isEmpty()                    ? pkg.getArchitecture()        != null          : architectures.contains(pkg.getArchitecture()))
-                                                         .filter(pkg -> archiveTypes.isEmpty()                     ? pkg.getArchiveType()         != null          : archiveTypes.contains(pkg.getArchiveType()))
-                                                         .filter(pkg -> operatingSystems.isEmpty()                 ? pkg.getOperatingSystem()     != null          : operatingSystems.contains(pkg.getOperatingSystem()))
-                                                         .filter(pkg -> libCTypes.isEmpty()                        ? pkg.getLibCType()            != null          : libCTypes.contains(pkg.getLibCType()))
-                                                         .filter(pkg -> termsOfSupport.isEmpty()                   ? pkg.getTermOfSupport()       != null          : termsOfSupport.contains(pkg.getTermOfSupport()))
-                                                         .filter(pkg -> PackageType.NONE   == packageType          ? pkg.getPackageType()         != packageType   : pkg.getPackageType()         == packageType)
-                                                         .filter(pkg -> releaseStatus.isEmpty()                    ? pkg.getReleaseStatus()       != null          : releaseStatus.contains(pkg.getReleaseStatus()))
-                                                         .filter(pkg -> Bitness.NONE       == bitness              ? pkg.getBitness()             != bitness       : pkg.getBitness()             == bitness)
-                                                         .filter(pkg -> null               == javafxBundled        ? pkg.isJavaFXBundled()        != null          : pkg.isJavaFXBundled()        == javafxBundled)
-                                                         .filter(pkg -> null               == directlyDownloadable ? pkg.isDirectlyDownloadable() != null          : pkg.isDirectlyDownloadable() == directlyDownloadable)
-                                                         .max(Comparator.comparing(pkg -> pkg.getJavaVersion().getVersionNumber()));
-                        if (pkgFound.isPresent()) { maxVersionPerDistribution.put(distro, pkgFound.get().getJavaVersion().getVersionNumber()); }
-                    });
-
-                    distributionsToCheck.forEach(distro -> pkgsTmp.addAll(pkgCache.stream()
-                                                                                  .filter(pkg -> pkg.getDistribution().equals(distro))
-                                                                                  .filter(pkg -> Constants.SCOPE_LOOKUP.get(pkg.getDistribution()).stream().anyMatch(scopes.stream().collect(toSet())::contains))
-                                                                                  .filter(pkg -> architectures.isEmpty()                    ? pkg.getArchitecture()        != null          : architectures.contains(pkg.getArchitecture()))
-                                                                                  .filter(pkg -> archiveTypes.isEmpty()                     ? pkg.getArchiveType()         != null          : archiveTypes.contains(pkg.getArchiveType()))
-                                                                                  .filter(pkg -> operatingSystems.isEmpty()                 ? pkg.getOperatingSystem()     != null          : operatingSystems.contains(pkg.getOperatingSystem()))
-                                                                                  .filter(pkg -> libCTypes.isEmpty()                        ? pkg.getLibCType()            != null          : libCTypes.contains(pkg.getLibCType()))
-                                                                                  .filter(pkg -> termsOfSupport.isEmpty()                   ? pkg.getTermOfSupport()       != null          : termsOfSupport.contains(pkg.getTermOfSupport()))
-                                                                                  .filter(pkg -> PackageType.NONE   == packageType          ? pkg.getPackageType()         != packageType   : pkg.getPackageType()         == packageType)
-                                                                                  .filter(pkg -> releaseStatus.isEmpty()                    ? pkg.getReleaseStatus()       != null          : releaseStatus.contains(pkg.getReleaseStatus()))
-                                                                                  .filter(pkg -> Bitness.NONE       == bitness              ? pkg.getBitness()             != bitness       : pkg.getBitness()             == bitness)
-                                                                                  .filter(pkg -> null               == javafxBundled        ? pkg.isJavaFXBundled()        != null          : pkg.isJavaFXBundled()        == javafxBundled)
-                                                                                  .filter(pkg -> null               == directlyDownloadable ? pkg.isDirectlyDownloadable() != null          : pkg.isDirectlyDownloadable() == directlyDownloadable)
-                                                                                  .filter(pkg -> pkg.getJavaVersion().getVersionNumber().equals(maxVersionPerDistribution.get(distro)))
-                                                                                  .sorted(Comparator.comparing(Pkg::getDistributionName).reversed().thenComparing(Comparator.comparing((Pkg pkg1) -> pkg1.getJavaVersion().getVersionNumber()).reversed()))
-                                                                                  .collect(Collectors.toList())));
-                    pkgsFound = pkgsTmp;
-                    break;
-                case PER_VERSION:
-                    pkgsFound = pkgCache.stream()
-                                        .filter(pkg -> distributions.isEmpty()                    ? pkg.getDistribution()        != null          : distributions.contains(pkg.getDistribution()))
-                                        .filter(pkg -> Constants.SCOPE_LOOKUP.get(pkg.getDistribution()).stream().anyMatch(scopes.stream().collect(toSet())::contains))
-                                        .filter(pkg -> architectures.isEmpty()                    ? pkg.getArchitecture()        != null          : architectures.contains(pkg.getArchitecture()))
-                                        .filter(pkg -> archiveTypes.isEmpty()                     ? pkg.getArchiveType()         != null          : archiveTypes.contains(pkg.getArchiveType()))
-                                        .filter(pkg -> operatingSystems.isEmpty()                 ? pkg.getOperatingSystem()     != null          : operatingSystems.contains(pkg.getOperatingSystem()))
-                                        .filter(pkg -> libCTypes.isEmpty()                        ? pkg.getLibCType()            != null          : libCTypes.contains(pkg.getLibCType()))
-                                        .filter(pkg -> termsOfSupport.isEmpty()                   ? pkg.getTermOfSupport()       != null          : termsOfSupport.contains(pkg.getTermOfSupport()))
-                                        .filter(pkg -> PackageType.NONE   == packageType          ? pkg.getPackageType()         != packageType   : pkg.getPackageType()         == packageType)
-                                        .filter(pkg -> releaseStatus.isEmpty()                    ? pkg.getReleaseStatus()       != null          : releaseStatus.contains(pkg.getReleaseStatus()))
-                                        .filter(pkg -> Bitness.NONE       == bitness              ? pkg.getBitness()             != bitness       : pkg.getBitness()             == bitness)
-                                        .filter(pkg -> null               == javafxBundled        ? pkg.isJavaFXBundled()        != null          : pkg.isJavaFXBundled()        == javafxBundled)
-                                        .filter(pkg -> null               == directlyDownloadable ? pkg.isDirectlyDownloadable() != null          : pkg.isDirectlyDownloadable() == directlyDownloadable)
-                                        .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getFeature().getAsInt() == versionNumber.getFeature().getAsInt())
-                                        .filter(pkg -> pkg.isLatestBuildAvailable())
-                                        .sorted(Comparator.comparing(Pkg::getDistributionName).reversed().thenComparing(Comparator.comparing((Pkg pkg1) -> pkg1.getJavaVersion().getVersionNumber()).reversed()))
-                                        .collect(Collectors.toList());
-                    break;
-                case NONE:
-                case NOT_FOUND:
-                default:
-                    pkgsFound = pkgCache.stream()
-                                        .filter(pkg -> distributions.isEmpty()                    ? pkg.getDistribution()        != null          : distributions.contains(pkg.getDistribution()))
-                                        .filter(pkg -> Constants.SCOPE_LOOKUP.get(pkg.getDistribution()).stream().anyMatch(scopes.stream().collect(toSet())::contains))
-                                        .filter(pkg -> null != versionNumber ? pkg.getJavaVersion().getVersionNumber().compareTo(versionNumber) == 0 : null != pkg.getJavaVersion().getVersionNumber())
-                                        .filter(pkg -> architectures.isEmpty()                    ? pkg.getArchitecture()        != null          : architectures.contains(pkg.getArchitecture()))
-                                        .filter(pkg -> archiveTypes.isEmpty()                     ? pkg.getArchiveType()         != null          : archiveTypes.contains(pkg.getArchiveType()))
-                                        .filter(pkg -> operatingSystems.isEmpty()                 ? pkg.getOperatingSystem()     != null          : operatingSystems.contains(pkg.getOperatingSystem()))
-                                        .filter(pkg -> libCTypes.isEmpty()                        ? pkg.getLibCType()            != null          : libCTypes.contains(pkg.getLibCType()))
-                                        .filter(pkg -> termsOfSupport.isEmpty()                   ? pkg.getTermOfSupport()       != null          : termsOfSupport.contains(pkg.getTermOfSupport()))
-                                        .filter(pkg -> PackageType.NONE   == packageType          ? pkg.getPackageType()         != packageType   : pkg.getPackageType()         == packageType)
-                                        .filter(pkg -> releaseStatus.isEmpty()                    ? pkg.getReleaseStatus()       != null          : releaseStatus.contains(pkg.getReleaseStatus()))
-                                        .filter(pkg -> Bitness.NONE       == bitness              ? pkg.getBitness()             != bitness       : pkg.getBitness()             == bitness)
-                                        .filter(pkg -> null               == javafxBundled        ? pkg.isJavaFXBundled()        != null          : pkg.isJavaFXBundled()        == javafxBundled)
-                                        .filter(pkg -> null               == directlyDownloadable ? pkg.isDirectlyDownloadable() != null          : pkg.isDirectlyDownloadable() == directlyDownloadable)
-                                        .sorted(Comparator.comparing(Pkg::getDistributionName).reversed().thenComparing(Comparator.comparing((Pkg pkg1) -> pkg1.getJavaVersion().getVersionNumber()).reversed()))
-                                        .collect(Collectors.toList());
-                    if (null != versionNumber) {
-                        int featureVersion = versionNumber.getFeature().getAsInt();
-                        int interimVersion = versionNumber.getInterim().getAsInt();
-                        int updateVersion  = versionNumber.getUpdate().getAsInt();
-                        int patchVersion   = versionNumber.getPatch().getAsInt();
-                        if (0 != patchVersion) {
-                            // e.g. 11.N.N.3
-                            pkgsFound = pkgsFound.stream()
-                                                 .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getFeature().getAsInt() == featureVersion)
-                                                 .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getInterim().getAsInt() == interimVersion)
-                                                 .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getUpdate().getAsInt()  == updateVersion)
-                                                 .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getPatch().getAsInt()   == patchVersion)
-                                                 .collect(Collectors.toList());
-                        } else if (0 != updateVersion) {
-                            // e.g. 11.N.2.N
-                            pkgsFound = pkgsFound.stream()
-                                                 .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getFeature().getAsInt() == featureVersion)
-                                                 .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getInterim().getAsInt() == interimVersion)
-                                                 .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getUpdate().getAsInt()  == updateVersion)
-                                                 .collect(Collectors.toList());
-                        } else if (0 != interimVersion) {
-                            // e.g. 11.1.N.N
-                            pkgsFound = pkgsFound.stream()
-                                                 .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getFeature().getAsInt() == featureVersion)
-                                                 .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getInterim().getAsInt() == interimVersion)
-                                                 .collect(Collectors.toList());
-                        } else {
-                            // e.g. 11.N.N.N
-                            pkgsFound = pkgsFound.stream()
-                                                 .filter(pkg -> pkg.getJavaVersion().getVersionNumber().getFeature().getAsInt() == featureVersion)
-                                                 .collect(Collectors.toList());
-                        }
-                    }
-                    break;
+        if (scopes.isEmpty()) { return new ArrayList<>(); } // An empty scope list matches no package
+        final PkgQuery query = PkgQuery.builder()
+                                       .version(versionNumber, comparison)
+                                       .distributions(distributions)
+                                       .architectures(architectures)
+                                       .archiveTypes(archiveTypes)
+                                       .packageType(packageType)
+                                       .operatingSystems(operatingSystems)
+                                       .libCTypes(libCTypes)
+                                       .releaseStatus(releaseStatus)
+                                       .termsOfSupport(termsOfSupport)
+                                       .bitness(bitness)
+                                       .javafxBundled(javafxBundled)
+                                       .directlyDownloadable(directlyDownloadable)
+                                       .latest(latest)
+                                       .scopes(scopes)
+                                       .build();
+        // Callers of the list based methods may modify the result, the cached result stays shared
+        return new ArrayList<>(getPkgsFromCache(query));
+    }
+    /**
+     * @return unmodifiable list of the packages that match the query, shared with the query result cache
+     */
+    public List<Pkg> getPkgsFromCache(final PkgQuery query) {
+        final CacheGeneration currentGeneration = engine.pinGeneration();
+        try {
+            return getPkgsFromCache(currentGeneration, query);
+        } finally {
+            currentGeneration.release();
+        }
+    }
+    List<Pkg> getPkgsFromCache(final CacheGeneration generation, final PkgQuery query) { return getResult(generation, query); }
+
+    /**
+     * Returns the results of many queries. Cached results are reused, queries that would scan large parts of the catalog
+     * are evaluated together in one traversal of the catalog and all other queries use their own index probes.
+     * @return the unmodifiable result of each distinct query in the order of the queries
+     */
+    public Map<PkgQuery, List<Pkg>> getPkgsFromCache(final Collection<PkgQuery> queries) {
+        final CacheGeneration currentGeneration = engine.pinGeneration();
+        try {
+            return getPkgsFromCache(currentGeneration, queries);
+        } finally {
+            currentGeneration.release();
+        }
+    }
+    Map<PkgQuery, List<Pkg>> getPkgsFromCache(final CacheGeneration generation, final Collection<PkgQuery> queries) {
+        final Map<PkgQuery, List<Pkg>> results = new LinkedHashMap<>();
+        final List<PkgQuery>           shared  = new ArrayList<>();
+        for (PkgQuery query : queries) {
+            if (results.containsKey(query)) { continue; }
+            final List<Pkg> cached = queryResultCache.peek(generation, query);
+            if (null == cached && query.compile().isSharedScan(generation)) {
+                shared.add(query);
+                results.put(query, null);
+            } else {
+                results.put(query, null == cached ? getResult(generation, query) : cached);
             }
-        } else {
-            VersionNumber  minVersionNumber;
-            VersionNumber  maxVersionNumber;
-            Predicate<Pkg> greaterCheck;
-            Predicate<Pkg> smallerCheck;
-            Queue<MajorVersion> majorVersions = majorVersionCache.isEmpty() ? getAllMajorVersions(true) : majorVersionCache;
-            switch (comparison) {
-                case EQUAL:
-                    minVersionNumber = versionNumber;
-                    maxVersionNumber = versionNumber;
-                    greaterCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(minVersionNumber) >= 0;
-                    smallerCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(maxVersionNumber) <= 0;
-                    break;
-                case LESS_THAN:
-                    minVersionNumber = new VersionNumber(6);
-                    maxVersionNumber = versionNumber;
-                    greaterCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(minVersionNumber) >= 0;
-                    smallerCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(maxVersionNumber) < 0;
-                    break;
-                case LESS_THAN_OR_EQUAL:
-                    minVersionNumber = new VersionNumber(6);
-                    maxVersionNumber = versionNumber;
-                    greaterCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(minVersionNumber) >= 0;
-                    smallerCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(maxVersionNumber) <= 0;
-                    break;
-                case GREATER_THAN:
-                    minVersionNumber = versionNumber;
-                    maxVersionNumber = new VersionNumber(majorVersions.peek().getAsInt());
-                    greaterCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(minVersionNumber) > 0;
-                    smallerCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(maxVersionNumber) <= 0;
-                    break;
-                case GREATER_THAN_OR_EQUAL:
-                    minVersionNumber = versionNumber;
-                    maxVersionNumber = new VersionNumber(majorVersions.peek().getAsInt());
-                    greaterCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(minVersionNumber) >= 0;
-                    smallerCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(maxVersionNumber) <= 0;
-                    break;
-                default:
-                    minVersionNumber = new VersionNumber(6);
-                    maxVersionNumber = new VersionNumber(majorVersions.peek().getAsInt());
-                    greaterCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(minVersionNumber) >= 0;
-                    smallerCheck     = pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(maxVersionNumber) <= 0;
-                    break;
+        }
+        final List<List<Pkg>> scanned = QueryBatch.execute(generation, shared.stream().map(PkgQuery::compile).collect(Collectors.toList()), engine.getParallelScan());
+        for (int i = 0; i < shared.size(); i++) {
+            final List<Pkg> result = scanned.get(i);
+            results.put(shared.get(i), queryResultCache.get(generation, shared.get(i), () -> List.copyOf(result)));
+        }
+        return results;
+    }
+
+    // Result of the query on the generation, shared with the query result cache and therefore unmodifiable
+    private List<Pkg> getResult(final CacheGeneration generation, final PkgQuery query) {
+        return queryResultCache.get(generation, query, () -> List.copyOf(query.compile().execute(generation, engine.getParallelScan())));
+    }
+
+    // Queries that can not be streamed are computed once and cached, pages of other queries use a cached result if there is one
+    private List<Pkg> getPagedResult(final CacheGeneration generation, final PkgQuery query) {
+        return query.compile().isStreamable() ? queryResultCache.peek(generation, query) : getResult(generation, query);
+    }
+
+    /**
+     * Returns the page of the result of the query that starts at the given offset. A result that is cached for the
+     * current generation is sliced, otherwise only the packages up to the end of the page are evaluated.
+     */
+    public PkgPage getPkgsFromCache(final PkgQuery query, final int offset, final int limit) {
+        final CacheGeneration currentGeneration = engine.pinGeneration();
+        try {
+            return getPkgsFromCache(currentGeneration, query, offset, limit);
+        } finally {
+            currentGeneration.release();
+        }
+    }
+    PkgPage getPkgsFromCache(final CacheGeneration generation, final PkgQuery query, final int offset, final int limit) {
+        final List<Pkg> result = getPagedResult(generation, query);
+        return null == result ? query.compile().page(generation, offset, limit) : query.compile().page(generation, result, offset, limit);
+    }
+
+    /**
+     * Returns the page of the result of the query that follows the page the cursor was taken from.
+     */
+    public PkgPage getPkgsFromCache(final PkgQuery query, final String cursor, final int limit) {
+        final CacheGeneration currentGeneration = engine.pinGeneration();
+        try {
+            return getPkgsFromCache(currentGeneration, query, cursor, limit);
+        } finally {
+            currentGeneration.release();
+        }
+    }
+    PkgPage getPkgsFromCache(final CacheGeneration generation, final PkgQuery query, final String cursor, final int limit) {
+        final List<Pkg> result = getPagedResult(generation, query);
+        return null == result ? query.compile().page(generation, cursor, limit) : query.compile().page(generation, result, cursor, limit);
+    }
+
+    /**
+     * Returns the result of the query as lazily evaluated stream on the current generation, the generation stays
+     * pinned until the stream is closed.
+     */
+    public Stream<Pkg> streamPkgsFromCache(final PkgQuery query) {
+        final CacheGeneration currentGeneration = engine.pinGeneration();
+        final PkgCatalog      catalog           = currentGeneration.getCatalog();
+        return query.compile().stream(currentGeneration).mapToObj(catalog::getPkg).onClose(currentGeneration::release);
+    }
+
+    /**
+     * Returns the number of packages per value of each facet, e.g. per distribution or operating system, that the query
+     * would select if only the filter of that facet was changed. All facets are counted in one pass over the catalog.
+     */
+    public PkgFacets getFacetsFromCache(final PkgQuery query) {
+        final CacheGeneration currentGeneration = engine.pinGeneration();
+        try {
+            return getFacetsFromCache(currentGeneration, query);
+        } finally {
+            currentGeneration.release();
+        }
+    }
+    PkgFacets getFacetsFromCache(final CacheGeneration generation, final PkgQuery query) {
+        return facetCache.get(generation, query, () -> query.compile().facets(generation, engine.getParallelScan()));
+    }
+
+    /**
+     * Registers a query that is evaluated against every new cache generation. Packages that start or stop matching the
+     * query are delivered as PkgChangeEvt.PKGS_CHANGED events to the observers of this client, the packages that match
+     * when the query is registered are not reported.
+     */
+    public void addStandingQuery(final PkgQuery query) {
+        synchronized (standingQueries) {
+            if (standingQueries.stream().anyMatch(standingQuery -> standingQuery.getQuery().equals(query))) { return; }
+            if (standingQueries.isEmpty()) { engine.addChangeListener(changeListener); }
+            final CacheGeneration currentGeneration = engine.pinGeneration();
+            try {
+                standingQueries.add(new StandingQuery(query, currentGeneration, this::getResult));
+            } finally {
+                currentGeneration.release();
             }
+        }
+    }
 
-            pkgsFound = pkgCache.stream()
-                                .filter(pkg -> distributions.isEmpty()                  ? pkg.getDistribution()        != null          : distributions.contains(pkg.getDistribution()))
-                                .filter(pkg -> Constants.SCOPE_LOOKUP.get(pkg.getDistribution()).stream().anyMatch(scopes.stream().collect(toSet())::contains))
-                                .filter(pkg -> architectures.isEmpty()                  ? pkg.getArchitecture()        != null          : architectures.contains(pkg.getArchitecture()))
-                                .filter(pkg -> archiveTypes.isEmpty()                   ? pkg.getArchiveType()         != null          : archiveTypes.contains(pkg.getArchiveType()))
-                                .filter(pkg -> operatingSystems.isEmpty()               ? pkg.getOperatingSystem()     != null          : operatingSystems.contains(pkg.getOperatingSystem()))
-                                .filter(pkg -> libCTypes.isEmpty()                      ? pkg.getLibCType()            != null          : libCTypes.contains(pkg.getLibCType()))
-                                .filter(pkg -> termsOfSupport.isEmpty()                 ? pkg.getTermOfSupport()       != null          : termsOfSupport.contains(pkg.getTermOfSupport()))
-                                .filter(pkg -> PackageType.NONE == packageType          ? pkg.getPackageType()         != packageType   : pkg.getPackageType()         == packageType)
-                                .filter(pkg -> releaseStatus.isEmpty()                  ? pkg.getReleaseStatus()       != null          : releaseStatus.contains(pkg.getReleaseStatus()))
-                                .filter(pkg -> Bitness.NONE     == bitness              ? pkg.getBitness()             != bitness       : pkg.getBitness()             == bitness)
-                                .filter(pkg -> null             == javafxBundled        ? pkg.isJavaFXBundled()        != null          : pkg.isJavaFXBundled()        == javafxBundled)
-                                .filter(pkg -> null             == directlyDownloadable ? pkg.isDirectlyDownloadable() != null          : pkg.isDirectlyDownloadable() == directlyDownloadable)
-                                .filter(greaterCheck)
-                                .filter(smallerCheck)
-                                .sorted(Comparator.comparing(Pkg::getDistributionName).reversed().thenComparing(Comparator.comparing((Pkg pkg1) -> pkg1.getJavaVersion().getVersionNumber()).reversed()))
-                                .collect(Collectors.toList());
+    public void removeStandingQuery(final PkgQuery query) {
+        synchronized (standingQueries) {
+            standingQueries.removeIf(standingQuery -> standingQuery.getQuery().equals(query));
+            if (standingQueries.isEmpty()) { engine.removeChangeListener(changeListener); }
         }
-        return pkgsFound;
     }
 
+    public List<PkgQuery> getStandingQueries() { return standingQueries.stream().map(StandingQuery::getQuery).collect(Collectors.toList()); }
+
+    /**
+     * Resolves the package that is installable on this host and ranks best for the given version and preferences.
+     * The platform of the host is detected once, the installable packages of each cache generation are kept in a
+     * precomputed view per platform, so a resolution is a binary search for the version range and a short ranking scan.
+     * @param versionSpec version with an optional comparison operator, e.g. "17", "17.0.2" or ">=11", where a version
+     *                    with fewer components stands for all versions that start with it. Null or empty for any version.
+     * @return the best package or null if no installable package matches
+     */
+    public Pkg resolveBest(final String versionSpec, final ResolvePreferences preferences) { return resolveBest(versionSpec, preferences, Platform.current()); }
+    public Pkg resolveBest(final String versionSpec, final ResolvePreferences preferences, final Platform platform) {
+        final long[] keyRange = toKeyRange(versionSpec);
+        if (!isCacheUsable()) { return resolveBest(getPkgs(toPlatformQuery(platform)), keyRange, preferences, platform); }
+        final CacheGeneration currentGeneration = engine.pinGeneration();
+        try {
+            return resolveBest(currentGeneration.getCatalog(), currentGeneration.getPlatformView(platform), keyRange, preferences);
+        } finally {
+            currentGeneration.release();
+        }
+    }
+    static Pkg resolveBest(final CacheGeneration generation, final String versionSpec, final ResolvePreferences preferences, final Platform platform) {
+        return resolveBest(generation.getCatalog(), generation.getPlatformView(platform), toKeyRange(versionSpec), preferences);
+    }
 
+    public CompletableFuture<Pkg> resolveBestAsync(final String versionSpec, final ResolvePreferences preferences) { return resolveBestAsync(versionSpec, preferences, Platform.current()); }
+    public CompletableFuture<Pkg> resolveBestAsync(final String versionSpec, final ResolvePreferences preferences, final Platform platform) {
+        final long[] keyRange = toKeyRange(versionSpec);
+        if (isCacheUsable()) { return CompletableFuture.completedFuture(resolveBest(versionSpec, preferences, platform)); }
+        return getPkgsAsync(toPlatformQuery(platform)).thenApply(pkgs -> resolveBest(pkgs, keyRange, preferences, platform));
+    }
+
+    // Without a usable cache the packages of the platform are requested from the disco api and ranked in a view of their own
+    private static Pkg resolveBest(final List<Pkg> pkgs, final long[] keyRange, final ResolvePreferences preferences, final Platform platform) {
+        final PkgCatalog catalog = new HeapPkgCatalog(pkgs);
+        return resolveBest(catalog, new PlatformView(catalog, platform), keyRange, preferences);
+    }
+    private static Pkg resolveBest(final PkgCatalog catalog, final PlatformView view, final long[] keyRange, final ResolvePreferences preferences) {
+        final int position = preferences.select(view, keyRange[0], keyRange[1]);
+        return -1 == position ? null : catalog.getPkg(view.getIndex(position));
+    }
+
+    // All operating systems of the family are requested, the view of the response keeps the packages of the c library of the platform.
+    // An operating system or architecture that was not detected is not requested, the view filters the response.
+    static PkgQuery toPlatformQuery(final Platform platform) {
+        final OperatingSystem  operatingSystem = platform.getOperatingSystem();
+        final Architecture     architecture    = platform.getArchitecture();
+        final PkgQuery.Builder builder         = PkgQuery.builder();
+        if (OperatingSystem.NONE != operatingSystem && OperatingSystem.NOT_FOUND != operatingSystem) { builder.operatingSystems(platform.getOperatingSystemFamily()); }
+        if (Architecture.NONE != architecture && Architecture.NOT_FOUND != architecture)             { builder.architectures(architecture); }
+        return builder.build();
+    }
+
+    // Version key range of a version spec, versions with fewer components cover all versions that start with them
+    private static long[] toKeyRange(final String versionSpec) {
+        if (null == versionSpec || versionSpec.isBlank()) { return new long[] { Long.MIN_VALUE, Long.MAX_VALUE }; }
+        final Matcher matcher = VERSION_SPEC.matcher(versionSpec.trim());
+        if (!matcher.matches()) { throw new IllegalArgumentException("Invalid version spec " + versionSpec); }
+        final Comparison    comparison    = Comparison.fromText(null == matcher.group(1) ? "=" : matcher.group(1));
+        final VersionNumber versionNumber = VersionNumber.fromText(matcher.group(2));
+        final int           components    = Math.min(6, matcher.group(3).split("\\.").length);
+        final long          fromKey       = VersionKey.equalMin(VersionKey.of(versionNumber));
+        final long          toKey         = VersionKey.prefixMax(fromKey, components);
+        switch (comparison) {
+            case LESS_THAN            : return new long[] { Long.MIN_VALUE, fromKey - 1 };
+            case LESS_THAN_OR_EQUAL   : return new long[] { Long.MIN_VALUE, toKey };
+            case GREATER_THAN         : return new long[] { toKey + 1, Long.MAX_VALUE };
+            case GREATER_THAN_OR_EQUAL: return new long[] { fromKey, Long.MAX_VALUE };
+            case EQUAL                :
+            default                   : return new long[] { fromKey, toKey };
+        }
+    }
+
+    /**
+     * @return the access path and filter order that getPkgsFromCache(query) uses on the current cache generation, with the estimates behind the choice
+     */
+    public QueryExplain explain(final PkgQuery query) {
+        final CacheGeneration currentGeneration = engine.pinGeneration();
+        try {
+            return query.compile().explain(currentGeneration);
+        } finally {
+            currentGeneration.release();
+        }
+    }
+
+    private Pkg getPkgFromCache(final String pkgId) {
+        final CacheGeneration currentGeneration = engine.pinGeneration();
+        try {
+            return getPkgFromCache(currentGeneration, pkgId);
+        } finally {
+            currentGeneration.release();
+        }
+    }
+    Pkg getPkgFromCache(final CacheGeneration generation, final String pkgId) {
+        final PkgCatalog catalog = generation.getCatalog();
+        final int        index   = catalog.indexOf(pkgId);
+        return index < 0 ? null : catalog.getPkg(index);
+    }
+
+    // Returns the major version index of the current generation or null if major version queries can not be answered from the cache
+    private MajorVersionIndex getMajorVersionIndex() {
+        if (!isCacheUsable()) { return null; }
+        final MajorVersionIndex majorVersionIndex = engine.getGeneration().getMajorVersionIndex();
+        return majorVersionIndex.isEmpty() ? null : majorVersionIndex;
+    }
+
+    // Returns the distribution index of the current generation or null if distribution queries can not be answered from the cache
+    private DistributionIndex getDistributionIndex() {
+        if (!isCacheUsable()) { return null; }
+        final DistributionIndex distributionIndex = engine.getGeneration().getDistributionIndex();
+        return distributionIndex.isEmpty() ? null : distributionIndex;
+    }
+
+    private List<MajorVersion> getMajorVersionsFromCache(final Optional<Boolean> maintained, final Optional<Boolean> includingEA, final Optional<Boolean> includingGA) {
+        // The index keeps major versions with and without early access builds, queries that exclude ga builds are left to the remote api
+        if (null != includingGA && includingGA.isPresent() && !includingGA.get()) { return null; }
+        final MajorVersionIndex majorVersionIndex = getMajorVersionIndex();
+        if (null == majorVersionIndex) { return null; }
+        final boolean includeEa = null != includingEA && includingEA.orElse(false);
+        if (null == maintained || maintained.isEmpty()) { return new ArrayList<>(majorVersionIndex.getAll(includeEa)); }
+        return majorVersionIndex.getAll(includeEa).stream().filter(majorVersion -> majorVersion.isMaintained() == maintained.get()).collect(Collectors.toList());
+    }
 
     // ******************** Event Handling ************************************
     public final void setOnEvt(final EvtType<? extends Evt> type, final EvtObserver observer) {
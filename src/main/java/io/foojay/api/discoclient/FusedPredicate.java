@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.QueryPlan.CatalogPredicate;
+import io.foojay.api.discoclient.cache.PkgCatalog;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Predicate over catalog records that is compiled from method handles. Every check is specialized to its constant
+ * parameters, a set of attribute values becomes one bit mask test and an unrestricted attribute no test at all.
+ * The checks of a query are chained with guardWithTest into one handle and evaluated with one invokeExact call.
+ * The handle is an instance field behind the shared test() call site, so it is not a JIT constant and is not
+ * inlined into the scan loop, the chain itself is customized by the JVM once the handle is invoked often.
+ */
+final class FusedPredicate implements CatalogPredicate {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType           CHECK  = MethodType.methodType(boolean.class, PkgCatalog.class, int.class);
+    private static final MethodHandle         TRUE   = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, PkgCatalog.class, int.class);
+    private static final MethodHandle         FALSE  = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, PkgCatalog.class, int.class);
+    private static final MethodHandle         ORDINAL;
+    private static final MethodHandle         BIT_IN;
+    private static final MethodHandle         NOT;
+    private static final MethodHandle         IN_RANGE;
+    private        final MethodHandle         handle;
+
+    static {
+        try {
+            ORDINAL  = LOOKUP.findVirtual(Enum.class, "ordinal", MethodType.methodType(int.class));
+            BIT_IN   = LOOKUP.findStatic(FusedPredicate.class, "bitIn", MethodType.methodType(boolean.class, long.class, int.class));
+            NOT      = LOOKUP.findStatic(FusedPredicate.class, "not", MethodType.methodType(boolean.class, boolean.class));
+            IN_RANGE = LOOKUP.findStatic(FusedPredicate.class, "inRange", MethodType.methodType(boolean.class, long.class, long.class, long.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    // ******************** Constructors **************************************
+    private FusedPredicate(final MethodHandle handle) {
+        this.handle = handle;
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * @return predicate that is true if all checks are true, evaluated in the given order
+     */
+    static FusedPredicate of(final List<MethodHandle> checks) {
+        MethodHandle fused = null;
+        for (int i = checks.size() - 1; i >= 0; i--) {
+            final MethodHandle check = checks.get(i);
+            if (TRUE == check) { continue; }
+            fused = null == fused ? check : MethodHandles.guardWithTest(check, fused, FALSE);
+        }
+        return new FusedPredicate(null == fused ? TRUE : fused);
+    }
+
+    /**
+     * @param getter name of the PkgCatalog method that reads the attribute of a record
+     * @return check that the attribute of a record is one of the given values, no check if the values are empty
+     */
+    static <E extends Enum<E>> MethodHandle in(final String getter, final Class<E> type, final Collection<E> values) {
+        if (values.isEmpty()) { return TRUE; }
+        long mask = 0;
+        for (E value : values) { mask |= 1L << value.ordinal(); }
+        return in(getter, type, mask);
+    }
+    /**
+     * @param mask bit mask over the ordinals of the accepted values
+     */
+    static <E extends Enum<E>> MethodHandle in(final String getter, final Class<E> type, final long mask) {
+        if (-1L == mask) { return TRUE; }
+        final MethodHandle ordinal = MethodHandles.filterReturnValue(attribute(getter, type), ORDINAL.asType(MethodType.methodType(int.class, type)));
+        return MethodHandles.filterReturnValue(ordinal, MethodHandles.insertArguments(BIT_IN, 0, mask));
+    }
+
+    /**
+     * @return check that the boolean attribute of a record has the given value
+     */
+    static MethodHandle is(final String getter, final boolean value) {
+        final MethodHandle attribute = attribute(getter, boolean.class);
+        return value ? attribute : MethodHandles.filterReturnValue(attribute, NOT);
+    }
+
+    /**
+     * @return check that the version key of a record is within the given bounds, both inclusive
+     */
+    static MethodHandle versionIn(final long fromKey, final long toKey) {
+        if (Long.MIN_VALUE == fromKey && Long.MAX_VALUE == toKey) { return TRUE; }
+        return MethodHandles.filterReturnValue(attribute("getVersionKey", long.class), MethodHandles.insertArguments(IN_RANGE, 0, fromKey, toKey));
+    }
+
+    @Override public boolean test(final PkgCatalog catalog, final int index) {
+        try {
+            return (boolean) handle.invokeExact(catalog, index);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static MethodHandle attribute(final String getter, final Class<?> type) {
+        try {
+            return LOOKUP.findVirtual(PkgCatalog.class, getter, MethodType.methodType(type, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("No catalog attribute " + getter, e);
+        }
+    }
+
+    private static boolean bitIn(final long mask, final int ordinal) { return 0 != (mask & (1L << ordinal)); }
+
+    private static boolean not(final boolean value) { return !value; }
+
+    private static boolean inRange(final long fromKey, final long toKey, final long value) { return value >= fromKey && value <= toKey; }
+}
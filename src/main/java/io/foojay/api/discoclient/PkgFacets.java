@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.pkg.ApiFeature;
+import io.foojay.api.discoclient.pkg.Architecture;
+import io.foojay.api.discoclient.pkg.ArchiveType;
+import io.foojay.api.discoclient.pkg.Bitness;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.LibCType;
+import io.foojay.api.discoclient.pkg.OperatingSystem;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+import io.foojay.api.discoclient.pkg.TermOfSupport;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+
+/**
+ * Number of packages per value of each facet for one query on one cache generation. The counts of a facet
+ * apply all filters of the query except the filter of the facet itself, so they show how many packages each
+ * alternative value would select. The latest views and the newest selection of the query are not applied.
+ */
+public final class PkgFacets {
+    private final long                                 generationNumber;
+    private final int                                  total;
+    private final Map<Facet, Map<ApiFeature, Integer>> counts;
+    private final Map<Integer, Integer>                featureVersionCounts;
+
+    public enum Facet {
+        DISTRIBUTION("distribution", "distribution", Distribution.NONE),
+        OPERATING_SYSTEM("operating system", "operating_system", OperatingSystem.NONE),
+        ARCHITECTURE("architecture", "architecture", Architecture.NONE),
+        ARCHIVE_TYPE("archive type", "archive_type", ArchiveType.NONE),
+        LIBC_TYPE("lib c type", "libc_type", LibCType.NONE),
+        PACKAGE_TYPE("package type", "package_type", PackageType.NONE),
+        RELEASE_STATUS("release status", "release_status", ReleaseStatus.NONE),
+        TERM_OF_SUPPORT("term of support", "term_of_support", TermOfSupport.NONE),
+        BITNESS("bitness", "bitness", Bitness.NONE),
+        FEATURE_VERSION("feature version", "version", null);
+
+        private final String     uiString;
+        private final String     filterName;
+        private final ApiFeature feature;
+
+
+        Facet(final String uiString, final String filterName, final ApiFeature feature) {
+            this.uiString   = uiString;
+            this.filterName = filterName;
+            this.feature    = feature;
+        }
+
+
+        public String getUiString() { return uiString; }
+
+        // Name of the query plan filter that is ignored by the counts of the facet
+        String getFilterName() { return filterName; }
+
+        static Facet fromFilterName(final String filterName) {
+            for (Facet facet : values()) {
+                if (facet.filterName.equals(filterName)) { return facet; }
+            }
+            return null;
+        }
+    }
+
+
+    // ******************** Constructors **************************************
+    /**
+     * @param counts number of packages per facet, indexed by the ordinal of the value or by the feature version
+     */
+    PkgFacets(final long generationNumber, final int total, final int[][] counts) {
+        this.generationNumber = generationNumber;
+        this.total            = total;
+        final Map<Facet, Map<ApiFeature, Integer>> countMap = new EnumMap<>(Facet.class);
+        final Map<Integer, Integer>                features = new LinkedHashMap<>();
+        for (Facet facet : Facet.values()) {
+            final int[] facetCounts = null == counts[facet.ordinal()] ? new int[0] : counts[facet.ordinal()];
+            if (Facet.FEATURE_VERSION == facet) {
+                for (int feature = facetCounts.length - 1; feature >= 0; feature--) {
+                    if (facetCounts[feature] > 0) { features.put(feature, facetCounts[feature]); }
+                }
+                continue;
+            }
+            // The NONE and NOT_FOUND values can not be selected and are not reported
+            final ApiFeature[]             values      = facet.feature.getAll();
+            final Map<ApiFeature, Integer> valueCounts = new LinkedHashMap<>();
+            for (int ordinal = 0; ordinal < Math.min(facetCounts.length, values.length); ordinal++) {
+                final ApiFeature value = values[ordinal];
+                if (facetCounts[ordinal] > 0 && value != facet.feature.getDefault() && value != facet.feature.getNotFound()) { valueCounts.put(value, facetCounts[ordinal]); }
+            }
+            countMap.put(facet, Collections.unmodifiableMap(valueCounts));
+        }
+        this.counts               = Collections.unmodifiableMap(countMap);
+        this.featureVersionCounts = Collections.unmodifiableMap(features);
+    }
+
+
+    // ******************** Methods *******************************************
+    public long getGenerationNumber() { return generationNumber; }
+
+    /**
+     * @return number of packages that match all filters of the query
+     */
+    public int getTotal() { return total; }
+
+    /**
+     * @return number of packages per value of the facet in the order of the values, empty for Facet.FEATURE_VERSION
+     */
+    public Map<ApiFeature, Integer> getCounts(final Facet facet) { return counts.getOrDefault(facet, Map.of()); }
+
+    /**
+     * @return number of packages per feature version, newest feature version first
+     */
+    public Map<Integer, Integer> getFeatureVersionCounts() { return featureVersionCounts; }
+
+    @Override public String toString() {
+        return new StringBuilder().append("{")
+                                  .append("\"generation\":").append(generationNumber).append(",")
+                                  .append("\"total\":").append(total).append(",")
+                                  .append(counts.entrySet().stream()
+                                                .map(entry -> "\"" + entry.getKey().getFilterName() + "\":" + entry.getValue().entrySet().stream()
+                                                                                                                  .map(count -> "\"" + count.getKey().getApiString() + "\":" + count.getValue())
+                                                                                                                  .collect(Collectors.joining(",", "{", "}")))
+                                                .collect(Collectors.joining(","))).append(",")
+                                  .append("\"feature_version\":").append(featureVersionCounts.entrySet().stream().map(count -> "\"" + count.getKey() + "\":" + count.getValue()).collect(Collectors.joining(",", "{", "}")))
+                                  .append("}")
+                                  .toString();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.pkg.Pkg;
+
+import java.util.List;
+
+
+/**
+ * One page of a cache query result. Pages are cut from one cache generation, the next cursor continues
+ * the result after the last package of this page.
+ */
+public final class PkgPage {
+    private final List<Pkg> pkgs;
+    private final long      generationNumber;
+    private final String    nextCursor;
+    private final boolean   generationChanged;
+
+
+    // ******************** Constructors **************************************
+    PkgPage(final List<Pkg> pkgs, final long generationNumber, final String nextCursor, final boolean generationChanged) {
+        this.pkgs              = List.copyOf(pkgs);
+        this.generationNumber  = generationNumber;
+        this.nextCursor        = nextCursor;
+        this.generationChanged = generationChanged;
+    }
+
+
+    // ******************** Methods *******************************************
+    public List<Pkg> getPkgs() { return pkgs; }
+
+    /**
+     * @return number of the cache generation the page was cut from
+     */
+    public long getGenerationNumber() { return generationNumber; }
+
+    /**
+     * @return cursor of the next page, null if this is the last page
+     */
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasMore() { return null != nextCursor; }
+
+    /**
+     * @return true if the cache was refreshed since the page the cursor of this page was taken from
+     */
+    public boolean isGenerationChanged() { return generationChanged; }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.VersionKey;
+import io.foojay.api.discoclient.pkg.Architecture;
+import io.foojay.api.discoclient.pkg.ArchiveType;
+import io.foojay.api.discoclient.pkg.Bitness;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.Latest;
+import io.foojay.api.discoclient.pkg.LibCType;
+import io.foojay.api.discoclient.pkg.OperatingSystem;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+import io.foojay.api.discoclient.pkg.Scope;
+import io.foojay.api.discoclient.pkg.TermOfSupport;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import io.foojay.api.discoclient.util.Comparison;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+
+/**
+ * Immutable description of a package query, created with a builder and compiled once into a
+ * QueryPlan that can be executed against the cache or translated into a disco api request.
+ * Empty filters do not restrict the result. Filters that are only checked for containment are
+ * kept as sets, the distributions keep their order because it defines the order of the result
+ * for Latest.PER_DISTRIBUTION. Queries are equal if they select the same packages, they are
+ * used as key of the query result cache.
+ */
+public final class PkgQuery {
+    private final VersionNumber        versionNumber;
+    private final long                 versionKey;
+    private final Comparison           comparison;
+    private final List<Distribution>   distributions;
+    private final Set<Architecture>    architectures;
+    private final Set<ArchiveType>     archiveTypes;
+    private final PackageType          packageType;
+    private final Set<OperatingSystem> operatingSystems;
+    private final Set<LibCType>        libCTypes;
+    private final Set<ReleaseStatus>   releaseStatus;
+    private final Set<TermOfSupport>   termsOfSupport;
+    private final Bitness              bitness;
+    private final Boolean              javafxBundled;
+    private final Boolean              directlyDownloadable;
+    private final Latest               latest;
+    private final Set<Scope>           scopes;
+    private final int                  newest;
+    private final Grouping             grouping;
+    private final int                  hashCode;
+    private volatile QueryPlan         plan;
+
+    public enum Grouping {
+        NONE("none"),
+        PER_DISTRIBUTION("per distribution"),
+        PER_VERSION("per feature version");
+
+        private final String uiString;
+
+
+        Grouping(final String uiString) {
+            this.uiString = uiString;
+        }
+
+
+        public String getUiString() { return uiString; }
+    }
+
+
+    // ******************** Constructors **************************************
+    private PkgQuery(final Builder builder) {
+        this.versionNumber        = builder.versionNumber;
+        this.versionKey           = VersionKey.of(builder.versionNumber);
+        this.comparison           = builder.comparison;
+        this.distributions        = List.copyOf(builder.distributions);
+        this.architectures        = Collections.unmodifiableSet(EnumSet.copyOf(builder.architectures));
+        this.archiveTypes         = Collections.unmodifiableSet(EnumSet.copyOf(builder.archiveTypes));
+        this.packageType          = builder.packageType;
+        this.operatingSystems     = Collections.unmodifiableSet(EnumSet.copyOf(builder.operatingSystems));
+        this.libCTypes            = Collections.unmodifiableSet(EnumSet.copyOf(builder.libCTypes));
+        this.releaseStatus        = Collections.unmodifiableSet(EnumSet.copyOf(builder.releaseStatus));
+        this.termsOfSupport       = Collections.unmodifiableSet(EnumSet.copyOf(builder.termsOfSupport));
+        this.bitness              = builder.bitness;
+        this.javafxBundled        = builder.javafxBundled;
+        this.directlyDownloadable = builder.directlyDownloadable;
+        this.latest               = builder.latest;
+        this.scopes               = Collections.unmodifiableSet(EnumSet.copyOf(builder.scopes));
+        this.newest               = builder.newest;
+        this.grouping             = 0 == builder.newest ? Grouping.NONE : builder.grouping;
+        this.hashCode             = Objects.hash(null != versionNumber, versionKey, comparison, distributions, architectures, archiveTypes, packageType, operatingSystems,
+                                                 libCTypes, releaseStatus, termsOfSupport, bitness, javafxBundled, directlyDownloadable, latest, scopes, newest, grouping);
+    }
+
+
+    // ******************** Methods *******************************************
+    public static Builder builder() { return new Builder(); }
+
+    public Builder toBuilder() { return new Builder(this); }
+
+    /**
+     * @return the requested version, null if the query is not restricted to a version
+     */
+    public VersionNumber getVersionNumber() { return versionNumber; }
+
+    /**
+     * @return version key of the requested version, VersionKey.NONE if no version is requested
+     */
+    public long getVersionKey() { return versionKey; }
+
+    public Comparison getComparison() { return comparison; }
+
+    public List<Distribution> getDistributions() { return distributions; }
+
+    public Set<Architecture> getArchitectures() { return architectures; }
+
+    public Set<ArchiveType> getArchiveTypes() { return archiveTypes; }
+
+    public PackageType getPackageType() { return packageType; }
+
+    public Set<OperatingSystem> getOperatingSystems() { return operatingSystems; }
+
+    public Set<LibCType> getLibCTypes() { return libCTypes; }
+
+    public Set<ReleaseStatus> getReleaseStatus() { return releaseStatus; }
+
+    public Set<TermOfSupport> getTermsOfSupport() { return termsOfSupport; }
+
+    public Bitness getBitness() { return bitness; }
+
+    public Boolean getJavafxBundled() { return javafxBundled; }
+
+    public Boolean getDirectlyDownloadable() { return directlyDownloadable; }
+
+    public Latest getLatest() { return latest; }
+
+    public Set<Scope> getScopes() { return scopes; }
+
+    /**
+     * @return number of packages with the highest versions that are selected per group, 0 if the result is not limited
+     */
+    public int getNewest() { return newest; }
+
+    public Grouping getGrouping() { return grouping; }
+
+    /**
+     * @return the execution plan of this query, compiled on first use and shared by all later executions
+     */
+    public QueryPlan compile() {
+        QueryPlan queryPlan = plan;
+        if (null == queryPlan) {
+            queryPlan = new QueryPlan(this);
+            plan      = queryPlan;
+        }
+        return queryPlan;
+    }
+
+    @Override public boolean equals(final Object o) {
+        if (this == o) { return true; }
+        if (o == null || getClass() != o.getClass()) { return false; }
+        PkgQuery that = (PkgQuery) o;
+        return hashCode == that.hashCode && (null == versionNumber) == (null == that.versionNumber) && versionKey == that.versionKey && comparison == that.comparison &&
+               packageType == that.packageType && bitness == that.bitness && latest == that.latest && Objects.equals(javafxBundled, that.javafxBundled) &&
+               Objects.equals(directlyDownloadable, that.directlyDownloadable) && distributions.equals(that.distributions) && architectures.equals(that.architectures) &&
+               archiveTypes.equals(that.archiveTypes) && operatingSystems.equals(that.operatingSystems) && libCTypes.equals(that.libCTypes) &&
+               releaseStatus.equals(that.releaseStatus) && termsOfSupport.equals(that.termsOfSupport) && scopes.equals(that.scopes) &&
+               newest == that.newest && grouping == that.grouping;
+    }
+
+    @Override public int hashCode() { return hashCode; }
+
+    @Override public String toString() {
+        return new StringBuilder().append("{")
+                                  .append("\"version\":\"").append(null == versionNumber ? "" : versionNumber.toString()).append("\",")
+                                  .append("\"comparison\":\"").append(comparison.getOperator()).append("\",")
+                                  .append("\"distributions\":").append(distributions).append(",")
+                                  .append("\"architectures\":").append(architectures).append(",")
+                                  .append("\"archive_types\":").append(archiveTypes).append(",")
+                                  .append("\"package_type\":\"").append(packageType.name()).append("\",")
+                                  .append("\"operating_systems\":").append(operatingSystems).append(",")
+                                  .append("\"lib_c_types\":").append(libCTypes).append(",")
+                                  .append("\"release_status\":").append(releaseStatus).append(",")
+                                  .append("\"terms_of_support\":").append(termsOfSupport).append(",")
+                                  .append("\"bitness\":\"").append(bitness.name()).append("\",")
+                                  .append("\"javafx_bundled\":").append(javafxBundled).append(",")
+                                  .append("\"directly_downloadable\":").append(directlyDownloadable).append(",")
+                                  .append("\"latest\":\"").append(latest.name()).append("\",")
+                                  .append("\"scopes\":").append(scopes).append(",")
+                                  .append("\"newest\":").append(newest).append(",")
+                                  .append("\"grouping\":\"").append(grouping.name()).append("\"")
+                                  .append("}")
+                                  .toString();
+    }
+
+
+    // ******************** Builder *******************************************
+    public static class Builder {
+        private VersionNumber        versionNumber        = null;
+        private Comparison           comparison           = Comparison.EQUAL;
+        private Set<Distribution>    distributions        = new LinkedHashSet<>();
+        private Set<Architecture>    architectures        = EnumSet.noneOf(Architecture.class);
+        private Set<ArchiveType>     archiveTypes         = EnumSet.noneOf(ArchiveType.class);
+        private PackageType          packageType          = PackageType.NONE;
+        private Set<OperatingSystem> operatingSystems     = EnumSet.noneOf(OperatingSystem.class);
+        private Set<LibCType>        libCTypes            = EnumSet.noneOf(LibCType.class);
+        private Set<ReleaseStatus>   releaseStatus        = EnumSet.noneOf(ReleaseStatus.class);
+        private Set<TermOfSupport>   termsOfSupport       = EnumSet.noneOf(TermOfSupport.class);
+        private Bitness              bitness              = Bitness.NONE;
+        private Boolean              javafxBundled        = null;
+        private Boolean              directlyDownloadable = null;
+        private Latest               latest               = Latest.NONE;
+        private Set<Scope>           scopes               = EnumSet.noneOf(Scope.class);
+        private int                  newest               = 0;
+        private Grouping             grouping             = Grouping.NONE;
+
+
+        private Builder() {}
+        private Builder(final PkgQuery query) {
+            this.versionNumber        = query.versionNumber;
+            this.comparison           = query.comparison;
+            this.distributions        = new LinkedHashSet<>(query.distributions);
+            this.packageType          = query.packageType;
+            this.bitness              = query.bitness;
+            this.javafxBundled        = query.javafxBundled;
+            this.directlyDownloadable = query.directlyDownloadable;
+            this.latest               = query.latest;
+            this.newest               = query.newest;
+            this.grouping             = query.grouping;
+            this.architectures.addAll(query.architectures);
+            this.archiveTypes.addAll(query.archiveTypes);
+            this.operatingSystems.addAll(query.operatingSystems);
+            this.libCTypes.addAll(query.libCTypes);
+            this.releaseStatus.addAll(query.releaseStatus);
+            this.termsOfSupport.addAll(query.termsOfSupport);
+            this.scopes.addAll(query.scopes);
+        }
+
+
+        public Builder version(final VersionNumber versionNumber) {
+            this.versionNumber = versionNumber;
+            return this;
+        }
+
+        public Builder version(final VersionNumber versionNumber, final Comparison comparison) {
+            this.versionNumber = versionNumber;
+            return comparison(comparison);
+        }
+
+        public Builder comparison(final Comparison comparison) {
+            this.comparison = null == comparison ? Comparison.EQUAL : comparison;
+            return this;
+        }
+
+        public Builder distributions(final Distribution... distributions) { return distributions(Arrays.asList(distributions)); }
+        public Builder distributions(final Collection<Distribution> distributions) {
+            this.distributions = new LinkedHashSet<>();
+            addAll(this.distributions, distributions, Distribution.NONE, Distribution.NOT_FOUND);
+            return this;
+        }
+
+        public Builder architectures(final Architecture... architectures) { return architectures(Arrays.asList(architectures)); }
+        public Builder architectures(final Collection<Architecture> architectures) {
+            this.architectures = EnumSet.noneOf(Architecture.class);
+            addAll(this.architectures, architectures, Architecture.NONE, Architecture.NOT_FOUND);
+            return this;
+        }
+
+        public Builder archiveTypes(final ArchiveType... archiveTypes) { return archiveTypes(Arrays.asList(archiveTypes)); }
+        public Builder archiveTypes(final Collection<ArchiveType> archiveTypes) {
+            this.archiveTypes = EnumSet.noneOf(ArchiveType.class);
+            addAll(this.archiveTypes, archiveTypes, ArchiveType.NONE, ArchiveType.NOT_FOUND);
+            return this;
+        }
+
+        /**
+         * @param packageType requested package type, PackageType.NONE selects all packages that have a package type
+         */
+        public Builder packageType(final PackageType packageType) {
+            this.packageType = null == packageType || PackageType.NOT_FOUND == packageType ? PackageType.NONE : packageType;
+            return this;
+        }
+
+        public Builder operatingSystems(final OperatingSystem... operatingSystems) { return operatingSystems(Arrays.asList(operatingSystems)); }
+        public Builder operatingSystems(final Collection<OperatingSystem> operatingSystems) {
+            this.operatingSystems = EnumSet.noneOf(OperatingSystem.class);
+            addAll(this.operatingSystems, operatingSystems, OperatingSystem.NONE, OperatingSystem.NOT_FOUND);
+            return this;
+        }
+
+        public Builder libCTypes(final LibCType... libCTypes) { return libCTypes(Arrays.asList(libCTypes)); }
+        public Builder libCTypes(final Collection<LibCType> libCTypes) {
+            this.libCTypes = EnumSet.noneOf(LibCType.class);
+            addAll(this.libCTypes, libCTypes, LibCType.NONE, LibCType.NOT_FOUND);
+            return this;
+        }
+
+        public Builder releaseStatus(final ReleaseStatus... releaseStatus) { return releaseStatus(Arrays.asList(releaseStatus)); }
+        public Builder releaseStatus(final Collection<ReleaseStatus> releaseStatus) {
+            this.releaseStatus = EnumSet.noneOf(ReleaseStatus.class);
+            addAll(this.releaseStatus, releaseStatus, ReleaseStatus.NONE, ReleaseStatus.NOT_FOUND);
+            return this;
+        }
+
+        public Builder termsOfSupport(final TermOfSupport... termsOfSupport) { return termsOfSupport(Arrays.asList(termsOfSupport)); }
+        public Builder termsOfSupport(final Collection<TermOfSupport> termsOfSupport) {
+            this.termsOfSupport = EnumSet.noneOf(TermOfSupport.class);
+            addAll(this.termsOfSupport, termsOfSupport, TermOfSupport.NONE, TermOfSupport.NOT_FOUND);
+            return this;
+        }
+
+        /**
+         * @param bitness requested bitness, Bitness.NONE selects all packages that have a bitness
+         */
+        public Builder bitness(final Bitness bitness) {
+            this.bitness = null == bitness || Bitness.NOT_FOUND == bitness ? Bitness.NONE : bitness;
+            return this;
+        }
+
+        public Builder javafxBundled(final Boolean javafxBundled) {
+            this.javafxBundled = javafxBundled;
+            return this;
+        }
+
+        public Builder directlyDownloadable(final Boolean directlyDownloadable) {
+            this.directlyDownloadable = directlyDownloadable;
+            return this;
+        }
+
+        public Builder latest(final Latest latest) {
+            this.latest = null == latest || Latest.NOT_FOUND == latest ? Latest.NONE : latest;
+            return this;
+        }
+
+        public Builder scopes(final Scope... scopes) { return scopes(Arrays.asList(scopes)); }
+        public Builder scopes(final Collection<Scope> scopes) {
+            this.scopes = EnumSet.noneOf(Scope.class);
+            addAll(this.scopes, scopes, Scope.NONE, Scope.NOT_FOUND);
+            return this;
+        }
+
+        /**
+         * Limits the result to the packages with the highest versions, ties are kept in the order of the result.
+         * @param count number of packages that are selected, 0 does not limit the result
+         */
+        public Builder newest(final int count) { return newest(count, Grouping.NONE); }
+        /**
+         * @param count number of packages that are selected per group, 0 does not limit the result
+         * @param grouping selects the newest packages per distribution or per feature version instead of overall
+         */
+        public Builder newest(final int count, final Grouping grouping) {
+            if (count < 0) { throw new IllegalArgumentException("count must not be negative"); }
+            this.newest   = count;
+            this.grouping = null == grouping ? Grouping.NONE : grouping;
+            return this;
+        }
+
+        public PkgQuery build() { return new PkgQuery(this); }
+
+        // The NONE and NOT_FOUND constants of the enums stand for an unset filter, an empty collection selects all values instead
+        private static <E> void addAll(final Set<E> target, final Collection<E> values, final E none, final E notFound) {
+            if (null == values) { return; }
+            for (E value : values) {
+                if (none == value || notFound == value) { throw new IllegalArgumentException(value + " can not be requested, an empty collection selects all values"); }
+                if (null != value) { target.add(value); }
+            }
+        }
+    }
+}
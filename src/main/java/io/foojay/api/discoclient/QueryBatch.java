@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.cache.ParallelScan;
+import io.foojay.api.discoclient.cache.PkgCatalog;
+import io.foojay.api.discoclient.pkg.Bitness;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.Pkg;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * Evaluates many queries in one traversal of a catalog. The attributes of each record are read once and every
+ * query is reduced to one bit mask per attribute, so checking a record against a query costs a few mask tests
+ * and overlapping queries share the decoding of the record. Queries are bucketed by distribution, a record is
+ * only checked against the queries that accept its distribution.
+ */
+final class QueryBatch {
+    private static final long ALL = -1L;
+
+
+    // ******************** Constructors **************************************
+    private QueryBatch() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * @return the result of each plan in the order of the plans, each ordered like the result of the plan itself
+     */
+    static List<List<Pkg>> execute(final CacheGeneration generation, final List<QueryPlan> plans, final ParallelScan scan) {
+        if (plans.isEmpty()) { return List.of(); }
+        final PkgCatalog catalog  = generation.getCatalog();
+        final Matcher[]  matchers = plans.stream().map(plan -> new Matcher(plan, generation)).toArray(Matcher[]::new);
+
+        final int[][] byDistribution = new int[Distribution.values().length][];
+        for (int d = 0; d < byDistribution.length; d++) {
+            final long bit = 1L << d;
+            byDistribution[d] = IntStream.range(0, matchers.length).filter(m -> 0 != (matchers[m].distributions & bit)).toArray();
+        }
+
+        for (int i = 0, size = catalog.size(); i < size; i++) {
+            final int[] candidates = byDistribution[catalog.getDistribution(i).ordinal()];
+            if (0 == candidates.length) { continue; }
+            final long architecture    = 1L << catalog.getArchitecture(i).ordinal();
+            final long archiveType     = 1L << catalog.getArchiveType(i).ordinal();
+            final long operatingSystem = 1L << catalog.getOperatingSystem(i).ordinal();
+            final long libCType        = 1L << catalog.getLibCType(i).ordinal();
+            final long packageType     = 1L << catalog.getPackageType(i).ordinal();
+            final long releaseStatus   = 1L << catalog.getReleaseStatus(i).ordinal();
+            final long termOfSupport   = 1L << catalog.getTermOfSupport(i).ordinal();
+            final long bitness         = 1L << catalog.getBitness(i).ordinal();
+            final long flags           = (catalog.isJavaFXBundled(i) ? Matcher.JAVAFX_BUNDLED : Matcher.JAVAFX_NOT_BUNDLED) |
+                                         (catalog.isDirectlyDownloadable(i) ? Matcher.DIRECTLY_DOWNLOADABLE : Matcher.NOT_DIRECTLY_DOWNLOADABLE);
+            final long versionKey      = catalog.getVersionKey(i);
+            for (int m : candidates) {
+                final Matcher matcher = matchers[m];
+                if (0 != (matcher.architectures & architecture) && 0 != (matcher.archiveTypes & archiveType) && 0 != (matcher.operatingSystems & operatingSystem) &&
+                    0 != (matcher.libCTypes & libCType) && 0 != (matcher.packageTypes & packageType) && 0 != (matcher.releaseStatus & releaseStatus) &&
+                    0 != (matcher.termsOfSupport & termOfSupport) && 0 != (matcher.bitness & bitness) && (matcher.flags & flags) == flags &&
+                    versionKey >= matcher.fromKey && versionKey <= matcher.toKey) {
+                    matcher.add(i);
+                }
+            }
+        }
+        return Arrays.stream(matchers).map(matcher -> List.copyOf(matcher.plan.order(catalog, matcher.matches(), scan).mapToObj(catalog::getPkg).collect(Collectors.toList())))
+                     .collect(Collectors.toList());
+    }
+
+    private static <E extends Enum<E>> long mask(final Collection<E> values) {
+        if (values.isEmpty()) { return ALL; }
+        long mask = 0;
+        for (E value : values) { mask |= 1L << value.ordinal(); }
+        return mask;
+    }
+
+    private static long flagMask(final Boolean value, final long set, final long notSet) {
+        return null == value ? set | notSet : value ? set : notSet;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    // One query reduced to attribute masks, collects the indices of the matching records in catalog order
+    private static final class Matcher {
+        private static final long      JAVAFX_BUNDLED            = 1L;
+        private static final long      JAVAFX_NOT_BUNDLED        = 1L << 1;
+        private static final long      DIRECTLY_DOWNLOADABLE     = 1L << 2;
+        private static final long      NOT_DIRECTLY_DOWNLOADABLE = 1L << 3;
+        private        final QueryPlan plan;
+        private        final long      distributions;
+        private        final long      architectures;
+        private        final long      archiveTypes;
+        private        final long      operatingSystems;
+        private        final long      libCTypes;
+        private        final long      packageTypes;
+        private        final long      releaseStatus;
+        private        final long      termsOfSupport;
+        private        final long      bitness;
+        private        final long      flags;
+        private        final long      fromKey;
+        private        final long      toKey;
+        private              int[]     matches;
+        private              int       size;
+
+
+        Matcher(final QueryPlan plan, final CacheGeneration generation) {
+            final PkgQuery query = plan.getQuery();
+            this.plan             = plan;
+            this.distributions    = plan.getDistributionFilter();
+            this.architectures    = mask(query.getArchitectures());
+            this.archiveTypes     = mask(query.getArchiveTypes());
+            this.operatingSystems = mask(query.getOperatingSystems());
+            this.libCTypes        = mask(query.getLibCTypes());
+            this.packageTypes     = PackageType.NONE == query.getPackageType() ? ALL & ~(1L << PackageType.NONE.ordinal()) : 1L << query.getPackageType().ordinal();
+            this.releaseStatus    = mask(query.getReleaseStatus());
+            this.termsOfSupport   = mask(query.getTermsOfSupport());
+            this.bitness          = Bitness.NONE == query.getBitness() ? ALL & ~(1L << Bitness.NONE.ordinal()) : 1L << query.getBitness().ordinal();
+            this.flags            = flagMask(query.getJavafxBundled(), JAVAFX_BUNDLED, JAVAFX_NOT_BUNDLED) |
+                                    flagMask(query.getDirectlyDownloadable(), DIRECTLY_DOWNLOADABLE, NOT_DIRECTLY_DOWNLOADABLE);
+            this.fromKey          = plan.getMinKey(generation);
+            this.toKey            = plan.getMaxKey(generation);
+            this.matches          = new int[16];
+            this.size             = 0;
+        }
+
+
+        void add(final int index) {
+            if (size == matches.length) { matches = Arrays.copyOf(matches, 2 * size); }
+            matches[size++] = index;
+        }
+
+        int[] matches() { return Arrays.copyOf(matches, size); }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.QueryPlan.AccessPath;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+
+/**
+ * Report of the access path and filter order the planner chose for a query on one cache generation, together
+ * with the estimates the choice was based on. Costs are given in predicate evaluations.
+ */
+public final class QueryExplain {
+    private final long                    generationNumber;
+    private final int                     catalogSize;
+    private final AccessPath              accessPath;
+    private final List<String>            bitmapFilters;
+    private final Map<String, Double>     filters;
+    private final double                  estimatedCandidates;
+    private final double                  estimatedRows;
+    private final double                  estimatedCost;
+    private final Map<AccessPath, Double> alternatives;
+
+
+    // ******************** Constructors **************************************
+    QueryExplain(final long generationNumber, final int catalogSize, final AccessPath accessPath, final List<String> bitmapFilters, final Map<String, Double> filters,
+                 final double estimatedCandidates, final double estimatedRows, final double estimatedCost, final Map<AccessPath, Double> alternatives) {
+        this.generationNumber    = generationNumber;
+        this.catalogSize         = catalogSize;
+        this.accessPath          = accessPath;
+        this.bitmapFilters       = List.copyOf(bitmapFilters);
+        this.filters             = Collections.unmodifiableMap(new LinkedHashMap<>(filters));
+        this.estimatedCandidates = estimatedCandidates;
+        this.estimatedRows       = estimatedRows;
+        this.estimatedCost       = estimatedCost;
+        this.alternatives        = Collections.unmodifiableMap(new LinkedHashMap<>(alternatives));
+    }
+
+
+    // ******************** Methods *******************************************
+    public long getGenerationNumber() { return generationNumber; }
+
+    public int getCatalogSize() { return catalogSize; }
+
+    public AccessPath getAccessPath() { return accessPath; }
+
+    /**
+     * @return names of the filters that are answered by intersecting attribute bitmaps, empty unless the access path is a bitmap intersection
+     */
+    public List<String> getBitmapFilters() { return bitmapFilters; }
+
+    /**
+     * @return estimated selectivity of the filters that are checked per candidate, in the order they are checked
+     */
+    public Map<String, Double> getFilters() { return filters; }
+
+    public double getEstimatedCandidates() { return estimatedCandidates; }
+
+    public double getEstimatedRows() { return estimatedRows; }
+
+    public double getEstimatedCost() { return estimatedCost; }
+
+    /**
+     * @return estimated cost of every access path the planner considered, including the chosen one
+     */
+    public Map<AccessPath, Double> getAlternatives() { return alternatives; }
+
+    @Override public String toString() {
+        return new StringBuilder().append("{")
+                                  .append("\"generation\":").append(generationNumber).append(",")
+                                  .append("\"catalog_size\":").append(catalogSize).append(",")
+                                  .append("\"access_path\":\"").append(accessPath.getUiString()).append("\",")
+                                  .append("\"bitmap_filters\":").append(bitmapFilters.stream().map(name -> "\"" + name + "\"").collect(Collectors.joining(",", "[", "]"))).append(",")
+                                  .append("\"filters\":").append(filters.entrySet().stream().map(entry -> "\"" + entry.getKey() + "\":" + format(entry.getValue())).collect(Collectors.joining(",", "{", "}"))).append(",")
+                                  .append("\"estimated_candidates\":").append(format(estimatedCandidates)).append(",")
+                                  .append("\"estimated_rows\":").append(format(estimatedRows)).append(",")
+                                  .append("\"estimated_cost\":").append(format(estimatedCost)).append(",")
+                                  .append("\"alternatives\":").append(alternatives.entrySet().stream().map(entry -> "\"" + entry.getKey().getUiString() + "\":" + format(entry.getValue())).collect(Collectors.joining(",", "{", "}")))
+                                  .append("}")
+                                  .toString();
+    }
+
+    private static String format(final double value) { return String.format(Locale.US, "%.3f", value); }
+}
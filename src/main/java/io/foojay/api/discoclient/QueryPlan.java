@@ -0,0 +1,867 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.PkgFacets.Facet;
+import io.foojay.api.discoclient.cache.BitmapIndex;
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.cache.CatalogStatistics;
+import io.foojay.api.discoclient.cache.LatestIndex;
+import io.foojay.api.discoclient.cache.ParallelScan;
+import io.foojay.api.discoclient.cache.PkgCatalog;
+import io.foojay.api.discoclient.cache.ScopeMask;
+import io.foojay.api.discoclient.cache.TopK;
+import io.foojay.api.discoclient.cache.VersionIndex;
+import io.foojay.api.discoclient.cache.VersionKey;
+import io.foojay.api.discoclient.pkg.ApiFeature;
+import io.foojay.api.discoclient.pkg.Architecture;
+import io.foojay.api.discoclient.pkg.ArchiveType;
+import io.foojay.api.discoclient.pkg.Bitness;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.Latest;
+import io.foojay.api.discoclient.pkg.LibCType;
+import io.foojay.api.discoclient.pkg.MajorVersion;
+import io.foojay.api.discoclient.pkg.OperatingSystem;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+import io.foojay.api.discoclient.pkg.TermOfSupport;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import io.foojay.api.discoclient.util.Comparison;
+import io.foojay.api.discoclient.util.Constants;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntToLongFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * Compiled form of a PkgQuery. Constant filters are folded away when the plan is compiled, the access path
+ * and the order of the remaining filters are chosen per cache generation by comparing estimated costs that
+ * are derived from the value histograms of the generation. A plan can be executed against any cache
+ * generation, it never calls the disco api but can be translated into a disco api request.
+ */
+public final class QueryPlan {
+    private static final long               ALL_DISTRIBUTIONS = -1L;
+    private static final long               LOWEST_KEY        = VersionKey.equalMin(VersionKey.of(new VersionNumber(6)));
+    private static final double             CANDIDATE_COST    = 1.0;
+    private static final double             WORD_COST         = 1.0;
+    private static final int[]              NAME_RANK         = nameRanks();
+    private static final int                FAILED_NONE       = -1;
+    private static final int                FAILED_SEVERAL    = -2;
+    private        final PkgQuery           query;
+    private        final AccessPath         fixedPath;
+    private        final long               distributionFilter;
+    private        final List<Distribution> distributions;
+    private        final List<Distribution> walkOrder;
+    private        final Filter             distributionCheck;
+    private        final List<Filter>       filters;
+    private        final boolean            versionBounded;
+    private        final boolean            remoteExact;
+    private        volatile Physical        physical;
+
+    public enum AccessPath {
+        NONE("none", "No package can match the query"),
+        LATEST_OVERALL("latest overall", "Latest view, one lookup per group of packages with equal attributes"),
+        LATEST_PER_DISTRIBUTION("latest per distribution", "Latest view, groups of each distribution"),
+        LATEST_PER_VERSION("latest per version", "Latest view, feature version range per group"),
+        VERSION_INDEX("version index", "Version index, exact version key per distribution"),
+        VERSION_RANGE("version range", "Version index, version key range per distribution"),
+        DISTRIBUTION_INDEX("distribution index", "Version index, all packages of each distribution"),
+        BITMAP_INTERSECTION("bitmap intersection", "Attribute bitmaps intersected word by word"),
+        FULL_SCAN("full scan", "All packages of the catalog");
+
+        private final String uiString;
+        private final String description;
+
+
+        AccessPath(final String uiString, final String description) {
+            this.uiString    = uiString;
+            this.description = description;
+        }
+
+
+        public String getUiString() { return uiString; }
+
+        public String getDescription() { return description; }
+    }
+
+
+    // ******************** Constructors **************************************
+    QueryPlan(final PkgQuery query) {
+        this.query = query;
+
+        // Scopes and requested distributions are folded into one mask over the distributions
+        final long scopeFilter     = query.getScopes().isEmpty() ? ALL_DISTRIBUTIONS : ScopeMask.distributionsInScope(query.getScopes());
+        long       requestedFilter = query.getDistributions().isEmpty() ? ALL_DISTRIBUTIONS : 0;
+        for (Distribution distribution : query.getDistributions()) { requestedFilter |= 1L << distribution.ordinal(); }
+        this.distributionFilter = scopeFilter & requestedFilter;
+        this.distributions      = ScopeMask.filter(query.getDistributions().isEmpty() ? Distribution.getAsList() : query.getDistributions(), distributionFilter);
+        this.walkOrder          = distributions.stream().sorted(Comparator.comparing(Distribution::name).reversed()).collect(Collectors.toList());
+
+        // The latest views define the result themselves, all other queries are planned per generation
+        if (0 == distributionFilter) {
+            this.fixedPath = AccessPath.NONE;
+        } else if (Comparison.EQUAL != query.getComparison()) {
+            this.fixedPath = null;
+        } else {
+            switch (query.getLatest()) {
+                case OVERALL         : this.fixedPath = AccessPath.LATEST_OVERALL; break;
+                case PER_DISTRIBUTION: this.fixedPath = AccessPath.LATEST_PER_DISTRIBUTION; break;
+                case PER_VERSION     : this.fixedPath = AccessPath.LATEST_PER_VERSION; break;
+                default              : this.fixedPath = null; break;
+            }
+        }
+        this.versionBounded = Comparison.EQUAL != query.getComparison() || null != query.getVersionNumber();
+
+        if (ALL_DISTRIBUTIONS == distributionFilter) {
+            this.distributionCheck = null;
+        } else {
+            final long mask = distributionFilter;
+            this.distributionCheck = new Filter("distribution", statistics -> sum(statistics, distributions), index -> index.union(distributions), distributions.size(),
+                                                FusedPredicate.in("getDistribution", Distribution.class, mask));
+        }
+
+        final List<Filter> filterList = new ArrayList<>();
+        addSetFilter(filterList, "architecture", query.getArchitectures(), "getArchitecture", Architecture.class);
+        addSetFilter(filterList, "archive_type", query.getArchiveTypes(), "getArchiveType", ArchiveType.class);
+        addSetFilter(filterList, "operating_system", query.getOperatingSystems(), "getOperatingSystem", OperatingSystem.class);
+        addSetFilter(filterList, "libc_type", query.getLibCTypes(), "getLibCType", LibCType.class);
+        addSetFilter(filterList, "term_of_support", query.getTermsOfSupport(), "getTermOfSupport", TermOfSupport.class);
+        addSetFilter(filterList, "release_status", query.getReleaseStatus(), "getReleaseStatus", ReleaseStatus.class);
+        final PackageType packageType = query.getPackageType();
+        if (PackageType.NONE == packageType) {
+            filterList.add(new Filter("package_type", statistics -> 1.0 - ratio(statistics.count(PackageType.NONE), statistics), null, 0,
+                                      FusedPredicate.in("getPackageType", PackageType.class, ~(1L << PackageType.NONE.ordinal()))));
+        } else {
+            filterList.add(new Filter("package_type", statistics -> ratio(statistics.count(packageType), statistics), index -> index.get(packageType), 1,
+                                      FusedPredicate.in("getPackageType", PackageType.class, 1L << packageType.ordinal())));
+        }
+        final Bitness bitness = query.getBitness();
+        if (Bitness.NONE == bitness) {
+            filterList.add(new Filter("bitness", statistics -> 1.0 - ratio(statistics.count(Bitness.NONE), statistics), null, 0,
+                                      FusedPredicate.in("getBitness", Bitness.class, ~(1L << Bitness.NONE.ordinal()))));
+        } else {
+            filterList.add(new Filter("bitness", statistics -> ratio(statistics.count(bitness), statistics), index -> index.get(bitness), 1,
+                                      FusedPredicate.in("getBitness", Bitness.class, 1L << bitness.ordinal())));
+        }
+        final Boolean javafxBundled = query.getJavafxBundled();
+        if (null != javafxBundled) {
+            filterList.add(new Filter("javafx_bundled", statistics -> ratio(statistics.countJavafxBundled(javafxBundled), statistics), index -> index.getJavafxBundled(javafxBundled), 1,
+                                      FusedPredicate.is("isJavaFXBundled", javafxBundled)));
+        }
+        final Boolean directlyDownloadable = query.getDirectlyDownloadable();
+        if (null != directlyDownloadable) {
+            filterList.add(new Filter("directly_downloadable", statistics -> ratio(statistics.countDirectlyDownloadable(directlyDownloadable), statistics),
+                                      index -> index.getDirectlyDownloadable(directlyDownloadable), 1, FusedPredicate.is("isDirectlyDownloadable", directlyDownloadable)));
+        }
+        this.filters     = Collections.unmodifiableList(filterList);
+        this.remoteExact = (Comparison.EQUAL == query.getComparison() || null == query.getVersionNumber()) && query.getScopes().size() <= 1 && 0 == query.getNewest();
+    }
+
+
+    // ******************** Methods *******************************************
+    public PkgQuery getQuery() { return query; }
+
+    /**
+     * @return true if the disco api request of toUrl() selects exactly the packages of the query, false if its result has to be filtered by the plan
+     */
+    public boolean isRemoteExact() { return remoteExact; }
+
+    /**
+     * @return the access path and filter order that are used to execute the query on the given generation
+     */
+    public QueryExplain explain(final CacheGeneration generation) { return physical(generation).explain; }
+
+    /**
+     * @return the packages of the generation that match the query in the order of the result
+     */
+    public List<Pkg> execute(final CacheGeneration generation) { return execute(generation, ParallelScan.SEQUENTIAL); }
+    /**
+     * @param scan runs the filtering and sorting of large candidate sets in parallel
+     * @return the packages of the generation that match the query in the order of the result
+     */
+    public List<Pkg> execute(final CacheGeneration generation, final ParallelScan scan) {
+        final PkgCatalog catalog = generation.getCatalog();
+        return indices(generation, scan).mapToObj(catalog::getPkg).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Walks the version index of the generation in the order of the result and checks the filters lazily, a consumer
+     * that stops early only pays for the records it consumed. The latest views and the newest packages overall or
+     * per feature version are evaluated completely.
+     * @return the record indices of the packages of the generation that match the query in the order of the result
+     */
+    public IntStream stream(final CacheGeneration generation) { return stream(generation, null); }
+
+    /**
+     * @return the page of the result that starts at the given offset
+     */
+    public PkgPage page(final CacheGeneration generation, final int offset, final int limit) {
+        if (offset < 0) { throw new IllegalArgumentException("offset must not be negative"); }
+        return toPage(generation, stream(generation).skip(offset), offset, limit, false);
+    }
+    /**
+     * Continues a paged result after the last package of the previous page. The cursor identifies that package by its
+     * position in the sort order, so pages neither repeat nor skip packages that exist in both generations if the
+     * cache was refreshed between two pages.
+     * @param cursor next cursor of the previous page
+     */
+    public PkgPage page(final CacheGeneration generation, final String cursor, final int limit) {
+        if (!isStreamable()) { return page(generation, execute(generation), cursor, limit); }
+        final Position after = Position.decode(cursor);
+        return toPage(generation, stream(generation, after), after.offset, limit, after.generationNumber != generation.getNumber());
+    }
+    // Pages of an already computed result of the generation
+    PkgPage page(final CacheGeneration generation, final List<Pkg> result, final int offset, final int limit) {
+        if (offset < 0) { throw new IllegalArgumentException("offset must not be negative"); }
+        return slice(generation, result, Math.min(offset, result.size()), limit, false);
+    }
+    PkgPage page(final CacheGeneration generation, final List<Pkg> result, final String cursor, final int limit) {
+        final Position after = Position.decode(cursor);
+        if (after.generationNumber == generation.getNumber()) { return slice(generation, result, Math.min(after.offset, result.size()), limit, false); }
+        // Ties of the latest views are not ordered by id, the package of the cursor is looked up before falling back to its sort key
+        final PkgCatalog catalog = generation.getCatalog();
+        int from = 0;
+        while (from < result.size() && !after.id.equals(result.get(from).getId())) { from++; }
+        if (from < result.size()) {
+            from++;
+        } else {
+            from = 0;
+            while (from < result.size() && !after.isBefore(catalog, catalog.indexOf(result.get(from).getId()))) { from++; }
+        }
+        return slice(generation, result, from, limit, true);
+    }
+
+    /**
+     * @return true if stream() evaluates the query lazily, false if the result is computed completely as for the latest views
+     */
+    public boolean isStreamable() { return null == fixedPath && 0 == query.getNewest(); }
+
+    // Queries that scan the catalog or large bitmaps on their own are cheaper in a shared traversal of a QueryBatch
+    boolean isSharedScan(final CacheGeneration generation) {
+        if (null != fixedPath) { return false; }
+        final AccessPath accessPath = physical(generation).accessPath;
+        return AccessPath.FULL_SCAN == accessPath || AccessPath.BITMAP_INTERSECTION == accessPath;
+    }
+
+    long getDistributionFilter() { return distributionFilter; }
+
+    // Checks one record of the generation against all filters, used to evaluate changes of the catalog incrementally
+    boolean matches(final CacheGeneration generation, final int index) {
+        if (0 == distributionFilter) { return false; }
+        final PkgCatalog catalog    = generation.getCatalog();
+        final Physical   physical   = physical(generation);
+        final long       versionKey = catalog.getVersionKey(index);
+        return versionKey >= physical.fromKey && versionKey <= physical.toKey && (null == distributionCheck || distributionCheck.predicate.test(catalog, index)) &&
+               physical.orderedCheck.test(catalog, index);
+    }
+
+    // Version key range of the result on the generation, unbounded if the query has no version
+    long getMinKey(final CacheGeneration generation) { return physical(generation).fromKey; }
+
+    long getMaxKey(final CacheGeneration generation) { return physical(generation).toKey; }
+
+    // Orders the matches of a query that were found outside of the plan like its own result
+    IntStream order(final PkgCatalog catalog, final int[] matches, final ParallelScan scan) { return sorted(catalog, newest(catalog, matches), scan); }
+
+    /**
+     * @return the record indices of the packages of the generation that match the query in the order of the result
+     */
+    public IntStream indices(final CacheGeneration generation) { return indices(generation, ParallelScan.SEQUENTIAL); }
+    /**
+     * @param scan runs the filtering and sorting of large candidate sets in parallel
+     * @return the record indices of the packages of the generation that match the query in the order of the result
+     */
+    public IntStream indices(final CacheGeneration generation, final ParallelScan scan) {
+        final PkgCatalog     catalog    = generation.getCatalog();
+        final long           versionKey = query.getVersionKey();
+        final Physical       physical   = physical(generation);
+        final FusedPredicate residual   = physical.residualCheck;
+        switch (physical.accessPath) {
+            case LATEST_OVERALL: {
+                final LatestIndex   latestIndex    = generation.getLatestIndex();
+                final VersionNumber versionNumber  = query.getVersionNumber();
+                final boolean       featurePresent = null != versionNumber && versionNumber.getFeature().isPresent();
+                final long          featureMin     = featurePresent ? VersionKey.featureMin(versionNumber.getFeature().getAsInt()) : Long.MIN_VALUE;
+                final long          featureMax     = featurePresent ? VersionKey.featureMax(versionNumber.getFeature().getAsInt()) : Long.MAX_VALUE;
+                final boolean       allDistros     = query.getDistributions().isEmpty();
+                final int[]         groups         = latestIndex.representatives().filter(i -> residual.test(catalog, i)).toArray();
+                final TopK          newestGroup    = new TopK(1);
+                for (int group : groups) {
+                    final Distribution distribution = catalog.getDistribution(group);
+                    if (!featurePresent && allDistros && (distribution == Distribution.GRAALVM_CE8 || distribution == Distribution.GRAALVM_CE11 ||
+                                                          distribution == Distribution.LIBERICA_NATIVE || distribution == Distribution.MANDREL)) { continue; }
+                    final long key = latestIndex.getMaxVersionKey(group, featureMin, featureMax);
+                    if (!featurePresent || VersionKey.NONE != key) { newestGroup.offer(key, group, group); }
+                }
+                // compareTo treats a GA release as equal to its early access builds, those are part of the latest version
+                final long maxKey = newestGroup.isEmpty() ? versionKey : newestGroup.getMaxKey();
+                final long minKey = VersionKey.equalMin(maxKey);
+                return newest(catalog, sorted(catalog, IntStream.of(groups).flatMap(i -> latestIndex.getIndices(i, minKey, maxKey)).toArray(), scan));
+            }
+            case LATEST_PER_DISTRIBUTION: {
+                final LatestIndex latestIndex  = generation.getLatestIndex();
+                final int[][]     groupsByDist = new int[Distribution.values().length][];
+                final int[]       counts       = new int[Distribution.values().length];
+                final int[]       groups       = latestIndex.representatives().filter(i -> residual.test(catalog, i)).toArray();
+                for (int group : groups) { counts[catalog.getDistribution(group).ordinal()]++; }
+                for (int d = 0; d < counts.length; d++) { groupsByDist[d] = new int[counts[d]]; counts[d] = 0; }
+                for (int group : groups) {
+                    final int d = catalog.getDistribution(group).ordinal();
+                    groupsByDist[d][counts[d]++] = group;
+                }
+                // The newest group of each distribution defines the latest version of the distribution
+                final long[] maxKeys = new long[counts.length];
+                Arrays.fill(maxKeys, VersionKey.NONE);
+                for (int group : TopK.select(groups, latestIndex::getMaxVersionKey, i -> i, i -> catalog.getDistribution(i).ordinal(), 1)) {
+                    maxKeys[catalog.getDistribution(group).ordinal()] = latestIndex.getMaxVersionKey(group);
+                }
+                return newest(catalog, distributions.stream().flatMapToInt(distribution -> {
+                    final long maxKeyOfDistro = maxKeys[distribution.ordinal()];
+                    if (VersionKey.NONE == maxKeyOfDistro) { return IntStream.empty(); }
+                    final long minKeyOfDistro = VersionKey.equalMin(maxKeyOfDistro);
+                    return sorted(catalog, IntStream.of(groupsByDist[distribution.ordinal()]).flatMap(i -> latestIndex.getIndices(i, minKeyOfDistro, maxKeyOfDistro)).toArray(), scan);
+                }));
+            }
+            case LATEST_PER_VERSION: {
+                final LatestIndex latestIndex = generation.getLatestIndex();
+                final int         feature     = VersionKey.feature(versionKey);
+                return newest(catalog, sorted(catalog, latestIndex.representatives()
+                                                                  .filter(i -> residual.test(catalog, i))
+                                                                  .filter(i -> catalog.isLatestBuildAvailable(i))
+                                                                  .flatMap(i -> latestIndex.getIndices(i, VersionKey.featureMin(feature), VersionKey.featureMax(feature)))
+                                                                  .toArray(), scan));
+            }
+            case VERSION_INDEX:
+            case VERSION_RANGE:
+            case DISTRIBUTION_INDEX: {
+                final VersionIndex versionIndex = generation.getVersionIndex();
+                final int[]        probed       = distributions.stream().flatMapToInt(distribution -> versionIndex.range(distribution, physical.fromKey, physical.toKey)).toArray();
+                return sorted(catalog, newest(catalog, scan.filter(probed, i -> residual.test(catalog, i))), scan);
+            }
+            case BITMAP_INTERSECTION: {
+                final BitmapIndex bitmapIndex = generation.getBitmapIndex();
+                final long[]      bits        = new long[bitmapIndex.getWords()];
+                Arrays.fill(bits, -1L);
+                for (Filter filter : physical.bitmapFilters) { BitmapIndex.intersect(bits, filter.bitmap.apply(bitmapIndex)); }
+                return sorted(catalog, newest(catalog, scan.filter(BitmapIndex.indices(bits), i -> residual.test(catalog, i))), scan);
+            }
+            case FULL_SCAN:
+                return sorted(catalog, newest(catalog, scan.filter(0, catalog.size(), i -> residual.test(catalog, i))), scan);
+            case NONE:
+            default:
+                return IntStream.empty();
+        }
+    }
+
+    /**
+     * Counts the packages of the generation that match the query per value of each facet in one pass over the catalog.
+     * Records that fail more than one facet filter can not contribute to any count and are skipped after the second
+     * failed check, a record that fails exactly one facet filter is only counted for that facet.
+     */
+    public PkgFacets facets(final CacheGeneration generation, final ParallelScan scan) {
+        final PkgCatalog   catalog     = generation.getCatalog();
+        final Facet[]      facets      = Facet.values();
+        final Filter[]     facetChecks = new Filter[facets.length];
+        final List<Filter> fixedChecks = new ArrayList<>();
+        for (Filter filter : filters) {
+            final Facet facet = Facet.fromFilterName(filter.name);
+            if (null == facet) { fixedChecks.add(filter); } else { facetChecks[facet.ordinal()] = filter; }
+        }
+        // Scopes restrict all counts, the requested distributions and the version only the counts of the other facets
+        if (!query.getScopes().isEmpty()) {
+            final long scopeMask = ScopeMask.distributionsInScope(query.getScopes());
+            fixedChecks.add(new Filter("scope", statistics -> 1.0, null, 0, FusedPredicate.in("getDistribution", Distribution.class, scopeMask)));
+        }
+        if (!query.getDistributions().isEmpty()) {
+            facetChecks[Facet.DISTRIBUTION.ordinal()] = new Filter("distribution", statistics -> 1.0, null, 0, FusedPredicate.in("getDistribution", Distribution.class, query.getDistributions()));
+        }
+        if (versionBounded) {
+            facetChecks[Facet.FEATURE_VERSION.ordinal()] = new Filter("version", statistics -> 1.0, null, 0, FusedPredicate.versionIn(getFromKey(), getToKey(generation)));
+        }
+        final FusedPredicate fixed      = fuse(fixedChecks.toArray(new Filter[0]));
+        final int[]          candidates = scan.filter(0, catalog.size(), i -> fixed.test(catalog, i) && failedFacet(facetChecks, catalog, i) != FAILED_SEVERAL);
+
+        int           total  = 0;
+        final int[][] counts = new int[facets.length][];
+        for (int index : candidates) {
+            final int failed = failedFacet(facetChecks, catalog, index);
+            if (FAILED_NONE == failed) {
+                total++;
+                for (Facet facet : facets) { counts[facet.ordinal()] = increment(counts[facet.ordinal()], facetValue(facet, catalog, index)); }
+            } else {
+                counts[failed] = increment(counts[failed], facetValue(facets[failed], catalog, index));
+            }
+        }
+        return new PkgFacets(generation.getNumber(), total, counts);
+    }
+
+    /**
+     * Translates the plan into a request of the packages endpoint of the disco api. Version comparisons other
+     * than equal, more than one scope and the selection of the newest packages can not be expressed in a request,
+     * they are left out of the url and isRemoteExact() returns false.
+     */
+    public String toUrl(final String discoApiUrl) {
+        final StringBuilder queryBuilder  = new StringBuilder().append(discoApiUrl).append(Constants.PACKAGES_PATH);
+        final int           initialLength = queryBuilder.length();
+        if (null != query.getVersionNumber() && Comparison.EQUAL == query.getComparison()) {
+            appendParameter(queryBuilder, initialLength, Constants.API_VERSION, query.getVersionNumber().toString());
+        }
+        query.getDistributions().forEach(distribution -> appendParameter(queryBuilder, initialLength, Constants.API_DISTRIBUTION, distribution.getApiString()));
+        if (Comparison.EQUAL == query.getComparison() && Latest.NONE != query.getLatest()) {
+            appendParameter(queryBuilder, initialLength, Constants.API_LATEST, query.getLatest().getApiString());
+        }
+        appendParameters(queryBuilder, initialLength, Constants.API_OPERATING_SYSTEM, query.getOperatingSystems());
+        appendParameters(queryBuilder, initialLength, Constants.API_LIBC_TYPE, query.getLibCTypes());
+        appendParameters(queryBuilder, initialLength, Constants.API_ARCHITECTURE, query.getArchitectures());
+        if (Bitness.NONE != query.getBitness()) { appendParameter(queryBuilder, initialLength, Constants.API_BITNESS, query.getBitness().getApiString()); }
+        appendParameters(queryBuilder, initialLength, Constants.API_ARCHIVE_TYPE, query.getArchiveTypes());
+        if (PackageType.NONE != query.getPackageType()) { appendParameter(queryBuilder, initialLength, Constants.API_PACKAGE_TYPE, query.getPackageType().getApiString()); }
+        if (null != query.getJavafxBundled()) { appendParameter(queryBuilder, initialLength, Constants.API_JAVAFX_BUNDLED, query.getJavafxBundled().toString()); }
+        if (null != query.getDirectlyDownloadable()) { appendParameter(queryBuilder, initialLength, Constants.API_DIRECTLY_DOWNLOADABLE, query.getDirectlyDownloadable().toString()); }
+        appendParameters(queryBuilder, initialLength, Constants.API_RELEASE_STATUS, query.getReleaseStatus());
+        appendParameters(queryBuilder, initialLength, Constants.API_SUPPORT_TERM, query.getTermsOfSupport());
+        if (1 == query.getScopes().size()) { appendParameter(queryBuilder, initialLength, Constants.API_DISCOVERY_SCOPE_ID, query.getScopes().iterator().next().getApiString()); }
+        return queryBuilder.toString();
+    }
+
+    @Override public String toString() {
+        return new StringBuilder().append("{")
+                                  .append("\"access_path\":\"").append(null == fixedPath ? "cost based" : fixedPath.getUiString()).append("\",")
+                                  .append("\"distributions\":").append(ALL_DISTRIBUTIONS == distributionFilter ? "[]" : distributions.toString()).append(",")
+                                  .append("\"filters\":").append(filters.stream().map(filter -> "\"" + filter.name + "\"").collect(Collectors.joining(",", "[", "]")))
+                                  .append("}")
+                                  .toString();
+    }
+
+    // Walks the result of a streamable query, starting after the given position if there is one
+    private IntStream stream(final CacheGeneration generation, final Position after) {
+        final PkgCatalog     catalog      = generation.getCatalog();
+        final Physical       physical     = physical(generation);
+        final VersionIndex   versionIndex = generation.getVersionIndex();
+        final FusedPredicate ordered      = physical.orderedCheck;
+        if (null == after && null == fixedPath && PkgQuery.Grouping.PER_DISTRIBUTION == query.getGrouping()) {
+            // The walk visits each distribution by version descending, its first matches are its newest packages
+            return walkOrder.stream().flatMapToInt(distribution -> versionIndex.descending(distribution, physical.fromKey, physical.toKey)
+                                                                               .filter(i -> ordered.test(catalog, i))
+                                                                               .limit(query.getNewest()));
+        }
+        if (!isStreamable()) { return indices(generation); }
+        return walkOrder.stream()
+                        .filter(distribution -> null == after || distribution.name().compareTo(after.distribution.name()) <= 0)
+                        .flatMapToInt(distribution -> {
+                            if (null == after || distribution != after.distribution) { return versionIndex.descending(distribution, physical.fromKey, physical.toKey); }
+                            return versionIndex.descending(distribution, physical.fromKey, Math.min(physical.toKey, after.versionKey)).filter(i -> after.isBefore(catalog, i));
+                        })
+                        .filter(i -> ordered.test(catalog, i));
+    }
+
+    private static PkgPage toPage(final CacheGeneration generation, final IntStream indices, final int offset, final int limit, final boolean generationChanged) {
+        if (limit < 1) { throw new IllegalArgumentException("limit must be at least 1"); }
+        final int[]  page = indices.limit(limit + 1L).toArray();
+        final int    size = Math.min(limit, page.length);
+        final String next = page.length > limit ? Position.of(generation, page[limit - 1], offset + limit).encode() : null;
+        return new PkgPage(generation.getCatalog().getPkgs(Arrays.copyOf(page, size)), generation.getNumber(), next, generationChanged);
+    }
+
+    private static PkgPage slice(final CacheGeneration generation, final List<Pkg> result, final int from, final int limit, final boolean generationChanged) {
+        if (limit < 1) { throw new IllegalArgumentException("limit must be at least 1"); }
+        final int       to   = (int) Math.min((long) from + limit, result.size());
+        final List<Pkg> pkgs = result.subList(from, to);
+        final String    next = to < result.size() ? Position.of(generation, generation.getCatalog().indexOf(pkgs.get(pkgs.size() - 1).getId()), to).encode() : null;
+        return new PkgPage(pkgs, generation.getNumber(), next, generationChanged);
+    }
+
+    private Physical physical(final CacheGeneration generation) {
+        Physical current = physical;
+        if (null == current || current.generationNumber != generation.getNumber()) {
+            current  = plan(generation);
+            physical = current;
+        }
+        return current;
+    }
+
+    /*
+     * Chooses the cheapest access path for the generation. Costs count candidate fetches, predicate evaluations and
+     * bitmap word operations, the selectivities of the filters are taken from the histograms of the generation and
+     * are assumed to be independent. Residual filters are checked in the order of ascending selectivity.
+     */
+    private Physical plan(final CacheGeneration generation) {
+        final CatalogStatistics   statistics    = generation.getStatistics();
+        final int                 size          = statistics.getSize();
+        final Map<Filter, Double> selectivities = new HashMap<>();
+        filters.forEach(filter -> selectivities.put(filter, filter.estimator.applyAsDouble(statistics)));
+        if (null != distributionCheck) { selectivities.put(distributionCheck, distributionCheck.estimator.applyAsDouble(statistics)); }
+        final Filter[] ordered = filters.stream().sorted(Comparator.comparingDouble(selectivities::get)).toArray(Filter[]::new);
+
+        if (null != fixedPath) {
+            final List<Filter> residual = new ArrayList<>(filters);
+            if (null != distributionCheck && AccessPath.LATEST_PER_DISTRIBUTION != fixedPath) { residual.add(distributionCheck); }
+            final Candidate candidate = new Candidate(fixedPath, List.of(), residual, AccessPath.NONE == fixedPath ? 0 : size, 0, selectivities);
+            return candidate.toPhysical(generation, ordered, Long.MIN_VALUE, Long.MAX_VALUE, Map.of(fixedPath, candidate.cost));
+        }
+
+        final long   fromKey      = versionBounded ? getFromKey() : Long.MIN_VALUE;
+        final long   toKey        = versionBounded ? getToKey(generation) : Long.MAX_VALUE;
+        final Filter versionCheck = versionBounded ? new Filter("version", s -> ratio(estimateVersions(s, Distribution.getAsList(), fromKey, toKey), s), null, 0,
+                                                                FusedPredicate.versionIn(fromKey, toKey)) : null;
+        if (null != versionCheck) { selectivities.put(versionCheck, versionCheck.estimator.applyAsDouble(statistics)); }
+        final List<Candidate> candidates = new ArrayList<>();
+
+        // Index probe, two binary searches per distribution
+        if (versionBounded || null != distributionCheck) {
+            final AccessPath path      = versionBounded ? (Comparison.EQUAL == query.getComparison() ? AccessPath.VERSION_INDEX : AccessPath.VERSION_RANGE) : AccessPath.DISTRIBUTION_INDEX;
+            final double     probed    = versionBounded ? estimateVersions(statistics, distributions, fromKey, toKey) : distributions.stream().mapToInt(statistics::count).sum();
+            final double     probeCost = distributions.size() * 2 * (Math.log(size + 2) / Math.log(2));
+            candidates.add(new Candidate(path, List.of(), filters, probed, probeCost, selectivities));
+        }
+
+        // Bitmap intersection over the most selective prefix of the filters that have bitmaps
+        final List<Filter> bitmapable = new ArrayList<>();
+        filters.stream().filter(filter -> null != filter.bitmap).forEach(bitmapable::add);
+        if (null != distributionCheck) { bitmapable.add(distributionCheck); }
+        bitmapable.sort(Comparator.comparingDouble(selectivities::get));
+        final int words = (size + 63) >>> 6;
+        Candidate bestBitmap = null;
+        double    fraction   = 1.0;
+        double    bitmapCost = words;
+        for (int m = 1; m <= bitmapable.size(); m++) {
+            final Filter filter = bitmapable.get(m - 1);
+            fraction   *= selectivities.get(filter);
+            bitmapCost += words * (filter.bitmapCount + 1) * WORD_COST;
+            final List<Filter> residual = new ArrayList<>(bitmapable.subList(m, bitmapable.size()));
+            filters.stream().filter(f -> null == f.bitmap).forEach(residual::add);
+            if (null != versionCheck) { residual.add(versionCheck); }
+            final Candidate candidate = new Candidate(AccessPath.BITMAP_INTERSECTION, bitmapable.subList(0, m), residual, size * fraction, bitmapCost, selectivities);
+            if (null == bestBitmap || candidate.cost < bestBitmap.cost) { bestBitmap = candidate; }
+        }
+        if (null != bestBitmap) { candidates.add(bestBitmap); }
+
+        final List<Filter> scanResidual = new ArrayList<>(filters);
+        if (null != distributionCheck) { scanResidual.add(distributionCheck); }
+        if (null != versionCheck)      { scanResidual.add(versionCheck); }
+        candidates.add(new Candidate(AccessPath.FULL_SCAN, List.of(), scanResidual, size, 0, selectivities));
+
+        final Map<AccessPath, Double> alternatives = new LinkedHashMap<>();
+        Candidate                     best         = null;
+        for (Candidate candidate : candidates) {
+            alternatives.put(candidate.accessPath, candidate.cost);
+            if (null == best || candidate.cost < best.cost) { best = candidate; }
+        }
+        return best.toPhysical(generation, ordered, fromKey, toKey, alternatives);
+    }
+
+    private long getFromKey() {
+        switch (query.getComparison()) {
+            case LESS_THAN            :
+            case LESS_THAN_OR_EQUAL   : return LOWEST_KEY;
+            case GREATER_THAN         : return query.getVersionKey() + 1;
+            case GREATER_THAN_OR_EQUAL:
+            case EQUAL                : return VersionKey.equalMin(query.getVersionKey());
+            default                   : return LOWEST_KEY;
+        }
+    }
+
+    // The upper bound of open ranges is the newest major version, taken from the catalog if the generation has no major versions
+    private long getToKey(final CacheGeneration generation) {
+        switch (query.getComparison()) {
+            case LESS_THAN         : return VersionKey.equalMin(query.getVersionKey()) - 1;
+            case LESS_THAN_OR_EQUAL:
+            case EQUAL             : return query.getVersionKey();
+            default:
+                final List<MajorVersion> majorVersions = generation.getMajorVersions();
+                final int                newest        = majorVersions.isEmpty() ? generation.getCatalog().indices().map(generation.getCatalog()::getFeatureVersion).max().orElse(6)
+                                                                                 : majorVersions.get(0).getAsInt();
+                return VersionKey.of(new VersionNumber(newest));
+        }
+    }
+
+    // Selects the newest candidates before they are sorted, equal version keys are ranked in the order of the result
+    private int[] newest(final PkgCatalog catalog, final int[] candidates) {
+        if (0 == query.getNewest()) { return candidates; }
+        return TopK.select(candidates, catalog::getVersionKey, i -> ((long) NAME_RANK[catalog.getDistribution(i).ordinal()] << 32) | i, group(catalog), query.getNewest());
+    }
+    // Selects the newest packages of an already ordered result and keeps their order
+    private IntStream newest(final PkgCatalog catalog, final IntStream result) {
+        if (0 == query.getNewest()) { return result; }
+        final int[]             ordered = result.toArray();
+        final IntToLongFunction group   = group(catalog);
+        final int[]             kept    = TopK.select(IntStream.range(0, ordered.length).toArray(), p -> catalog.getVersionKey(ordered[p]), p -> p,
+                                                      null == group ? null : p -> group.applyAsLong(ordered[p]), query.getNewest());
+        Arrays.sort(kept);
+        return IntStream.of(kept).map(p -> ordered[p]);
+    }
+
+    private IntToLongFunction group(final PkgCatalog catalog) {
+        switch (query.getGrouping()) {
+            case PER_DISTRIBUTION: return i -> catalog.getDistribution(i).ordinal();
+            case PER_VERSION     : return i -> catalog.getFeatureVersion(i);
+            case NONE            :
+            default              : return null;
+        }
+    }
+
+    // Position of each distribution in the order of the result, which sorts distributions by name descending
+    private static int[] nameRanks() {
+        final Distribution[] byName = Distribution.values().clone();
+        Arrays.sort(byName, Comparator.comparing(Distribution::name).reversed());
+        final int[] ranks = new int[byName.length];
+        for (int rank = 0; rank < byName.length; rank++) { ranks[byName[rank].ordinal()] = rank; }
+        return ranks;
+    }
+
+    private static IntStream sorted(final PkgCatalog catalog, final int[] indices, final ParallelScan scan) {
+        return IntStream.of(scan.sort(indices, Comparator.comparing((Integer i) -> catalog.getDistribution(i).name()).reversed()
+                                                         .thenComparing(Comparator.comparingLong((Integer i) -> catalog.getVersionKey(i)).reversed())));
+    }
+
+    // Ordinal of the only failed facet check, FAILED_NONE or FAILED_SEVERAL
+    private static int failedFacet(final Filter[] facetChecks, final PkgCatalog catalog, final int index) {
+        int failed = FAILED_NONE;
+        for (int facet = 0; facet < facetChecks.length; facet++) {
+            if (null == facetChecks[facet] || facetChecks[facet].predicate.test(catalog, index)) { continue; }
+            if (FAILED_NONE != failed) { return FAILED_SEVERAL; }
+            failed = facet;
+        }
+        return failed;
+    }
+
+    private static int facetValue(final Facet facet, final PkgCatalog catalog, final int index) {
+        switch (facet) {
+            case DISTRIBUTION    : return catalog.getDistribution(index).ordinal();
+            case OPERATING_SYSTEM: return catalog.getOperatingSystem(index).ordinal();
+            case ARCHITECTURE    : return catalog.getArchitecture(index).ordinal();
+            case ARCHIVE_TYPE    : return catalog.getArchiveType(index).ordinal();
+            case LIBC_TYPE       : return catalog.getLibCType(index).ordinal();
+            case PACKAGE_TYPE    : return catalog.getPackageType(index).ordinal();
+            case RELEASE_STATUS  : return catalog.getReleaseStatus(index).ordinal();
+            case TERM_OF_SUPPORT : return catalog.getTermOfSupport(index).ordinal();
+            case BITNESS         : return catalog.getBitness(index).ordinal();
+            case FEATURE_VERSION :
+            default              : return catalog.getFeatureVersion(index);
+        }
+    }
+
+    private static int[] increment(final int[] counts, final int value) {
+        final int[] grown = null == counts ? new int[value + 1] : value < counts.length ? counts : Arrays.copyOf(counts, Math.max(value + 1, 2 * counts.length));
+        grown[value]++;
+        return grown;
+    }
+
+    private static <E extends Enum<E>> void addSetFilter(final List<Filter> filters, final String name, final Set<E> values, final String getter, final Class<E> type) {
+        if (values.isEmpty()) { return; }
+        filters.add(new Filter(name, statistics -> sum(statistics, values), index -> index.union(values), values.size(), FusedPredicate.in(getter, type, values)));
+    }
+
+    private static double sum(final CatalogStatistics statistics, final Collection<? extends Enum<?>> values) {
+        return ratio(values.stream().mapToInt(statistics::count).sum(), statistics);
+    }
+
+    private static double ratio(final double count, final CatalogStatistics statistics) { return 0 == statistics.getSize() ? 0 : Math.min(1.0, count / statistics.getSize()); }
+
+    private static double estimateVersions(final CatalogStatistics statistics, final List<Distribution> distributions, final long fromKey, final long toKey) {
+        return distributions.stream().mapToDouble(distribution -> statistics.estimateVersionRange(distribution, fromKey, toKey)).sum();
+    }
+
+    // One fused check of all filters in the given order
+    private static FusedPredicate fuse(final Filter[] filters) {
+        final List<MethodHandle> checks = new ArrayList<>(filters.length);
+        for (Filter filter : filters) { checks.add(filter.check); }
+        return FusedPredicate.of(checks);
+    }
+
+    private static void appendParameters(final StringBuilder queryBuilder, final int initialLength, final String parameter, final Collection<? extends ApiFeature> values) {
+        values.forEach(value -> appendParameter(queryBuilder, initialLength, parameter, value.getApiString()));
+    }
+
+    private static void appendParameter(final StringBuilder queryBuilder, final int initialLength, final String parameter, final String value) {
+        queryBuilder.append(queryBuilder.length() == initialLength ? "?" : "&").append(parameter).append("=").append(value);
+    }
+
+
+    // ******************** Inner Classes *************************************
+    @FunctionalInterface
+    interface CatalogPredicate {
+        boolean test(PkgCatalog catalog, int index);
+    }
+
+    // Offset and sort key of the last package of a page, encoded as opaque cursor between pages
+    private static final class Position {
+        private final long         generationNumber;
+        private final int          offset;
+        private final Distribution distribution;
+        private final long         versionKey;
+        private final String       id;
+
+
+        /**
+         * @param offset position of the package that follows the last package of the page in the result
+         */
+        Position(final long generationNumber, final int offset, final Distribution distribution, final long versionKey, final String id) {
+            this.generationNumber = generationNumber;
+            this.offset           = offset;
+            this.distribution     = distribution;
+            this.versionKey       = versionKey;
+            this.id               = id;
+        }
+
+
+        static Position of(final CacheGeneration generation, final int index, final int offset) {
+            final PkgCatalog catalog = generation.getCatalog();
+            return new Position(generation.getNumber(), offset, catalog.getDistribution(index), catalog.getVersionKey(index), catalog.getId(index));
+        }
+
+        static Position decode(final String cursor) {
+            if (null == cursor) { throw new IllegalArgumentException("cursor must not be null"); }
+            try {
+                final String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 5);
+                if (parts.length != 5) { throw new IllegalArgumentException("Cursor has " + parts.length + " fields"); }
+                return new Position(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Distribution.valueOf(parts[2]), Long.parseLong(parts[3]), parts[4]);
+            } catch (IllegalArgumentException e) { // includes NumberFormatException
+                throw new IllegalArgumentException("Invalid cursor " + cursor, e);
+            }
+        }
+
+        String encode() {
+            final String text = generationNumber + "|" + offset + "|" + distribution.name() + "|" + versionKey + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // True if the record with the given index follows this position in the order of the result
+        boolean isBefore(final PkgCatalog catalog, final int index) {
+            final int distributionOrder = catalog.getDistribution(index).name().compareTo(distribution.name());
+            if (0 != distributionOrder) { return distributionOrder < 0; }
+            final long key = catalog.getVersionKey(index);
+            if (key != versionKey) { return key < versionKey; }
+            return catalog.getId(index).compareTo(id) > 0;
+        }
+    }
+
+    private static final class Filter {
+        private final String                              name;
+        private final ToDoubleFunction<CatalogStatistics> estimator;
+        private final Function<BitmapIndex, long[]>       bitmap;
+        private final int                                 bitmapCount;
+        private final MethodHandle                        check;
+        private final CatalogPredicate                    predicate;
+
+
+        /**
+         * @param estimator   estimates the fraction of the records that pass the filter
+         * @param bitmap      bitmap of the records that pass the filter, null if the filter can not be answered by bitmaps
+         * @param bitmapCount number of value bitmaps that are combined to answer the filter
+         * @param check       method handle of type (PkgCatalog, int)boolean that tests one record, see FusedPredicate
+         */
+        Filter(final String name, final ToDoubleFunction<CatalogStatistics> estimator, final Function<BitmapIndex, long[]> bitmap, final int bitmapCount, final MethodHandle check) {
+            this.name        = name;
+            this.estimator   = estimator;
+            this.bitmap      = bitmap;
+            this.bitmapCount = bitmapCount;
+            this.check       = check;
+            this.predicate   = FusedPredicate.of(List.of(check));
+        }
+    }
+
+    // Costed access path considered by the planner
+    private static final class Candidate {
+        private final AccessPath          accessPath;
+        private final List<Filter>        bitmapFilters;
+        private final List<Filter>        residual;
+        private final Map<Filter, Double> selectivities;
+        private final double              candidates;
+        private final double              rows;
+        private final double              cost;
+
+
+        Candidate(final AccessPath accessPath, final List<Filter> bitmapFilters, final List<Filter> residual, final double candidates, final double fixedCost, final Map<Filter, Double> selectivities) {
+            final List<Filter> ordered = new ArrayList<>(residual);
+            ordered.sort(Comparator.comparingDouble(selectivities::get));
+            double passing     = 1.0;
+            double evaluations = 0;
+            for (Filter filter : ordered) {
+                evaluations += passing;
+                passing     *= selectivities.get(filter);
+            }
+            this.accessPath    = accessPath;
+            this.bitmapFilters = List.copyOf(bitmapFilters);
+            this.residual      = ordered;
+            this.selectivities = selectivities;
+            this.candidates    = candidates;
+            this.rows          = candidates * passing;
+            this.cost          = fixedCost + candidates * (CANDIDATE_COST + evaluations);
+        }
+
+
+        Physical toPhysical(final CacheGeneration generation, final Filter[] ordered, final long fromKey, final long toKey, final Map<AccessPath, Double> alternatives) {
+            final Map<String, Double> filterSelectivities = new LinkedHashMap<>();
+            residual.forEach(filter -> filterSelectivities.put(filter.name, selectivities.get(filter)));
+            final QueryExplain explain = new QueryExplain(generation.getNumber(), generation.getCatalog().size(), accessPath, bitmapFilters.stream().map(filter -> filter.name).collect(Collectors.toList()),
+                                                          filterSelectivities, candidates, rows, cost, alternatives);
+            return new Physical(generation.getNumber(), accessPath, bitmapFilters, residual.toArray(new Filter[0]), ordered, fromKey, toKey, explain);
+        }
+    }
+
+    // Access path and filter order chosen for one generation
+    private static final class Physical {
+        private final long           generationNumber;
+        private final AccessPath     accessPath;
+        private final List<Filter>   bitmapFilters;
+        private final FusedPredicate residualCheck;
+        private final FusedPredicate orderedCheck;
+        private final long           fromKey;
+        private final long           toKey;
+        private final QueryExplain   explain;
+
+
+        /**
+         * @param residual filters that the access path does not answer, fused into one check
+         * @param ordered  all attribute filters ordered by selectivity, used by lazy walks over the version index
+         */
+        Physical(final long generationNumber, final AccessPath accessPath, final List<Filter> bitmapFilters, final Filter[] residual, final Filter[] ordered, final long fromKey, final long toKey,
+                 final QueryExplain explain) {
+            this.generationNumber = generationNumber;
+            this.accessPath       = accessPath;
+            this.bitmapFilters    = bitmapFilters;
+            this.residualCheck    = fuse(residual);
+            this.orderedCheck     = fuse(ordered);
+            this.fromKey          = fromKey;
+            this.toKey            = toKey;
+            this.explain          = explain;
+        }
+    }
+}
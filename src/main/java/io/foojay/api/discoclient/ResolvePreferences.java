@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.PlatformView;
+import io.foojay.api.discoclient.pkg.ArchiveType;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.PackageType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Immutable ranking of the installable packages that match a version, used by DiscoClient.resolveBest().
+ * Packages are ranked by distribution, then by package type, then by version descending and at last by archive type.
+ * Listed values rank in the order of their list, values that are not listed rank equal behind the listed ones,
+ * so an empty list does not prefer any value. Early access builds and packages that are not directly downloadable
+ * are skipped unless they are included explicitly.
+ */
+public final class ResolvePreferences {
+    public  static final ResolvePreferences DEFAULT = builder().build();
+    private        final List<Distribution> distributions;
+    private        final List<PackageType>  packageTypes;
+    private        final List<ArchiveType>  archiveTypes;
+    private        final boolean            includeEarlyAccess;
+    private        final boolean            directlyDownloadableOnly;
+    private        final int[]              distributionRanks;
+    private        final int[]              packageTypeRanks;
+    private        final int[]              archiveTypeRanks;
+
+
+    // ******************** Constructors **************************************
+    private ResolvePreferences(final Builder builder) {
+        this.distributions            = Collections.unmodifiableList(new ArrayList<>(builder.distributions));
+        this.packageTypes             = Collections.unmodifiableList(new ArrayList<>(builder.packageTypes));
+        this.archiveTypes             = Collections.unmodifiableList(new ArrayList<>(builder.archiveTypes));
+        this.includeEarlyAccess       = builder.includeEarlyAccess;
+        this.directlyDownloadableOnly = builder.directlyDownloadableOnly;
+        this.distributionRanks        = ranks(distributions, Distribution.values().length);
+        this.packageTypeRanks         = ranks(packageTypes, PackageType.values().length);
+        this.archiveTypeRanks         = ranks(archiveTypes, ArchiveType.values().length);
+    }
+
+
+    // ******************** Methods *******************************************
+    public static Builder builder() { return new Builder(); }
+
+    public Builder toBuilder() { return new Builder(this); }
+
+    public List<Distribution> getDistributions() { return distributions; }
+
+    public List<PackageType> getPackageTypes() { return packageTypes; }
+
+    public List<ArchiveType> getArchiveTypes() { return archiveTypes; }
+
+    public boolean isIncludeEarlyAccess() { return includeEarlyAccess; }
+
+    public boolean isDirectlyDownloadableOnly() { return directlyDownloadableOnly; }
+
+    /**
+     * Ranks the packages of the view within the given version key range. The view is ordered by version descending,
+     * so the scan stops at the first older package once a package of the best distribution and package type was found.
+     * @return position of the best package in the view, -1 if no package qualifies
+     */
+    int select(final PlatformView view, final long fromKey, final long toKey) {
+        final int end         = view.toPosition(fromKey);
+        int       best        = -1;
+        long      bestRank    = Long.MAX_VALUE;
+        long      bestKey     = 0;
+        int       bestArchive = Integer.MAX_VALUE;
+        for (int position = view.fromPosition(toKey); position < end; position++) {
+            final long versionKey = view.getVersionKey(position);
+            if (0 == bestRank && versionKey < bestKey) { break; }
+            if (!includeEarlyAccess && view.isEarlyAccess(position)) { continue; }
+            if (directlyDownloadableOnly && !view.isDirectlyDownloadable(position)) { continue; }
+            final long rank    = ((long) distributionRanks[view.getDistributionOrdinal(position)] << 8) | packageTypeRanks[view.getPackageTypeOrdinal(position)];
+            final int  archive = archiveTypeRanks[view.getArchiveTypeOrdinal(position)];
+            if (rank < bestRank || (rank == bestRank && versionKey == bestKey && archive < bestArchive)) {
+                best        = position;
+                bestRank    = rank;
+                bestKey     = versionKey;
+                bestArchive = archive;
+            }
+        }
+        return best;
+    }
+
+    @Override public String toString() {
+        return new StringBuilder().append("{")
+                                  .append("\"distributions\":").append(distributions).append(",")
+                                  .append("\"package_types\":").append(packageTypes).append(",")
+                                  .append("\"archive_types\":").append(archiveTypes).append(",")
+                                  .append("\"include_early_access\":").append(includeEarlyAccess).append(",")
+                                  .append("\"directly_downloadable_only\":").append(directlyDownloadableOnly)
+                                  .append("}")
+                                  .toString();
+    }
+
+    // Rank per enum ordinal, values that are not listed share the rank behind the last listed value
+    private static int[] ranks(final List<? extends Enum<?>> values, final int size) {
+        final int[] ranks = new int[size];
+        Arrays.fill(ranks, values.size());
+        for (int rank = 0; rank < values.size(); rank++) { ranks[values.get(rank).ordinal()] = rank; }
+        return ranks;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    public static class Builder {
+        private Set<Distribution> distributions            = new LinkedHashSet<>();
+        private Set<PackageType>  packageTypes             = new LinkedHashSet<>(List.of(PackageType.JDK, PackageType.JRE));
+        private Set<ArchiveType>  archiveTypes             = new LinkedHashSet<>(List.of(ArchiveType.TAR_GZ, ArchiveType.ZIP, ArchiveType.TAR));
+        private boolean           includeEarlyAccess       = false;
+        private boolean           directlyDownloadableOnly = true;
+
+
+        private Builder() {}
+        private Builder(final ResolvePreferences preferences) {
+            this.distributions            = new LinkedHashSet<>(preferences.distributions);
+            this.packageTypes             = new LinkedHashSet<>(preferences.packageTypes);
+            this.archiveTypes             = new LinkedHashSet<>(preferences.archiveTypes);
+            this.includeEarlyAccess       = preferences.includeEarlyAccess;
+            this.directlyDownloadableOnly = preferences.directlyDownloadableOnly;
+        }
+
+
+        /**
+         * @param distributions distributions in the order of preference, empty to rank all distributions equal
+         */
+        public Builder distributions(final Distribution... distributions) { return distributions(Arrays.asList(distributions)); }
+        public Builder distributions(final Collection<Distribution> distributions) {
+            this.distributions = new LinkedHashSet<>();
+            addAll(this.distributions, distributions, Distribution.NONE, Distribution.NOT_FOUND);
+            return this;
+        }
+
+        /**
+         * @param packageTypes package types in the order of preference, JDK before JRE by default
+         */
+        public Builder packageTypes(final PackageType... packageTypes) { return packageTypes(Arrays.asList(packageTypes)); }
+        public Builder packageTypes(final Collection<PackageType> packageTypes) {
+            this.packageTypes = new LinkedHashSet<>();
+            addAll(this.packageTypes, packageTypes, PackageType.NONE, PackageType.NOT_FOUND);
+            return this;
+        }
+
+        /**
+         * @param archiveTypes archive types in the order of preference, tar.gz, zip and tar before installers by default
+         */
+        public Builder archiveTypes(final ArchiveType... archiveTypes) { return archiveTypes(Arrays.asList(archiveTypes)); }
+        public Builder archiveTypes(final Collection<ArchiveType> archiveTypes) {
+            this.archiveTypes = new LinkedHashSet<>();
+            addAll(this.archiveTypes, archiveTypes, ArchiveType.NONE, ArchiveType.NOT_FOUND);
+            return this;
+        }
+
+        public Builder includeEarlyAccess(final boolean includeEarlyAccess) {
+            this.includeEarlyAccess = includeEarlyAccess;
+            return this;
+        }
+
+        public Builder directlyDownloadableOnly(final boolean directlyDownloadableOnly) {
+            this.directlyDownloadableOnly = directlyDownloadableOnly;
+            return this;
+        }
+
+        public ResolvePreferences build() { return new ResolvePreferences(this); }
+
+        // The NONE and NOT_FOUND constants of the enums are no preference and are dropped
+        private static <E> void addAll(final Set<E> target, final Collection<E> values, final E none, final E notFound) {
+            if (null == values) { return; }
+            for (E value : values) {
+                if (null != value && none != value && notFound != value) { target.add(value); }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.cache.GenerationChange;
+import io.foojay.api.discoclient.cache.PkgCatalog;
+import io.foojay.api.discoclient.event.PkgChangeEvt;
+import io.foojay.api.discoclient.pkg.Pkg;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+
+/**
+ * Query that is evaluated against every new cache generation. Queries that select each package on its own only
+ * check the records of the change, so the work is proportional to the change and not to the catalog. The latest
+ * views and the newest selection depend on the whole catalog, their result is recomputed and compared instead.
+ */
+final class StandingQuery {
+    private final PkgQuery                                         query;
+    private final QueryPlan                                        plan;
+    private final BiFunction<CacheGeneration, PkgQuery, List<Pkg>> resultFunction;
+    private       List<Pkg>                                        result;
+
+
+    // ******************** Constructors **************************************
+    /**
+     * @param generation generation the first change is compared with
+     * @param resultFunction computes the complete result of the query, only used if the query can not be evaluated incrementally
+     */
+    StandingQuery(final PkgQuery query, final CacheGeneration generation, final BiFunction<CacheGeneration, PkgQuery, List<Pkg>> resultFunction) {
+        this.query          = query;
+        this.plan           = query.compile();
+        this.resultFunction = resultFunction;
+        this.result         = plan.isStreamable() ? null : resultFunction.apply(generation, query);
+    }
+
+
+    // ******************** Methods *******************************************
+    PkgQuery getQuery() { return query; }
+
+    /**
+     * @return the event that reports the packages that started or stopped matching, null if the result did not change
+     */
+    synchronized PkgChangeEvt apply(final Object source, final GenerationChange change) {
+        final CacheGeneration newGeneration = change.getNewGeneration();
+        final List<Pkg>       added         = new ArrayList<>();
+        final List<Pkg>       removed;
+        if (null == result) {
+            // A changed package that matches before and after the change is neither added nor removed
+            final CacheGeneration  oldGeneration = change.getOldGeneration();
+            final PkgCatalog       oldCatalog    = oldGeneration.getCatalog();
+            final PkgCatalog       newCatalog    = newGeneration.getCatalog();
+            final Map<String, Pkg> removedById   = new LinkedHashMap<>();
+            for (int index : change.getRemoved()) {
+                if (plan.matches(oldGeneration, index)) { removedById.put(oldCatalog.getId(index), oldCatalog.getPkg(index)); }
+            }
+            for (int index : change.getAdded()) {
+                if (plan.matches(newGeneration, index) && null == removedById.remove(newCatalog.getId(index))) { added.add(newCatalog.getPkg(index)); }
+            }
+            removed = new ArrayList<>(removedById.values());
+        } else {
+            final List<Pkg>   newResult = resultFunction.apply(newGeneration, query);
+            final Set<String> oldIds    = result.stream().map(Pkg::getId).collect(Collectors.toSet());
+            final Set<String> newIds    = newResult.stream().map(Pkg::getId).collect(Collectors.toSet());
+            newResult.stream().filter(pkg -> !oldIds.contains(pkg.getId())).forEach(added::add);
+            removed = result.stream().filter(pkg -> !newIds.contains(pkg.getId())).collect(Collectors.toList());
+            result  = newResult;
+        }
+        if (added.isEmpty() && removed.isEmpty()) { return null; }
+        return new PkgChangeEvt(source, PkgChangeEvt.PKGS_CHANGED, query, added, removed, newGeneration.getNumber());
+    }
+}
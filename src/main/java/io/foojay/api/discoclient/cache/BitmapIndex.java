@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * One bitmap per attribute value of a catalog, bit i is set if record i has the value. A filter on several
+ * attributes is answered by or-ing the bitmaps of the requested values and and-ing the results word by word.
+ * Bitmaps returned by the index are shared and must not be modified.
+ */
+public class BitmapIndex {
+    private static final long[]               NO_BITS = new long[0];
+    private        final int                  words;
+    private        final Map<Enum<?>, long[]> bitmaps;
+    private        final long[]               javafxBundled;
+    private        final long[]               notJavafxBundled;
+    private        final long[]               directlyDownloadable;
+    private        final long[]               notDirectlyDownloadable;
+
+
+    // ******************** Constructors **************************************
+    public BitmapIndex(final PkgCatalog catalog) {
+        this.words                   = (catalog.size() + 63) >>> 6;
+        this.bitmaps                 = new HashMap<>();
+        this.javafxBundled           = new long[words];
+        this.notJavafxBundled        = new long[words];
+        this.directlyDownloadable    = new long[words];
+        this.notDirectlyDownloadable = new long[words];
+        for (int i = 0; i < catalog.size(); i++) {
+            final int  word = i >>> 6;
+            final long bit  = 1L << i;
+            CatalogStatistics.forEachAttribute(catalog, i, value -> bitmaps.computeIfAbsent(value, v -> new long[words])[word] |= bit);
+            if (catalog.isJavaFXBundled(i)) { javafxBundled[word] |= bit; } else { notJavafxBundled[word] |= bit; }
+            if (catalog.isDirectlyDownloadable(i)) { directlyDownloadable[word] |= bit; } else { notDirectlyDownloadable[word] |= bit; }
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * @return number of 64 bit words of each bitmap
+     */
+    public int getWords() { return words; }
+
+    /**
+     * @return bitmap of the records with the given attribute value, an empty array if no record has the value
+     */
+    public long[] get(final Enum<?> value) { return bitmaps.getOrDefault(value, NO_BITS); }
+
+    public long[] getJavafxBundled(final boolean bundled) { return bundled ? javafxBundled : notJavafxBundled; }
+
+    public long[] getDirectlyDownloadable(final boolean downloadable) { return downloadable ? directlyDownloadable : notDirectlyDownloadable; }
+
+    /**
+     * @return new bitmap of the records that have any of the given attribute values
+     */
+    public long[] union(final Collection<? extends Enum<?>> values) {
+        final long[] result = new long[words];
+        for (Enum<?> value : values) {
+            final long[] bits = get(value);
+            for (int w = 0; w < bits.length; w++) { result[w] |= bits[w]; }
+        }
+        return result;
+    }
+
+    /**
+     * Clears all bits of the target that are not set in the given bitmap, an empty bitmap clears the target.
+     */
+    public static void intersect(final long[] target, final long[] bits) {
+        for (int w = 0; w < target.length; w++) { target[w] &= w < bits.length ? bits[w] : 0L; }
+    }
+
+    /**
+     * @return indices of the set bits in ascending order
+     */
+    public static int[] indices(final long[] bits) {
+        int count = 0;
+        for (long word : bits) { count += Long.bitCount(word); }
+        final int[] indices  = new int[count];
+        int         position = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (0 != word) {
+                indices[position++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.UUID;
+
+
+public class CacheConfig {
+    public  static final CacheConfig    DEFAULT               = new Builder().build();
+    private        final CatalogStorage catalogStorage;
+    private        final Path           snapshotFile;
+    private        final RefreshPolicy  refreshPolicy;
+    private        final int            queryCacheSize;
+    private        final int            pkgInfoCacheSize;
+    private        final Duration       pkgInfoTtl;
+    private        final Duration       pkgInfoNegativeTtl;
+    private        final boolean        progressiveLoading;
+    private        final int            scanParallelism;
+    private        final int            parallelScanThreshold;
+
+
+    private CacheConfig(final Builder builder) {
+        this.catalogStorage        = builder.catalogStorage;
+        this.snapshotFile          = builder.snapshotFile;
+        this.refreshPolicy         = builder.refreshPolicy;
+        this.queryCacheSize        = builder.queryCacheSize;
+        this.pkgInfoCacheSize      = builder.pkgInfoCacheSize;
+        this.pkgInfoTtl            = builder.pkgInfoTtl;
+        this.pkgInfoNegativeTtl    = builder.pkgInfoNegativeTtl;
+        this.progressiveLoading    = builder.progressiveLoading;
+        this.scanParallelism       = builder.scanParallelism;
+        this.parallelScanThreshold = builder.parallelScanThreshold;
+    }
+
+
+    public CatalogStorage getCatalogStorage() { return catalogStorage; }
+
+    /**
+     * @return file the cache is persisted to after each refresh and warm started from, null if persistence is disabled
+     */
+    public Path getSnapshotFile() { return snapshotFile; }
+
+    /**
+     * Persistence is opt-in, this returns a snapshot file below ~/.discoclient that is unique per api url
+     * so that clients of different servers never warm start from each others catalog.
+     * @param apiUrl url of the discovery api the snapshot belongs to
+     * @return snapshot file for the given api url
+     */
+    public static Path defaultSnapshotFile(final String apiUrl) {
+        final String urlHash = UUID.nameUUIDFromBytes(Objects.requireNonNull(apiUrl).getBytes(StandardCharsets.UTF_8)).toString();
+        return Paths.get(System.getProperty("user.home"), ".discoclient", "cache-" + urlHash + ".bin");
+    }
+
+    public RefreshPolicy getRefreshPolicy() { return refreshPolicy; }
+
+    /**
+     * @return max number of query results cached per cache generation, 0 disables the query result cache
+     */
+    public int getQueryCacheSize() { return queryCacheSize; }
+
+    /**
+     * @return max number of resolved ephemeral ids that are cached, 0 disables the cache
+     */
+    public int getPkgInfoCacheSize() { return pkgInfoCacheSize; }
+
+    /**
+     * @return time a resolved ephemeral id is cached, should stay below the lifetime of ephemeral ids
+     */
+    public Duration getPkgInfoTtl() { return pkgInfoTtl; }
+
+    /**
+     * @return time an ephemeral id that could not be resolved is cached
+     */
+    public Duration getPkgInfoNegativeTtl() { return pkgInfoNegativeTtl; }
+
+    /**
+     * @return true if a cold cache is loaded per distribution and queries are answered as soon as their distributions are loaded
+     */
+    public boolean isProgressiveLoading() { return progressiveLoading; }
+
+    /**
+     * @return number of threads of the pool that runs large cache scans, 1 runs all scans on the calling thread
+     */
+    public int getScanParallelism() { return scanParallelism; }
+
+    /**
+     * @return min number of candidates for a cache scan to run in parallel, 0 disables parallel scans
+     */
+    public int getParallelScanThreshold() { return parallelScanThreshold; }
+
+    public static Builder builder() { return new Builder(); }
+
+    @Override public boolean equals(final Object o) {
+        if (this == o) { return true; }
+        if (o == null || getClass() != o.getClass()) { return false; }
+        CacheConfig that = (CacheConfig) o;
+        return catalogStorage == that.catalogStorage && Objects.equals(snapshotFile, that.snapshotFile) && refreshPolicy.equals(that.refreshPolicy) && queryCacheSize == that.queryCacheSize &&
+               pkgInfoCacheSize == that.pkgInfoCacheSize && pkgInfoTtl.equals(that.pkgInfoTtl) && pkgInfoNegativeTtl.equals(that.pkgInfoNegativeTtl) &&
+               progressiveLoading == that.progressiveLoading && scanParallelism == that.scanParallelism && parallelScanThreshold == that.parallelScanThreshold;
+    }
+
+    @Override public int hashCode() {
+        return Objects.hash(catalogStorage, snapshotFile, refreshPolicy, queryCacheSize, pkgInfoCacheSize, pkgInfoTtl, pkgInfoNegativeTtl, progressiveLoading, scanParallelism, parallelScanThreshold);
+    }
+
+
+    // ******************** Builder *******************************************
+    public static class Builder {
+        private CatalogStorage catalogStorage        = CatalogStorage.HEAP;
+        private Path           snapshotFile          = null;
+        private RefreshPolicy  refreshPolicy         = RefreshPolicy.DEFAULT;
+        private int            queryCacheSize        = 256;
+        private int            pkgInfoCacheSize      = 1024;
+        private Duration       pkgInfoTtl            = Duration.ofMinutes(10);
+        private Duration       pkgInfoNegativeTtl    = Duration.ofSeconds(30);
+        private boolean        progressiveLoading    = true;
+        private int            scanParallelism       = Runtime.getRuntime().availableProcessors();
+        private int            parallelScanThreshold = 20_000;
+
+
+        private Builder() {}
+
+
+        public Builder catalogStorage(final CatalogStorage catalogStorage) {
+            this.catalogStorage        = null == catalogStorage || CatalogStorage.NONE == catalogStorage || CatalogStorage.NOT_FOUND == catalogStorage ? CatalogStorage.HEAP : catalogStorage;
+            return this;
+        }
+
+        public Builder snapshotFile(final Path snapshotFile) {
+            this.snapshotFile          = snapshotFile;
+            return this;
+        }
+
+        public Builder noSnapshot() { return snapshotFile(null); }
+
+        public Builder refreshPolicy(final RefreshPolicy refreshPolicy) {
+            this.refreshPolicy         = null == refreshPolicy ? RefreshPolicy.DEFAULT : refreshPolicy;
+            return this;
+        }
+
+        public Builder queryCacheSize(final int queryCacheSize) {
+            if (queryCacheSize < 0) { throw new IllegalArgumentException("queryCacheSize must not be negative"); }
+            this.queryCacheSize        = queryCacheSize;
+            return this;
+        }
+
+        public Builder pkgInfoCacheSize(final int pkgInfoCacheSize) {
+            if (pkgInfoCacheSize < 0) { throw new IllegalArgumentException("pkgInfoCacheSize must not be negative"); }
+            this.pkgInfoCacheSize      = pkgInfoCacheSize;
+            return this;
+        }
+
+        public Builder pkgInfoTtl(final Duration pkgInfoTtl) {
+            if (null == pkgInfoTtl || pkgInfoTtl.isNegative()) { throw new IllegalArgumentException("pkgInfoTtl must not be negative"); }
+            this.pkgInfoTtl            = pkgInfoTtl;
+            return this;
+        }
+
+        public Builder pkgInfoNegativeTtl(final Duration pkgInfoNegativeTtl) {
+            if (null == pkgInfoNegativeTtl || pkgInfoNegativeTtl.isNegative()) { throw new IllegalArgumentException("pkgInfoNegativeTtl must not be negative"); }
+            this.pkgInfoNegativeTtl    = pkgInfoNegativeTtl;
+            return this;
+        }
+
+        public Builder progressiveLoading(final boolean progressiveLoading) {
+            this.progressiveLoading    = progressiveLoading;
+            return this;
+        }
+
+        public Builder scanParallelism(final int scanParallelism) {
+            if (scanParallelism < 1) { throw new IllegalArgumentException("scanParallelism must be at least 1"); }
+            this.scanParallelism       = scanParallelism;
+            return this;
+        }
+
+        public Builder parallelScanThreshold(final int parallelScanThreshold) {
+            if (parallelScanThreshold < 0) { throw new IllegalArgumentException("parallelScanThreshold must not be negative"); }
+            this.parallelScanThreshold = parallelScanThreshold;
+            return this;
+        }
+
+        public CacheConfig build() { return new CacheConfig(this); }
+    }
+}
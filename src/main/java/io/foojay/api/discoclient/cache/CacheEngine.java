@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.PkgFacets;
+import io.foojay.api.discoclient.PkgQuery;
+import io.foojay.api.discoclient.event.CacheEvt;
+import io.foojay.api.discoclient.event.EvtType;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.MajorVersion;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import io.foojay.api.discoclient.util.PkgInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+
+/**
+ * Owns the cached catalog of one disco api, all clients of the same api url and cache config in a JVM
+ * share one engine so the catalog is loaded, refreshed and kept in memory only once. Engines are reference
+ * counted, the last release stops the refresh and closes the current generation.
+ */
+public class CacheEngine {
+    private static final Logger                                              LOGGER                    = LoggerFactory.getLogger(CacheEngine.class);
+    private static final Duration                                            MIN_REVALIDATION_INTERVAL = Duration.ofMinutes(1);
+    private static final double                                              MIN_SLICE_GROWTH          = 0.5;
+    private static final Map<EngineKey, CacheEngine>                         ENGINES                   = new HashMap<>();
+    private        final String                                              apiUrl;
+    private        final CacheConfig                                         cacheConfig;
+    private        final Loader                                              loader;
+    private        final AtomicBoolean                                       cacheReady                = new AtomicBoolean(false);
+    private        volatile CacheGeneration                                  generation                = CacheGeneration.EMPTY;
+    private        final List<Consumer<CacheEvt>>                            listeners                 = new CopyOnWriteArrayList<>();
+    private        final List<Consumer<GenerationChange>>                    changeListeners           = new CopyOnWriteArrayList<>();
+    private        final ScheduledExecutorService                            service                   = Executors.newScheduledThreadPool(2);
+    private        final AtomicReference<CompletableFuture<CacheGeneration>> refreshInFlight           = new AtomicReference<>();
+    private        volatile ScheduledFuture<?>                               scheduledRefresh;
+    private        volatile Instant                                          lastRefreshAttempt        = Instant.EPOCH;
+    private        final QueryResultCache<PkgQuery, List<Pkg>>               queryResultCache;
+    private        final QueryResultCache<PkgQuery, PkgFacets>               facetCache;
+    private        final TtlCache<String, PkgInfo>                           pkgInfoCache;
+    private        final ParallelScan                                        parallelScan;
+    private        final Thread                                              shutdownHook;
+    private              int                                                 references;
+
+
+    /**
+     * Loads the data of a cache generation from the disco api.
+     */
+    public interface Loader {
+        CompletableFuture<Queue<Pkg>> loadPkgs();
+
+        CompletableFuture<Queue<Pkg>> loadPkgs(Distribution distribution);
+
+        CompletableFuture<List<MajorVersion>> loadMajorVersions();
+
+        CompletableFuture<Map<Distribution, List<VersionNumber>>> loadVersionsPerDistribution();
+    }
+
+
+    // ******************** Constructors **************************************
+    private CacheEngine(final String apiUrl, final CacheConfig cacheConfig, final Loader loader) {
+        this.apiUrl           = apiUrl;
+        this.cacheConfig      = cacheConfig;
+        this.loader           = loader;
+        this.queryResultCache = new QueryResultCache<>(cacheConfig.getQueryCacheSize());
+        this.facetCache       = new QueryResultCache<>(cacheConfig.getQueryCacheSize());
+        this.pkgInfoCache     = new TtlCache<>(cacheConfig.getPkgInfoCacheSize(), cacheConfig.getPkgInfoTtl(), cacheConfig.getPkgInfoNegativeTtl());
+        this.parallelScan     = ParallelScan.of(cacheConfig);
+        this.shutdownHook     = new Thread(() -> service.shutdownNow());
+        final RefreshPolicy   refreshPolicy = cacheConfig.getRefreshPolicy();
+        final CacheGeneration snapshot      = CacheSnapshotFile.read(cacheConfig.getSnapshotFile(), cacheConfig.getCatalogStorage());
+        Duration initialDelay = Duration.ofSeconds(1);
+        if (null != snapshot && !snapshot.isEmpty()) {
+            // Warm start, an expired snapshot is not served but still used as base for the delta of the first refresh
+            final Duration age = Duration.between(snapshot.getCreatedAt(), Instant.now());
+            generation = snapshot;
+            cacheReady.set(!refreshPolicy.isHardExpired(age));
+            if (!refreshPolicy.isSoftStale(age)) { initialDelay = refreshPolicy.nextDelay().minus(age); }
+        }
+        scheduleRefresh(initialDelay);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns the engine of the given api url and cache config and increases its reference count, the engine is
+     * created on first use. Clients of the same api url with different configs get engines of their own.
+     */
+    public static CacheEngine acquire(final String apiUrl, final CacheConfig cacheConfig, final Loader loader) {
+        final CacheConfig config = null == cacheConfig ? CacheConfig.DEFAULT : cacheConfig;
+        final EngineKey   key    = new EngineKey(apiUrl, config);
+        synchronized (ENGINES) {
+            CacheEngine engine = ENGINES.get(key);
+            if (null == engine) {
+                engine = new CacheEngine(apiUrl, config, loader);
+                ENGINES.put(key, engine);
+            }
+            engine.references++;
+            return engine;
+        }
+    }
+
+    /**
+     * Decreases the reference count, the last release stops the engine and closes its generation.
+     */
+    public void release() {
+        synchronized (ENGINES) {
+            if (references == 0) { return; }
+            references--;
+            if (references > 0) { return; }
+            ENGINES.remove(new EngineKey(apiUrl, cacheConfig), this);
+        }
+        service.shutdownNow();
+        parallelScan.close();
+        listeners.clear();
+        changeListeners.clear();
+        queryResultCache.clear();
+        facetCache.clear();
+        pkgInfoCache.clear();
+        final CacheGeneration lastGeneration = generation;
+        generation = CacheGeneration.EMPTY;
+        lastGeneration.close();
+        cacheReady.set(false);
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // JVM is already shutting down
+        }
+    }
+
+    public String getApiUrl() { return apiUrl; }
+
+    public CacheConfig getCacheConfig() { return cacheConfig; }
+
+    public CacheGeneration getGeneration() { return generation; }
+
+    /**
+     * Returns the current generation pinned for the caller, it stays readable until the caller releases it
+     * even if a refresh swaps in a newer generation meanwhile.
+     */
+    public CacheGeneration pinGeneration() {
+        while (true) {
+            final CacheGeneration currentGeneration = generation;
+            if (currentGeneration.retain()) { return currentGeneration; }
+        }
+    }
+
+    public AtomicBoolean getCacheReady() { return cacheReady; }
+
+    public QueryResultCache<PkgQuery, List<Pkg>> getQueryResultCache() { return queryResultCache; }
+
+    public QueryResultCache<PkgQuery, PkgFacets> getFacetCache() { return facetCache; }
+
+    public TtlCache<String, PkgInfo> getPkgInfoCache() { return pkgInfoCache; }
+
+    /**
+     * @return the scan pool of the engine, shut down when the engine is stopped
+     */
+    public ParallelScan getParallelScan() { return parallelScan; }
+
+    public void addListener(final Consumer<CacheEvt> listener) { listeners.add(listener); }
+
+    public void removeListener(final Consumer<CacheEvt> listener) { listeners.remove(listener); }
+
+    /**
+     * Adds a listener that is called with the records that changed whenever a new generation is swapped in. Changes
+     * are only computed while listeners are registered, the listener is called on the thread that swapped the generation.
+     */
+    public void addChangeListener(final Consumer<GenerationChange> listener) { changeListeners.add(listener); }
+
+    public void removeChangeListener(final Consumer<GenerationChange> listener) { changeListeners.remove(listener); }
+
+    /**
+     * Refreshes the cache immediately, calls while a refresh is running share its result.
+     * @return future that completes with the generation that is served after the refresh
+     */
+    public CompletableFuture<CacheGeneration> refreshNow() {
+        final CompletableFuture<CacheGeneration> future  = new CompletableFuture<>();
+        final CompletableFuture<CacheGeneration> running = refreshInFlight.compareAndExchange(null, future);
+        if (null != running) { return running; }
+
+        lastRefreshAttempt = Instant.now();
+        future.whenComplete((g, e) -> {
+            refreshInFlight.set(null);
+            scheduleRefresh(cacheConfig.getRefreshPolicy().nextDelay());
+        });
+        completeOnFailure(future, () -> updateCache(future));
+        return future;
+    }
+
+    /**
+     * Checks the age of the current generation against the refresh policy, a soft stale generation
+     * is still served while it is revalidated in the background, a hard expired one is not served.
+     */
+    public boolean isCacheUsable() {
+        if (!cacheReady.get()) { return false; }
+        final RefreshPolicy refreshPolicy = cacheConfig.getRefreshPolicy();
+        final Instant       now           = Instant.now();
+        final Duration      age           = Duration.between(generation.getCreatedAt(), now);
+        if (refreshPolicy.isSoftStale(age) && Duration.between(lastRefreshAttempt, now).compareTo(MIN_REVALIDATION_INTERVAL) > 0) { refreshNow(); }
+        if (refreshPolicy.isHardExpired(age)) {
+            cacheReady.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if queries restricted to the given distributions can be answered from the cache, while a cold
+     * cache is loaded this is the case as soon as the slices of all given distributions are loaded.
+     */
+    public boolean isCacheUsable(final Collection<Distribution> distributions) {
+        if (isCacheUsable()) { return true; }
+        final CacheGeneration currentGeneration = generation;
+        return !currentGeneration.isComplete() && currentGeneration.covers(distributions);
+    }
+
+    private void updateCache(final CompletableFuture<CacheGeneration> future) {
+        if (cacheConfig.isProgressiveLoading() && generation.isEmpty()) {
+            loadSlices(future);
+        } else {
+            loadCatalog(future);
+        }
+    }
+
+    private void loadCatalog(final CompletableFuture<CacheGeneration> future) {
+        final boolean warm = generation.isComplete() && !generation.isEmpty() && !cacheConfig.getRefreshPolicy().isHardExpired(Duration.between(generation.getCreatedAt(), Instant.now()));
+        if (!warm) { cacheReady.set(false); }
+        fireEvt(CacheEvt.CACHE_UPDATING);
+        final CompletableFuture<Queue<Pkg>>                              pkgsFuture                    = loader.loadPkgs();
+        final CompletableFuture<List<MajorVersion>>                      majorVersionsFuture           = loader.loadMajorVersions();
+        final CompletableFuture<Map<Distribution, List<VersionNumber>>> versionsPerDistributionFuture = loader.loadVersionsPerDistribution();
+        CompletableFuture.allOf(pkgsFuture, majorVersionsFuture, versionsPerDistributionFuture).whenComplete((v, e) -> completeOnFailure(future, () -> {
+            if (service.isShutdown()) {
+                future.complete(generation);
+                return;
+            }
+            if (null != e || pkgsFuture.join().isEmpty()) {
+                // Keep serving the last good generation
+                LOGGER.debug("Cache refresh failed, keeping generation {}", generation.getNumber());
+                cacheReady.set(warm);
+                if (warm) { fireEvt(CacheEvt.CACHE_READY); }
+                if (null == e) {
+                    future.complete(generation);
+                } else {
+                    future.completeExceptionally(e);
+                }
+                return;
+            }
+            // Only the difference to the current generation is applied, unchanged packages are reused
+            final CacheGeneration oldGeneration = generation;
+            final CatalogDelta    delta         = CatalogDelta.compute(oldGeneration.getCatalog(), pkgsFuture.join());
+            LOGGER.debug("Cache refresh delta {}", delta);
+            final CacheGeneration newGeneration = new CacheGeneration(PkgCatalog.of(oldGeneration.getCatalog(), delta, cacheConfig.getCatalogStorage()),
+                                                                      majorVersionsFuture.join().isEmpty() ? oldGeneration.getMajorVersions() : majorVersionsFuture.join(),
+                                                                      versionsPerDistributionFuture.join().isEmpty() ? oldGeneration.getVersionsPerDistribution() : versionsPerDistributionFuture.join(),
+                                                                      Instant.now());
+            newGeneration.preparePlatformViews(oldGeneration);
+            generation = newGeneration;
+            cacheReady.set(true);
+            if (!delta.isEmpty()) { fireChange(() -> GenerationChange.of(oldGeneration, generation, delta)); }
+            if (oldGeneration.getCatalog() != generation.getCatalog()) { oldGeneration.close(); }
+            fireEvt(CacheEvt.CACHE_READY);
+            writeSnapshot(newGeneration, !delta.isEmpty());
+            future.complete(newGeneration);
+        }));
+    }
+
+    // Cold start, the catalog is loaded per distribution in parallel and loaded slices are published as partial generations.
+    // Each partial generation rebuilds the catalog, so one is only published once the loaded packages grew by MIN_SLICE_GROWTH
+    // since the last one, that keeps the work of all partial generations within a small multiple of the complete catalog.
+    private void loadSlices(final CompletableFuture<CacheGeneration> future) {
+        cacheReady.set(false);
+        fireEvt(CacheEvt.CACHE_UPDATING);
+        final List<Distribution>                                         distributions                 = Distribution.getDistributions();
+        final CompletableFuture<List<MajorVersion>>                      majorVersionsFuture           = loader.loadMajorVersions();
+        final CompletableFuture<Map<Distribution, List<VersionNumber>>> versionsPerDistributionFuture = loader.loadVersionsPerDistribution();
+        final List<Pkg>                                                  loadedPkgs                    = new ArrayList<>();
+        final Set<Distribution>                                          loadedDistributions           = EnumSet.noneOf(Distribution.class);
+        final CompletableFuture<?>[]                                     slices                        = new CompletableFuture<?>[distributions.size()];
+        final int[]                                                      publishedSize                 = { 0 };
+        for (int i = 0; i < slices.length; i++) {
+            final Distribution distribution = distributions.get(i);
+            slices[i] = loader.loadPkgs(distribution).thenAccept(pkgs -> {
+                synchronized (loadedPkgs) {
+                    if (service.isShutdown()) { return; }
+                    loadedPkgs.addAll(pkgs);
+                    loadedDistributions.add(distribution);
+                    if (loadedPkgs.size() > publishedSize[0] && loadedPkgs.size() - publishedSize[0] >= publishedSize[0] * MIN_SLICE_GROWTH) {
+                        final CacheGeneration partialGeneration = generation;
+                        generation = new CacheGeneration(PkgCatalog.of(loadedPkgs, cacheConfig.getCatalogStorage()), getNow(majorVersionsFuture, List.of()), getNow(versionsPerDistributionFuture, Map.of()),
+                                                         Instant.now(), loadedDistributions);
+                        publishedSize[0] = loadedPkgs.size();
+                        fireChange(() -> GenerationChange.of(partialGeneration, generation));
+                        partialGeneration.close();
+                    }
+                    fireEvt(CacheEvt.CACHE_PROGRESS, loadedDistributions.size(), slices.length);
+                }
+            });
+        }
+        final CompletableFuture<?>[] all = Arrays.copyOf(slices, slices.length + 2);
+        all[slices.length]     = majorVersionsFuture;
+        all[slices.length + 1] = versionsPerDistributionFuture;
+        CompletableFuture.allOf(all).whenComplete((v, e) -> completeOnFailure(future, () -> {
+            if (service.isShutdown()) {
+                future.complete(generation);
+                return;
+            }
+            if (Arrays.stream(slices).anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                // The loaded slices stay available while the complete catalog is loaded in one request
+                LOGGER.debug("Loading catalog slices failed, loading complete catalog");
+                loadCatalog(future);
+                return;
+            }
+            final CacheGeneration partialGeneration = generation;
+            synchronized (loadedPkgs) {
+                final CacheGeneration completeGeneration = new CacheGeneration(PkgCatalog.of(loadedPkgs, cacheConfig.getCatalogStorage()), getNow(majorVersionsFuture, List.of()),
+                                                                               getNow(versionsPerDistributionFuture, Map.of()), Instant.now());
+                completeGeneration.preparePlatformViews(partialGeneration);
+                generation = completeGeneration;
+            }
+            cacheReady.set(true);
+            fireChange(() -> GenerationChange.of(partialGeneration, generation));
+            partialGeneration.close();
+            fireEvt(CacheEvt.CACHE_READY);
+            final CacheGeneration newGeneration = generation;
+            writeSnapshot(newGeneration, true);
+            future.complete(newGeneration);
+        }));
+    }
+
+    // Runs a step of a refresh, an exception completes the refresh future so the next refresh is still scheduled
+    private void completeOnFailure(final CompletableFuture<CacheGeneration> future, final Runnable step) {
+        try {
+            step.run();
+        } catch (RuntimeException | Error e) {
+            LOGGER.warn("Cache refresh failed, keeping generation {}", generation.getNumber(), e);
+            cacheReady.set(generation.isComplete() && !generation.isEmpty());
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void writeSnapshot(final CacheGeneration generation, final boolean changed) {
+        final Path snapshotFile = cacheConfig.getSnapshotFile();
+        if (null == snapshotFile || (!changed && Files.exists(snapshotFile))) { return; }
+        try {
+            service.execute(() -> CacheSnapshotFile.write(generation, snapshotFile));
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Cache snapshot not written: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void scheduleRefresh(final Duration delay) {
+        if (null != scheduledRefresh) { scheduledRefresh.cancel(false); }
+        if (service.isShutdown()) { return; }
+        try {
+            scheduledRefresh = service.schedule(() -> { refreshNow(); }, Math.max(1000, delay.toMillis()), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Cache refresh not scheduled: {}", e.getMessage());
+        }
+    }
+
+    private void fireEvt(final EvtType<CacheEvt> type) { fireEvt(type, 0, 0); }
+    private void fireEvt(final EvtType<CacheEvt> type, final int slicesLoaded, final int slicesTotal) {
+        final CacheEvt evt = new CacheEvt(this, type, slicesLoaded, slicesTotal);
+        listeners.forEach(listener -> listener.accept(evt));
+    }
+
+    // The old generation is still open while the listeners are called, it is closed afterwards
+    private void fireChange(final Supplier<GenerationChange> change) {
+        if (changeListeners.isEmpty()) { return; }
+        final GenerationChange generationChange = change.get();
+        if (generationChange.isEmpty()) { return; }
+        changeListeners.forEach(listener -> {
+            try {
+                listener.accept(generationChange);
+            } catch (RuntimeException e) {
+                LOGGER.debug("Generation change listener failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    private static <T> T getNow(final CompletableFuture<T> future, final T defaultValue) {
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : defaultValue;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static final class EngineKey {
+        private final String      apiUrl;
+        private final CacheConfig cacheConfig;
+
+
+        EngineKey(final String apiUrl, final CacheConfig cacheConfig) {
+            this.apiUrl      = apiUrl;
+            this.cacheConfig = cacheConfig;
+        }
+
+
+        @Override public boolean equals(final Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof EngineKey)) { return false; }
+            final EngineKey that = (EngineKey) o;
+            return Objects.equals(apiUrl, that.apiUrl) && cacheConfig.equals(that.cacheConfig);
+        }
+
+        @Override public int hashCode() { return Objects.hash(apiUrl, cacheConfig); }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.MajorVersion;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.Platform;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Immutable state of the cache at one point in time, swapped as a whole on refresh.
+ * While the catalog is loaded slice by slice a generation may only contain the packages of some distributions.
+ * Readers pin a generation with retain() and release(), its catalog is closed when the owner closed it and the last reader released it.
+ */
+public class CacheGeneration implements AutoCloseable {
+    private static final AtomicLong                             COUNTER = new AtomicLong();
+    public  static final CacheGeneration                        EMPTY   = new CacheGeneration(HeapPkgCatalog.EMPTY, List.of(), Map.of(), Instant.EPOCH);
+    private        final long                                   number;
+    private        final Instant                                createdAt;
+    private        final PkgCatalog                             catalog;
+    private        final List<MajorVersion>                     majorVersions;
+    private        final MajorVersionIndex                      majorVersionIndex;
+    private        final Map<Distribution, List<VersionNumber>> versionsPerDistribution;
+    private        final DistributionIndex                      distributionIndex;
+    private        final Set<Distribution>                      loadedDistributions;
+    private        final Map<Platform, PlatformView>            platformViews = new ConcurrentHashMap<>();
+    private        final AtomicInteger                          references    = new AtomicInteger(1);
+    private        final AtomicBoolean                          closed        = new AtomicBoolean(false);
+    private        volatile LatestIndex                         latestIndex;
+    private        volatile VersionIndex                        versionIndex;
+    private        volatile BitmapIndex                         bitmapIndex;
+    private        volatile CatalogStatistics                   statistics;
+    private        volatile List<Pkg>                           allPkgs;
+
+
+    public CacheGeneration(final PkgCatalog catalog, final List<MajorVersion> majorVersions, final Map<Distribution, List<VersionNumber>> versionsPerDistribution, final Instant createdAt) {
+        this(catalog, majorVersions, versionsPerDistribution, createdAt, null);
+    }
+    /**
+     * @param loadedDistributions distributions whose packages are completely contained in the catalog, null if the catalog is complete
+     */
+    public CacheGeneration(final PkgCatalog catalog, final List<MajorVersion> majorVersions, final Map<Distribution, List<VersionNumber>> versionsPerDistribution, final Instant createdAt,
+                           final Collection<Distribution> loadedDistributions) {
+        this.number                  = COUNTER.getAndIncrement();
+        this.createdAt               = createdAt;
+        this.catalog                 = catalog;
+        this.majorVersions           = List.copyOf(majorVersions);
+        this.majorVersionIndex       = new MajorVersionIndex(this.majorVersions);
+        this.versionsPerDistribution = Collections.unmodifiableMap(new LinkedHashMap<>(versionsPerDistribution));
+        this.distributionIndex       = new DistributionIndex(this.versionsPerDistribution);
+        this.loadedDistributions     = null == loadedDistributions ? null : loadedDistributions.isEmpty() ? Set.of() : Collections.unmodifiableSet(EnumSet.copyOf(loadedDistributions));
+    }
+
+
+    public long getNumber() { return number; }
+
+    public Instant getCreatedAt() { return createdAt; }
+
+    public PkgCatalog getCatalog() { return catalog; }
+
+    public List<MajorVersion> getMajorVersions() { return majorVersions; }
+
+    public MajorVersionIndex getMajorVersionIndex() { return majorVersionIndex; }
+
+    public Map<Distribution, List<VersionNumber>> getVersionsPerDistribution() { return versionsPerDistribution; }
+
+    public DistributionIndex getDistributionIndex() { return distributionIndex; }
+
+    /**
+     * @return value histograms of the catalog, collected on first use
+     */
+    public CatalogStatistics getStatistics() {
+        CatalogStatistics current = statistics;
+        if (null == current) {
+            synchronized (this) {
+                current = statistics;
+                if (null == current) {
+                    current    = new CatalogStatistics(catalog);
+                    statistics = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the latest view of the catalog, built on first use
+     */
+    public LatestIndex getLatestIndex() {
+        LatestIndex index = latestIndex;
+        if (null == index) {
+            synchronized (this) {
+                index = latestIndex;
+                if (null == index) {
+                    index       = new LatestIndex(catalog);
+                    latestIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the version ordered index of the catalog, built on first use
+     */
+    public VersionIndex getVersionIndex() {
+        VersionIndex index = versionIndex;
+        if (null == index) {
+            synchronized (this) {
+                index = versionIndex;
+                if (null == index) {
+                    index        = new VersionIndex(catalog);
+                    versionIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the attribute bitmaps of the catalog, built on first use
+     */
+    public BitmapIndex getBitmapIndex() {
+        BitmapIndex index = bitmapIndex;
+        if (null == index) {
+            synchronized (this) {
+                index = bitmapIndex;
+                if (null == index) {
+                    index       = new BitmapIndex(catalog);
+                    bitmapIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return a new queue with all packages of the catalog, the packages are decoded from the catalog on first use and shared afterwards
+     */
+    public Queue<Pkg> getAllPkgs() {
+        List<Pkg> pkgs = allPkgs;
+        if (null == pkgs) {
+            synchronized (this) {
+                pkgs = allPkgs;
+                if (null == pkgs) {
+                    pkgs    = List.copyOf(catalog.getAllPkgs());
+                    allPkgs = pkgs;
+                }
+            }
+        }
+        return new ConcurrentLinkedQueue<>(pkgs);
+    }
+
+    /**
+     * @return the packages of the catalog that are installable on the given platform, built on first use
+     */
+    public PlatformView getPlatformView(final Platform platform) { return platformViews.computeIfAbsent(platform, key -> new PlatformView(catalog, key)); }
+
+    /**
+     * Builds the platform views that were used on the given generation, so resolving packages on a new generation does not wait for them.
+     * Views of an unchanged catalog are shared.
+     */
+    public void preparePlatformViews(final CacheGeneration previous) {
+        if (previous.catalog == catalog) {
+            platformViews.putAll(previous.platformViews);
+        } else {
+            previous.platformViews.keySet().forEach(this::getPlatformView);
+        }
+    }
+
+    public boolean isEmpty() { return catalog.size() == 0; }
+
+    public boolean isComplete() { return null == loadedDistributions; }
+
+    /**
+     * @return distributions whose packages are contained in a partially loaded catalog, all distributions if the catalog is complete
+     */
+    public Set<Distribution> getLoadedDistributions() { return null == loadedDistributions ? Set.copyOf(Distribution.getDistributions()) : loadedDistributions; }
+
+    /**
+     * @return true if all packages of the given distributions are contained in the catalog, an empty list
+     * stands for all distributions and is only covered by a complete catalog
+     */
+    public boolean covers(final Collection<Distribution> distributions) {
+        if (null == loadedDistributions) { return true; }
+        return null != distributions && !distributions.isEmpty() && loadedDistributions.containsAll(distributions);
+    }
+
+    /**
+     * Pins the generation so its catalog stays open until release() is called.
+     * @return false if the generation was already reclaimed and must not be read
+     */
+    public boolean retain() {
+        while (true) {
+            final int count = references.get();
+            if (0 == count) { return false; }
+            if (references.compareAndSet(count, count + 1)) { return true; }
+        }
+    }
+
+    public void release() {
+        if (0 == references.decrementAndGet()) { catalog.close(); }
+    }
+
+    /**
+     * Releases the reference of the owner, the catalog is closed as soon as no reader pins the generation any more.
+     */
+    @Override public void close() {
+        if (this == EMPTY) { return; }
+        if (closed.compareAndSet(false, true)) { release(); }
+    }
+}
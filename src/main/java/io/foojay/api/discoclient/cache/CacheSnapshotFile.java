@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.MajorVersion;
+import io.foojay.api.discoclient.pkg.SemVer;
+import io.foojay.api.discoclient.pkg.TermOfSupport;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import io.foojay.api.discoclient.util.OutputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Reads and writes a cache generation from/to a versioned binary file.
+ * Layout: header | major versions | versions per distribution | encoded package catalog (see OffHeapPkgCatalog)
+ */
+public class CacheSnapshotFile {
+    private static final Logger LOGGER         = LoggerFactory.getLogger(CacheSnapshotFile.class);
+    public  static final int    MAGIC          = 0x44435353; // DCSS
+    public  static final int    FORMAT_VERSION = 1;
+
+
+    private CacheSnapshotFile() {}
+
+
+    public static boolean write(final CacheGeneration generation, final Path file) {
+        if (null == file || null == generation || generation.isEmpty()) { return false; }
+        try {
+            final Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            final Path tmpFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(generation.getCreatedAt().toEpochMilli());
+
+                final List<MajorVersion> majorVersions = generation.getMajorVersions();
+                out.writeInt(majorVersions.size());
+                for (MajorVersion majorVersion : majorVersions) {
+                    out.writeInt(majorVersion.getAsInt());
+                    writeString(out, majorVersion.getTermOfSupport().name());
+                    out.writeBoolean(majorVersion.isMaintained());
+                    out.writeInt(majorVersion.getVersions().size());
+                    for (SemVer semVer : majorVersion.getVersions()) { writeString(out, semVer.toString(false)); }
+                }
+
+                final Map<Distribution, List<VersionNumber>> versionsPerDistribution = generation.getVersionsPerDistribution();
+                out.writeInt(versionsPerDistribution.size());
+                for (Map.Entry<Distribution, List<VersionNumber>> entry : versionsPerDistribution.entrySet()) {
+                    writeString(out, entry.getKey().name());
+                    out.writeInt(entry.getValue().size());
+                    for (VersionNumber versionNumber : entry.getValue()) { writeString(out, versionNumber.toString(OutputFormat.FULL, false, true)); }
+                }
+
+                final ByteBuffer catalog = generation.getCatalog() instanceof OffHeapPkgCatalog ? ((OffHeapPkgCatalog) generation.getCatalog()).getBuffer()
+                                                                                                : OffHeapPkgCatalog.encode(generation.getCatalog().getAllPkgs(), ByteBuffer::allocate);
+                out.writeInt(catalog.remaining());
+                out.flush();
+                while (catalog.hasRemaining()) { channel.write(catalog); }
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.error("Error writing cache snapshot {} : {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    public static CacheGeneration read(final Path file, final CatalogStorage storage) {
+        if (null == file || !Files.isRegularFile(file)) { return null; }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC)          { throw new IllegalArgumentException("Not a cache snapshot file"); }
+            if (buffer.getInt() != FORMAT_VERSION) { throw new IllegalArgumentException("Unsupported cache snapshot format version"); }
+            final Instant createdAt = Instant.ofEpochMilli(buffer.getLong());
+
+            final int                majorVersionCount = buffer.getInt();
+            final List<MajorVersion> majorVersions     = new ArrayList<>(majorVersionCount);
+            for (int i = 0; i < majorVersionCount; i++) {
+                final int           majorVersion  = buffer.getInt();
+                final TermOfSupport termOfSupport = TermOfSupport.valueOf(readString(buffer));
+                final boolean       maintained    = buffer.get() != 0;
+                final int           versionCount  = buffer.getInt();
+                final List<SemVer>  versions      = new ArrayList<>(versionCount);
+                for (int j = 0; j < versionCount; j++) {
+                    final SemVer semVer = SemVer.fromText(readString(buffer)).getSemVer1();
+                    if (null != semVer) { versions.add(semVer); }
+                }
+                majorVersions.add(new MajorVersion(majorVersion, termOfSupport, maintained, versions));
+            }
+
+            final int                                    distributionCount       = buffer.getInt();
+            final Map<Distribution, List<VersionNumber>> versionsPerDistribution = new LinkedHashMap<>();
+            for (int i = 0; i < distributionCount; i++) {
+                final Distribution        distribution = Distribution.valueOf(readString(buffer));
+                final int                 versionCount = buffer.getInt();
+                final List<VersionNumber> versions     = new ArrayList<>(versionCount);
+                for (int j = 0; j < versionCount; j++) { versions.add(VersionNumber.fromText(readString(buffer))); }
+                versionsPerDistribution.put(distribution, versions);
+            }
+
+            final int        catalogLength = buffer.getInt();
+            final ByteBuffer catalogSlice  = buffer.slice();
+            catalogSlice.limit(catalogLength);
+            final ByteBuffer catalogBuffer;
+            switch (storage) {
+                case MAPPED:
+                    // Catalog is used straight from the mapped snapshot, replacing the file later does not affect the mapping
+                    catalogBuffer = catalogSlice;
+                    break;
+                case DIRECT:
+                    catalogBuffer = ByteBuffer.allocateDirect(catalogLength).put(catalogSlice).flip();
+                    break;
+                case HEAP:
+                default:
+                    // Keep it encoded, Pkg objects are created lazily when they leave the cache
+                    catalogBuffer = ByteBuffer.allocate(catalogLength).put(catalogSlice).flip();
+                    break;
+            }
+            return new CacheGeneration(OffHeapPkgCatalog.wrap(catalogBuffer), majorVersions, versionsPerDistribution, createdAt);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Error reading cache snapshot {} : {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String text) throws IOException {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
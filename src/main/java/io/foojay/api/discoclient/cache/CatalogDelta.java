@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.util.OutputFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Difference between a catalog and a freshly fetched list of packages, computed by a sorted merge on the package id.
+ * The merged catalog is described by sources, an entry >= 0 is the index of an unchanged record in the current catalog,
+ * an entry < 0 refers to the added or changed package -(entry + 1) in getPkgs().
+ */
+public class CatalogDelta {
+    private static final long      FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long      FNV_PRIME        = 0x100000001b3L;
+    private        final int[]     sources;
+    private        final List<Pkg> pkgs;
+    private        final long[]    contentHashes;
+    private        final int       added;
+    private        final int       changed;
+    private        final int       removed;
+
+
+    private CatalogDelta(final int[] sources, final List<Pkg> pkgs, final long[] contentHashes, final int added, final int changed, final int removed) {
+        this.sources       = sources;
+        this.pkgs          = pkgs;
+        this.contentHashes = contentHashes;
+        this.added         = added;
+        this.changed       = changed;
+        this.removed       = removed;
+    }
+
+
+    public static CatalogDelta compute(final PkgCatalog current, final Collection<Pkg> fetched) {
+        final Pkg[] sorted = fetched.toArray(new Pkg[0]);
+        Arrays.sort(sorted, Comparator.comparing(Pkg::getId));
+
+        final int[]     sources       = new int[sorted.length];
+        final List<Pkg> pkgs          = new ArrayList<>();
+        final long[]    contentHashes = new long[sorted.length];
+        int size    = 0;
+        int added   = 0;
+        int changed = 0;
+        int removed = 0;
+        int index   = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            final Pkg pkg = sorted[i];
+            if (i > 0 && pkg.getId().equals(sorted[i - 1].getId())) { continue; } // Duplicate id, keep the first one
+
+            int compare = -1;
+            while (index < current.size() && (compare = current.getId(index).compareTo(pkg.getId())) < 0) {
+                removed++;
+                index++;
+            }
+            if (index >= current.size()) { compare = 1; }
+
+            final long contentHash = contentHash(pkg);
+            if (0 == compare && current.getContentHash(index) == contentHash) {
+                sources[size++] = index++;
+                continue;
+            }
+            if (0 == compare) {
+                changed++;
+                index++;
+            } else {
+                added++;
+            }
+            contentHashes[pkgs.size()] = contentHash;
+            pkgs.add(pkg);
+            sources[size++] = -pkgs.size();
+        }
+        removed += current.size() - index;
+        return new CatalogDelta(Arrays.copyOf(sources, size), pkgs, Arrays.copyOf(contentHashes, pkgs.size()), added, changed, removed);
+    }
+
+    /**
+     * 64 bit FNV-1a hash over all attributes of a package that are stored in a catalog
+     */
+    public static long contentHash(final Pkg pkg) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, pkg.getId());
+        hash = hash(hash, pkg.getEphemeralId());
+        hash = hash(hash, pkg.getFileName());
+        hash = hash(hash, pkg.getJavaVersion().toString(false));
+        hash = hash(hash, pkg.getDistributionVersion().getFeature().isPresent() ? pkg.getDistributionVersion().toString(OutputFormat.FULL, false, true) : "");
+        hash = hash(hash, pkg.getDistribution().ordinal());
+        hash = hash(hash, pkg.getMajorVersion().getAsInt());
+        hash = hash(hash, pkg.getArchitecture().ordinal());
+        hash = hash(hash, pkg.getArchiveType().ordinal());
+        hash = hash(hash, pkg.getOperatingSystem().ordinal());
+        hash = hash(hash, pkg.getLibCType().ordinal());
+        hash = hash(hash, pkg.getPackageType().ordinal());
+        hash = hash(hash, pkg.getReleaseStatus().ordinal());
+        hash = hash(hash, pkg.getTermOfSupport().ordinal());
+        hash = hash(hash, (Boolean.TRUE.equals(pkg.isJavaFXBundled())       ? 1 : 0) |
+                          (Boolean.TRUE.equals(pkg.isDirectlyDownloadable()) ? 2 : 0) |
+                          (Boolean.TRUE.equals(pkg.isLatestBuildAvailable()) ? 4 : 0));
+        return hash;
+    }
+
+
+    public boolean isEmpty() { return 0 == added && 0 == changed && 0 == removed; }
+
+    public int size() { return sources.length; }
+
+    public int getSource(final int index) { return sources[index]; }
+
+    public List<Pkg> getPkgs() { return pkgs; }
+
+    public Pkg getPkg(final int source) { return pkgs.get(-source - 1); }
+
+    public long getContentHash(final int source) { return contentHashes[-source - 1]; }
+
+    public int getAdded() { return added; }
+
+    public int getChanged() { return changed; }
+
+    public int getRemoved() { return removed; }
+
+    /**
+     * Returns all packages of the merged catalog, unchanged ones are taken from the given catalog
+     */
+    public List<Pkg> getAllPkgs(final PkgCatalog current) {
+        final List<Pkg> allPkgs = new ArrayList<>(sources.length);
+        for (int source : sources) { allPkgs.add(source >= 0 ? current.getPkg(source) : getPkg(source)); }
+        return allPkgs;
+    }
+
+    @Override public String toString() {
+        return new StringBuilder().append("{")
+                                  .append("\"added\":").append(added).append(",")
+                                  .append("\"changed\":").append(changed).append(",")
+                                  .append("\"removed\":").append(removed).append(",")
+                                  .append("\"unchanged\":").append(sources.length - added - changed)
+                                  .append("}")
+                                  .toString();
+    }
+
+    private static long hash(long hash, final String text) {
+        for (byte b : (null == text ? "" : text).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash(hash, -1);
+    }
+
+    private static long hash(long hash, final int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash ^= (value >>> shift) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Distribution;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+
+/**
+ * Value histograms of a catalog, collected on first use of the generation and used by the query planner to
+ * estimate the selectivity of filters. Attributes are counted per enum constant, versions per distribution
+ * and feature version together with the number of distinct version keys in each feature version.
+ */
+public class CatalogStatistics {
+    private final int                  size;
+    private final Map<Class<?>, int[]> histograms;
+    private final int                  javafxBundled;
+    private final int                  directlyDownloadable;
+    private final int[][]              featureCounts;
+    private final int[][]              featureDistinct;
+
+
+    // ******************** Constructors **************************************
+    public CatalogStatistics(final PkgCatalog catalog) {
+        final int         distributions = Distribution.values().length;
+        final Set<Long>[] keys          = newKeySets(distributions);
+        int               maxFeature    = 0;
+        int               bundled       = 0;
+        int               downloadable  = 0;
+        this.size       = catalog.size();
+        this.histograms = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            forEachAttribute(catalog, i, value -> histograms.computeIfAbsent(value.getDeclaringClass(), type -> new int[type.getEnumConstants().length])[value.ordinal()]++);
+            if (catalog.isJavaFXBundled(i))        { bundled++; }
+            if (catalog.isDirectlyDownloadable(i)) { downloadable++; }
+            final long key = catalog.getVersionKey(i);
+            keys[catalog.getDistribution(i).ordinal()].add(key);
+            maxFeature = Math.max(maxFeature, feature(key));
+        }
+        this.javafxBundled        = bundled;
+        this.directlyDownloadable = downloadable;
+        this.featureCounts        = new int[distributions][maxFeature + 1];
+        this.featureDistinct      = new int[distributions][maxFeature + 1];
+        for (int i = 0; i < size; i++) { featureCounts[catalog.getDistribution(i).ordinal()][feature(catalog.getVersionKey(i))]++; }
+        for (int d = 0; d < distributions; d++) {
+            for (long key : keys[d]) { featureDistinct[d][feature(key)]++; }
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    public int getSize() { return size; }
+
+    /**
+     * @return number of records whose attribute of the type of the given value has the given value
+     */
+    public int count(final Enum<?> value) {
+        if (null == value) { return 0; }
+        final int[] histogram = histograms.get(value.getDeclaringClass());
+        return null == histogram ? 0 : histogram[value.ordinal()];
+    }
+
+    public int countJavafxBundled(final boolean bundled) { return bundled ? javafxBundled : size - javafxBundled; }
+
+    public int countDirectlyDownloadable(final boolean downloadable) { return downloadable ? directlyDownloadable : size - directlyDownloadable; }
+
+    /**
+     * Estimates the number of records of a distribution with a version key within [fromKey, toKey]. Single keys are
+     * estimated by the average number of records per distinct key of their feature version, feature versions that
+     * are only partially covered by the range are assumed to be covered by half.
+     */
+    public double estimateVersionRange(final Distribution distribution, final long fromKey, final long toKey) {
+        if (fromKey > toKey) { return 0; }
+        final int[] counts      = featureCounts[distribution.ordinal()];
+        final int[] distinct    = featureDistinct[distribution.ordinal()];
+        final int   fromFeature = fromKey < 0 ? 0 : Math.min(feature(fromKey), counts.length);
+        final int   toFeature   = Math.min(feature(toKey), counts.length - 1);
+        if (fromKey == toKey) { return fromFeature < counts.length ? counts[fromFeature] / (double) Math.max(1, distinct[fromFeature]) : 0; }
+        double estimate = 0;
+        for (int feature = fromFeature; feature <= toFeature; feature++) {
+            double coverage = 1.0;
+            if (feature == fromFeature && fromKey > VersionKey.featureMin(feature)) { coverage *= 0.5; }
+            if (feature == toFeature && toKey < VersionKey.featureMax(feature))     { coverage *= 0.5; }
+            estimate += counts[feature] * coverage;
+        }
+        return estimate;
+    }
+
+    /**
+     * Passes the enum valued attributes of a record that are set to the given consumer.
+     */
+    static void forEachAttribute(final PkgCatalog catalog, final int index, final Consumer<Enum<?>> consumer) {
+        for (Enum<?> value : new Enum<?>[] { catalog.getDistribution(index), catalog.getArchitecture(index), catalog.getArchiveType(index), catalog.getPackageType(index),
+                                             catalog.getOperatingSystem(index), catalog.getLibCType(index), catalog.getReleaseStatus(index), catalog.getTermOfSupport(index),
+                                             catalog.getBitness(index) }) {
+            if (null != value) { consumer.accept(value); }
+        }
+    }
+
+    // Negative keys (VersionKey.NONE) have no feature version and are counted in bucket 0
+    private static int feature(final long key) { return key < 0 ? 0 : VersionKey.feature(key); }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Set<Long>[] newKeySets(final int count) {
+        final Set<Long>[] sets = new Set[count];
+        for (int i = 0; i < count; i++) { sets[i] = new HashSet<>(); }
+        return sets;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Distributions of a cache generation with their versions as sorted packed version keys (see VersionKey)
+ * and a reverse index from version key to the distributions that provide it, stored as a bit mask of
+ * the positions in the distribution list.
+ */
+public class DistributionIndex {
+    private final List<Distribution>        distributions;
+    private final Map<Distribution, long[]> versionsPerDistribution;
+    private final long[]                    reverseKeys;
+    private final long[]                    reverseMasks;
+
+
+    public DistributionIndex(final Map<Distribution, List<VersionNumber>> versionsPerDistribution) {
+        this.distributions           = Collections.unmodifiableList(new ArrayList<>(versionsPerDistribution.keySet()));
+        this.versionsPerDistribution = new EnumMap<>(Distribution.class);
+        if (distributions.size() > Long.SIZE) { throw new IllegalArgumentException("Too many distributions for the reverse index"); }
+
+        final TreeMap<Long, Long> reverse = new TreeMap<>();
+        for (int i = 0; i < distributions.size(); i++) {
+            final long   bit  = 1L << i;
+            final long[] keys = versionsPerDistribution.get(distributions.get(i)).stream()
+                                                       .mapToLong(VersionKey::of)
+                                                       .filter(key -> VersionKey.NONE != key)
+                                                       .sorted()
+                                                       .distinct()
+                                                       .toArray();
+            this.versionsPerDistribution.put(distributions.get(i), keys);
+            for (long key : keys) { reverse.merge(key, bit, (a, b) -> a | b); }
+        }
+        this.reverseKeys  = new long[reverse.size()];
+        this.reverseMasks = new long[reverse.size()];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : reverse.entrySet()) {
+            reverseKeys[i]  = entry.getKey();
+            reverseMasks[i] = entry.getValue();
+            i++;
+        }
+    }
+
+
+    public boolean isEmpty() { return distributions.isEmpty(); }
+
+    /**
+     * @return distributions in the order of the remote api
+     */
+    public List<Distribution> getDistributions() { return distributions; }
+
+    /**
+     * @return sorted version keys of the given distribution
+     */
+    public long[] getVersionKeys(final Distribution distribution) {
+        final long[] keys = versionsPerDistribution.get(distribution);
+        return null == keys ? new long[0] : keys.clone();
+    }
+
+    public boolean supports(final Distribution distribution, final long versionKey) {
+        final long[] keys = versionsPerDistribution.get(distribution);
+        return null != keys && Arrays.binarySearch(keys, versionKey) >= 0;
+    }
+
+    /**
+     * @return distributions that provide exactly the given version, in the order of the remote api
+     */
+    public List<Distribution> getDistributionsForVersion(final long versionKey) {
+        final int position = Arrays.binarySearch(reverseKeys, versionKey);
+        if (position < 0) { return new ArrayList<>(); }
+        final List<Distribution> result = new ArrayList<>(Long.bitCount(reverseMasks[position]));
+        for (long mask = reverseMasks[position]; mask != 0; mask &= mask - 1) { result.add(distributions.get(Long.numberOfTrailingZeros(mask))); }
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import java.util.Arrays;
+
+
+/**
+ * Records that left and entered the catalog when a generation replaced its predecessor. A changed package
+ * leaves with its old content and enters with its new content. Both generations are readable while the change
+ * listeners of the cache engine are called, the record indices are only valid within their own generation.
+ */
+public class GenerationChange {
+    private final CacheGeneration oldGeneration;
+    private final CacheGeneration newGeneration;
+    private final int[]           removed;
+    private final int[]           added;
+
+
+    // ******************** Constructors **************************************
+    private GenerationChange(final CacheGeneration oldGeneration, final CacheGeneration newGeneration, final int[] removed, final int[] added) {
+        this.oldGeneration = oldGeneration;
+        this.newGeneration = newGeneration;
+        this.removed       = removed;
+        this.added         = added;
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Derives the change from the delta the new catalog was merged from, the records of the old catalog that the
+     * delta does not reuse are removed and the records it took from the fetched packages are added.
+     */
+    static GenerationChange of(final CacheGeneration oldGeneration, final CacheGeneration newGeneration, final CatalogDelta delta) {
+        final int[] removed      = new int[delta.getChanged() + delta.getRemoved()];
+        final int[] added        = new int[delta.getAdded() + delta.getChanged()];
+        int         removedCount = 0;
+        int         addedCount   = 0;
+        int         nextOld      = 0;
+        for (int index = 0; index < delta.size(); index++) {
+            final int source = delta.getSource(index);
+            if (source < 0) {
+                added[addedCount++] = index;
+                continue;
+            }
+            while (nextOld < source) { removed[removedCount++] = nextOld++; }
+            nextOld = source + 1;
+        }
+        while (nextOld < oldGeneration.getCatalog().size()) { removed[removedCount++] = nextOld++; }
+        return new GenerationChange(oldGeneration, newGeneration, Arrays.copyOf(removed, removedCount), Arrays.copyOf(added, addedCount));
+    }
+
+    /**
+     * Computes the change by a merge of both catalogs on the package id, used if the new catalog was not built from a delta.
+     */
+    static GenerationChange of(final CacheGeneration oldGeneration, final CacheGeneration newGeneration) {
+        final PkgCatalog oldCatalog   = oldGeneration.getCatalog();
+        final PkgCatalog newCatalog   = newGeneration.getCatalog();
+        final int[]      removed      = new int[oldCatalog.size()];
+        final int[]      added        = new int[newCatalog.size()];
+        int              removedCount = 0;
+        int              addedCount   = 0;
+        int              oldIndex     = 0;
+        int              newIndex     = 0;
+        while (oldIndex < oldCatalog.size() || newIndex < newCatalog.size()) {
+            final int compare = oldIndex == oldCatalog.size() ? 1 : newIndex == newCatalog.size() ? -1 : oldCatalog.getId(oldIndex).compareTo(newCatalog.getId(newIndex));
+            if (compare < 0) {
+                removed[removedCount++] = oldIndex++;
+            } else if (compare > 0) {
+                added[addedCount++] = newIndex++;
+            } else {
+                if (oldCatalog.getContentHash(oldIndex) != newCatalog.getContentHash(newIndex)) {
+                    removed[removedCount++] = oldIndex;
+                    added[addedCount++]     = newIndex;
+                }
+                oldIndex++;
+                newIndex++;
+            }
+        }
+        return new GenerationChange(oldGeneration, newGeneration, Arrays.copyOf(removed, removedCount), Arrays.copyOf(added, addedCount));
+    }
+
+    public CacheGeneration getOldGeneration() { return oldGeneration; }
+
+    public CacheGeneration getNewGeneration() { return newGeneration; }
+
+    /**
+     * @return indices of the records in the catalog of the old generation that are not contained in the new one with the same content
+     */
+    public int[] getRemoved() { return removed.clone(); }
+
+    /**
+     * @return indices of the records in the catalog of the new generation that were not contained in the old one with the same content
+     */
+    public int[] getAdded() { return added.clone(); }
+
+    public boolean isEmpty() { return 0 == removed.length && 0 == added.length; }
+}
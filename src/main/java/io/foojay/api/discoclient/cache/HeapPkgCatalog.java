@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Architecture;
+import io.foojay.api.discoclient.pkg.ArchiveType;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.LibCType;
+import io.foojay.api.discoclient.pkg.OperatingSystem;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+import io.foojay.api.discoclient.pkg.TermOfSupport;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+
+public class HeapPkgCatalog implements PkgCatalog {
+    public  static final HeapPkgCatalog EMPTY = new HeapPkgCatalog(List.of());
+    private        final Pkg[]          pkgs;
+    private        final long[]         versionKeys;
+    private        final long[]         contentHashes;
+
+
+    public HeapPkgCatalog(final Collection<Pkg> pkgs) {
+        this.pkgs          = pkgs.toArray(new Pkg[0]);
+        Arrays.sort(this.pkgs, Comparator.comparing(Pkg::getId));
+        this.versionKeys   = new long[this.pkgs.length];
+        this.contentHashes = new long[this.pkgs.length];
+        for (int i = 0; i < this.pkgs.length; i++) {
+            versionKeys[i]   = VersionKey.of(this.pkgs[i].getJavaVersion().getVersionNumber());
+            contentHashes[i] = CatalogDelta.contentHash(this.pkgs[i]);
+        }
+    }
+    private HeapPkgCatalog(final Pkg[] sortedPkgs, final long[] versionKeys, final long[] contentHashes) {
+        this.pkgs          = sortedPkgs;
+        this.versionKeys   = versionKeys;
+        this.contentHashes = contentHashes;
+    }
+
+
+    /**
+     * Creates a new catalog by applying the given delta to the current catalog,
+     * unchanged Pkg instances and their version keys and content hashes are reused.
+     */
+    public static HeapPkgCatalog merge(final PkgCatalog current, final CatalogDelta delta) {
+        final int    size          = delta.size();
+        final Pkg[]  pkgs          = new Pkg[size];
+        final long[] versionKeys   = new long[size];
+        final long[] contentHashes = new long[size];
+        for (int i = 0; i < size; i++) {
+            final int source = delta.getSource(i);
+            if (source >= 0) {
+                pkgs[i]          = current.getPkg(source);
+                versionKeys[i]   = current.getVersionKey(source);
+                contentHashes[i] = current.getContentHash(source);
+            } else {
+                pkgs[i]          = delta.getPkg(source);
+                versionKeys[i]   = VersionKey.of(pkgs[i].getJavaVersion().getVersionNumber());
+                contentHashes[i] = delta.getContentHash(source);
+            }
+        }
+        return new HeapPkgCatalog(pkgs, versionKeys, contentHashes);
+    }
+
+
+    @Override public int size() { return pkgs.length; }
+
+    @Override public String getId(final int index) { return pkgs[index].getId(); }
+
+    @Override public String getEphemeralId(final int index) { return pkgs[index].getEphemeralId(); }
+
+    @Override public Distribution getDistribution(final int index) { return pkgs[index].getDistribution(); }
+
+    @Override public Architecture getArchitecture(final int index) { return pkgs[index].getArchitecture(); }
+
+    @Override public ArchiveType getArchiveType(final int index) { return pkgs[index].getArchiveType(); }
+
+    @Override public OperatingSystem getOperatingSystem(final int index) { return pkgs[index].getOperatingSystem(); }
+
+    @Override public LibCType getLibCType(final int index) { return pkgs[index].getLibCType(); }
+
+    @Override public PackageType getPackageType(final int index) { return pkgs[index].getPackageType(); }
+
+    @Override public ReleaseStatus getReleaseStatus(final int index) { return pkgs[index].getReleaseStatus(); }
+
+    @Override public TermOfSupport getTermOfSupport(final int index) { return pkgs[index].getTermOfSupport(); }
+
+    @Override public boolean isJavaFXBundled(final int index) { return Boolean.TRUE.equals(pkgs[index].isJavaFXBundled()); }
+
+    @Override public boolean isDirectlyDownloadable(final int index) { return Boolean.TRUE.equals(pkgs[index].isDirectlyDownloadable()); }
+
+    @Override public boolean isLatestBuildAvailable(final int index) { return Boolean.TRUE.equals(pkgs[index].isLatestBuildAvailable()); }
+
+    @Override public long getVersionKey(final int index) { return versionKeys[index]; }
+
+    @Override public long getContentHash(final int index) { return contentHashes[index]; }
+
+    @Override public Pkg getPkg(final int index) { return pkgs[index]; }
+}
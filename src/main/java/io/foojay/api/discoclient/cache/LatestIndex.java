@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+
+/**
+ * Materialized "latest" view of a catalog. Records are grouped by their platform attributes (distribution, architecture,
+ * archive type, operating system, lib c type, package type, release status, term of support and flags), within a group
+ * the records are sorted by version key descending. The latest version of a group, overall or within a feature version,
+ * is then found by a binary search instead of a scan over the catalog.
+ * Groups are addressed by their representative, the first record index of the group, so the attribute filters that
+ * work on record indices can be applied to the groups directly.
+ */
+public class LatestIndex {
+    private static final int        BITS = 7;
+    private        final PkgCatalog catalog;
+    private        final int[]      representatives;
+    private        final int[]      groupStart;
+    private        final int[]      indices;
+
+
+    public LatestIndex(final PkgCatalog catalog) {
+        this.catalog = catalog;
+
+        final int                size     = catalog.size();
+        final int[]              groupOf  = new int[size];
+        final Map<Long, Integer> groupIds = new HashMap<>();
+        int[] counts = new int[16];
+        for (int i = 0; i < size; i++) {
+            final int group = groupIds.computeIfAbsent(groupKey(catalog, i), key -> groupIds.size());
+            if (group == counts.length) { counts = Arrays.copyOf(counts, counts.length * 2); }
+            counts[group]++;
+            groupOf[i] = group;
+        }
+
+        final int groups = groupIds.size();
+        this.representatives = new int[groups];
+        this.groupStart      = new int[groups + 1];
+        for (int group = 0; group < groups; group++) { groupStart[group + 1] = groupStart[group] + counts[group]; }
+
+        // Group ids are assigned in ascending record order, the first record of a group is its representative
+        final int[] fill = Arrays.copyOf(groupStart, groups);
+        this.indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            final int group = groupOf[i];
+            if (fill[group] == groupStart[group]) { representatives[group] = i; }
+            indices[fill[group]++] = i;
+        }
+
+        final Comparator<Integer> byVersionKeyDescending = Comparator.comparingLong((Integer i) -> catalog.getVersionKey(i)).reversed();
+        for (int group = 0; group < groups; group++) {
+            final Integer[] slice = new Integer[groupStart[group + 1] - groupStart[group]];
+            for (int i = 0; i < slice.length; i++) { slice[i] = indices[groupStart[group] + i]; }
+            Arrays.sort(slice, byVersionKeyDescending);
+            for (int i = 0; i < slice.length; i++) { indices[groupStart[group] + i] = slice[i]; }
+        }
+    }
+
+
+    public int getGroupCount() { return representatives.length; }
+
+    /**
+     * @return the record index that represents each group, in ascending order
+     */
+    public IntStream representatives() { return IntStream.of(representatives); }
+
+    public int getGroupSize(final int representative) {
+        final int group = groupOf(representative);
+        return groupStart[group + 1] - groupStart[group];
+    }
+
+    /**
+     * @return the highest version key of the group
+     */
+    public long getMaxVersionKey(final int representative) { return catalog.getVersionKey(indices[groupStart[groupOf(representative)]]); }
+
+    /**
+     * @return the highest version key of the group within [minKey, maxKey] or VersionKey.NONE if the group has no record in that range
+     */
+    public long getMaxVersionKey(final int representative, final long minKey, final long maxKey) {
+        final int group    = groupOf(representative);
+        final int position = firstAtMost(group, maxKey);
+        if (position == groupStart[group + 1]) { return VersionKey.NONE; }
+        final long key = catalog.getVersionKey(indices[position]);
+        return key >= minKey ? key : VersionKey.NONE;
+    }
+
+    /**
+     * @return the record indices of the group with the given version key
+     */
+    public IntStream getIndices(final int representative, final long versionKey) { return getIndices(representative, versionKey, versionKey); }
+
+    /**
+     * @return the record indices of the group with a version key within [minKey, maxKey], ordered by version key descending
+     */
+    public IntStream getIndices(final int representative, final long minKey, final long maxKey) {
+        final int group = groupOf(representative);
+        final int from  = firstAtMost(group, maxKey);
+        int to = from;
+        while (to < groupStart[group + 1] && catalog.getVersionKey(indices[to]) >= minKey) { to++; }
+        return Arrays.stream(indices, from, to);
+    }
+
+    private int groupOf(final int representative) {
+        final int group = Arrays.binarySearch(representatives, representative);
+        if (group < 0) { throw new IllegalArgumentException("Record " + representative + " does not represent a group"); }
+        return group;
+    }
+
+    // Returns the position of the first record of the group with a version key <= the given key
+    private int firstAtMost(final int group, final long versionKey) {
+        int low  = groupStart[group];
+        int high = groupStart[group + 1];
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (catalog.getVersionKey(indices[mid]) > versionKey) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long groupKey(final PkgCatalog catalog, final int index) {
+        final int flags = (catalog.isJavaFXBundled(index)        ? 1 : 0) |
+                          (catalog.isDirectlyDownloadable(index) ? 2 : 0) |
+                          (catalog.isLatestBuildAvailable(index) ? 4 : 0);
+        long key = catalog.getDistribution(index).ordinal();
+        key = (key << BITS) | catalog.getArchitecture(index).ordinal();
+        key = (key << BITS) | catalog.getArchiveType(index).ordinal();
+        key = (key << BITS) | catalog.getOperatingSystem(index).ordinal();
+        key = (key << BITS) | catalog.getLibCType(index).ordinal();
+        key = (key << BITS) | catalog.getPackageType(index).ordinal();
+        key = (key << BITS) | catalog.getReleaseStatus(index).ordinal();
+        key = (key << BITS) | catalog.getTermOfSupport(index).ordinal();
+        return (key << 3) | flags;
+    }
+}
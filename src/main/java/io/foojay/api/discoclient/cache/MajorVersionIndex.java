@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.MajorVersion;
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+import io.foojay.api.discoclient.pkg.TermOfSupport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+
+/**
+ * Major versions of a cache generation indexed by term of support and maintained flag, with and without early access builds.
+ * The view without early access builds is derived from the list including them, so one request per refresh is sufficient.
+ */
+public class MajorVersionIndex {
+    private final View withEa;
+    private final View withoutEa;
+
+
+    public MajorVersionIndex(final List<MajorVersion> majorVersionsInclEa) {
+        this.withEa    = new View(majorVersionsInclEa);
+        this.withoutEa = new View(majorVersionsInclEa.stream()
+                                                     .map(majorVersion -> new MajorVersion(majorVersion.getAsInt(), majorVersion.getTermOfSupport(), majorVersion.isMaintained(),
+                                                                                           majorVersion.getVersions().stream().filter(semVer -> ReleaseStatus.EA != semVer.getReleaseStatus()).collect(Collectors.toList())))
+                                                     .filter(majorVersion -> !majorVersion.getVersions().isEmpty())
+                                                     .collect(Collectors.toList()));
+    }
+
+
+    public boolean isEmpty() { return withEa.all.isEmpty(); }
+
+    /**
+     * @return all major versions ordered like the remote api returns them, latest first
+     */
+    public List<MajorVersion> getAll(final boolean includingEa) { return view(includingEa).all; }
+
+    public List<MajorVersion> getMaintained(final boolean includingEa) { return view(includingEa).maintained; }
+
+    public List<MajorVersion> getByTermOfSupport(final TermOfSupport termOfSupport, final boolean includingEa) {
+        return view(includingEa).perTermOfSupport.getOrDefault(termOfSupport, List.of());
+    }
+
+    public Optional<MajorVersion> get(final int featureVersion, final boolean includingEa) {
+        return view(includingEa).all.stream().filter(majorVersion -> majorVersion.getAsInt() == featureVersion).findFirst();
+    }
+
+    /**
+     * Returns the latest major version with the given term of support that has a release, without early access builds
+     * a major version needs more than one version to count as released (same rule as the remote based variant).
+     */
+    public Optional<MajorVersion> getLatest(final TermOfSupport termOfSupport, final boolean includingEa) {
+        return getByTermOfSupport(termOfSupport, includingEa).stream().filter(majorVersion -> isReleased(majorVersion, includingEa)).findFirst();
+    }
+
+    /**
+     * @return the latest major version that is not an LTS release
+     */
+    public Optional<MajorVersion> getLatestNonLts(final boolean includingEa) {
+        return view(includingEa).all.stream()
+                                    .filter(majorVersion -> TermOfSupport.LTS != majorVersion.getTermOfSupport())
+                                    .filter(majorVersion -> isReleased(majorVersion, includingEa))
+                                    .findFirst();
+    }
+
+    private View view(final boolean includingEa) { return includingEa ? withEa : withoutEa; }
+
+    private static boolean isReleased(final MajorVersion majorVersion, final boolean includingEa) {
+        return includingEa ? majorVersion.getVersions().size() > 0 : majorVersion.getVersions().size() > 1;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class View {
+        private final List<MajorVersion>                     all;
+        private final List<MajorVersion>                     maintained;
+        private final Map<TermOfSupport, List<MajorVersion>> perTermOfSupport;
+
+
+        View(final List<MajorVersion> majorVersions) {
+            this.all              = Collections.unmodifiableList(new ArrayList<>(majorVersions));
+            this.maintained       = all.stream().filter(MajorVersion::isMaintained).collect(Collectors.toUnmodifiableList());
+            this.perTermOfSupport = new EnumMap<>(TermOfSupport.class);
+            all.forEach(majorVersion -> perTermOfSupport.computeIfAbsent(majorVersion.getTermOfSupport(), termOfSupport -> new ArrayList<>()).add(majorVersion));
+        }
+    }
+}
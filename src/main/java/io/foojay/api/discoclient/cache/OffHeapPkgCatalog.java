@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Architecture;
+import io.foojay.api.discoclient.pkg.ArchiveType;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.LibCType;
+import io.foojay.api.discoclient.pkg.MajorVersion;
+import io.foojay.api.discoclient.pkg.OperatingSystem;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+import io.foojay.api.discoclient.pkg.SemVer;
+import io.foojay.api.discoclient.pkg.TermOfSupport;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import io.foojay.api.discoclient.util.Constants;
+import io.foojay.api.discoclient.util.OutputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+
+/**
+ * Package catalog encoded into a direct or memory mapped ByteBuffer.
+ * Layout: header | fixed width records sorted by id | string offset table | string section
+ */
+public class OffHeapPkgCatalog implements PkgCatalog {
+    private static final Logger            LOGGER            = LoggerFactory.getLogger(OffHeapPkgCatalog.class);
+    public  static final int               MAGIC             = 0x44435047; // DCPG
+    public  static final int               FORMAT_VERSION    = 3;
+    public  static final int               HEADER_SIZE       = 24;
+    public  static final int               RECORD_SIZE       = 32;
+    private static final int               VERSION_KEY       = 0;
+    private static final int               DISTRIBUTION      = 8;
+    private static final int               ARCHITECTURE      = 9;
+    private static final int               ARCHIVE_TYPE      = 10;
+    private static final int               OPERATING_SYSTEM  = 11;
+    private static final int               LIB_C_TYPE        = 12;
+    private static final int               PACKAGE_TYPE      = 13;
+    private static final int               RELEASE_STATUS    = 14;
+    private static final int               TERM_OF_SUPPORT   = 15;
+    private static final int               FLAGS             = 16;
+    private static final int               MAJOR_VERSION     = 18;
+    private static final int               CONTENT_HASH      = 24;
+    private static final int               FLAG_JAVAFX       = 1;
+    private static final int               FLAG_DIRECT       = 1 << 1;
+    private static final int               FLAG_LATEST_BUILD = 1 << 2;
+    private static final Distribution[]    DISTRIBUTIONS     = Distribution.values();
+    private static final Architecture[]    ARCHITECTURES     = Architecture.values();
+    private static final ArchiveType[]     ARCHIVE_TYPES     = ArchiveType.values();
+    private static final OperatingSystem[] OPERATING_SYSTEMS = OperatingSystem.values();
+    private static final LibCType[]        LIB_C_TYPES       = LibCType.values();
+    private static final PackageType[]     PACKAGE_TYPES     = PackageType.values();
+    private static final ReleaseStatus[]   RELEASE_STATI     = ReleaseStatus.values();
+    private static final TermOfSupport[]   TERMS_OF_SUPPORT  = TermOfSupport.values();
+    // Records store enum ordinals, a change in one of the enums invalidates encoded catalogs
+    public  static final int               SCHEMA_HASH       = schemaHash(DISTRIBUTIONS, ARCHITECTURES, ARCHIVE_TYPES, OPERATING_SYSTEMS, LIB_C_TYPES, PACKAGE_TYPES, RELEASE_STATI, TERMS_OF_SUPPORT);
+    private        final ByteBuffer        buffer;
+    private        final int               size;
+    private        final int               offsetTableStart;
+    private        final int               stringsStart;
+    private        final Path              mappedFile;
+
+
+    private OffHeapPkgCatalog(final ByteBuffer buffer, final Path mappedFile) {
+        if (buffer.getInt(0) != MAGIC)          { throw new IllegalArgumentException("Buffer does not contain an encoded package catalog"); }
+        if (buffer.getInt(4) != FORMAT_VERSION) { throw new IllegalArgumentException("Unsupported package catalog format version " + buffer.getInt(4)); }
+        if (buffer.getInt(16) != SCHEMA_HASH)   { throw new IllegalArgumentException("Package catalog was encoded with different enum constants"); }
+        this.buffer           = buffer;
+        this.size             = buffer.getInt(8);
+        this.offsetTableStart = HEADER_SIZE + size * RECORD_SIZE;
+        this.stringsStart     = offsetTableStart + size * Integer.BYTES;
+        this.mappedFile       = mappedFile;
+    }
+
+
+    public static OffHeapPkgCatalog allocateDirect(final Collection<Pkg> pkgs) {
+        return new OffHeapPkgCatalog(encode(pkgs, ByteBuffer::allocateDirect), null);
+    }
+
+    public static OffHeapPkgCatalog mapToTempFile(final Collection<Pkg> pkgs) { return mapToTempFile(allocator -> encode(pkgs, allocator)); }
+
+    /**
+     * Creates a new catalog by applying the given delta to the current catalog, records and strings of
+     * unchanged packages are copied as raw bytes, only added and changed packages are encoded.
+     */
+    public static OffHeapPkgCatalog merge(final OffHeapPkgCatalog current, final CatalogDelta delta, final CatalogStorage storage) {
+        switch (storage) {
+            case MAPPED: return mapToTempFile(allocator -> encode(current, delta, allocator));
+            case DIRECT: return new OffHeapPkgCatalog(encode(current, delta, ByteBuffer::allocateDirect), null);
+            case HEAP  :
+            default    : return new OffHeapPkgCatalog(encode(current, delta, ByteBuffer::allocate), null);
+        }
+    }
+
+    private static OffHeapPkgCatalog mapToTempFile(final Function<IntFunction<ByteBuffer>, ByteBuffer> encoder) {
+        Path file = null;
+        try {
+            file = Files.createTempFile(Constants.NAME + "-catalog-", ".bin");
+            file.toFile().deleteOnExit();
+            final Path mappedFile = file;
+            try (FileChannel channel = FileChannel.open(mappedFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final IntFunction<ByteBuffer> allocator = length -> {
+                    try {
+                        return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                };
+                return new OffHeapPkgCatalog(encoder.apply(allocator), mappedFile);
+            }
+        } catch (IOException | IllegalStateException e) {
+            LOGGER.error("Error mapping package catalog to file, falling back to direct buffer: {}", e.getMessage());
+            if (null != file) { file.toFile().delete(); }
+            return new OffHeapPkgCatalog(encoder.apply(ByteBuffer::allocateDirect), null);
+        }
+    }
+
+    public static OffHeapPkgCatalog wrap(final ByteBuffer buffer) { return new OffHeapPkgCatalog(buffer, null); }
+
+    public static ByteBuffer encode(final Collection<Pkg> pkgs, final IntFunction<ByteBuffer> allocator) {
+        final Pkg[] sorted = pkgs.toArray(new Pkg[0]);
+        Arrays.sort(sorted, Comparator.comparing(Pkg::getId));
+
+        final byte[][] strings       = new byte[sorted.length][];
+        int            stringsLength = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            strings[i]     = encodeStrings(sorted[i]);
+            stringsLength += strings[i].length;
+        }
+
+        final ByteBuffer buffer       = allocate(sorted.length, stringsLength, allocator);
+        final int        stringsStart = HEADER_SIZE + sorted.length * (RECORD_SIZE + Integer.BYTES);
+        int stringOffset = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            putRecord(buffer, i, sorted[i], CatalogDelta.contentHash(sorted[i]));
+            buffer.putInt(HEADER_SIZE + sorted.length * RECORD_SIZE + i * Integer.BYTES, stringOffset);
+            copy(ByteBuffer.wrap(strings[i]), 0, buffer, stringsStart + stringOffset, strings[i].length);
+            stringOffset += strings[i].length;
+        }
+        return buffer;
+    }
+
+    public static ByteBuffer encode(final OffHeapPkgCatalog current, final CatalogDelta delta, final IntFunction<ByteBuffer> allocator) {
+        final int      size          = delta.size();
+        final byte[][] strings       = new byte[delta.getPkgs().size()][];
+        int            stringsLength = 0;
+        for (int i = 0; i < size; i++) {
+            final int source = delta.getSource(i);
+            if (source >= 0) {
+                stringsLength += current.getStringsLength(source);
+            } else {
+                strings[-source - 1] = encodeStrings(delta.getPkg(source));
+                stringsLength       += strings[-source - 1].length;
+            }
+        }
+
+        final ByteBuffer buffer       = allocate(size, stringsLength, allocator);
+        final int        stringsStart = HEADER_SIZE + size * (RECORD_SIZE + Integer.BYTES);
+        int stringOffset = 0;
+        for (int i = 0; i < size; i++) {
+            final int source = delta.getSource(i);
+            final int length;
+            if (source >= 0) {
+                length = current.getStringsLength(source);
+                copy(current.buffer, current.record(source), buffer, HEADER_SIZE + i * RECORD_SIZE, RECORD_SIZE);
+                copy(current.buffer, current.stringsStart + current.getStringsOffset(source), buffer, stringsStart + stringOffset, length);
+            } else {
+                length = strings[-source - 1].length;
+                putRecord(buffer, i, delta.getPkg(source), delta.getContentHash(source));
+                copy(ByteBuffer.wrap(strings[-source - 1]), 0, buffer, stringsStart + stringOffset, length);
+            }
+            buffer.putInt(HEADER_SIZE + size * RECORD_SIZE + i * Integer.BYTES, stringOffset);
+            stringOffset += length;
+        }
+        return buffer;
+    }
+
+
+    @Override public int size() { return size; }
+
+    @Override public String getId(final int index) { return getString(index, 0); }
+
+    @Override public String getEphemeralId(final int index) { return getString(index, 1); }
+
+    public String getFileName(final int index) { return getString(index, 2); }
+
+    @Override public Distribution getDistribution(final int index) { return DISTRIBUTIONS[Byte.toUnsignedInt(buffer.get(record(index) + DISTRIBUTION))]; }
+
+    @Override public Architecture getArchitecture(final int index) { return ARCHITECTURES[Byte.toUnsignedInt(buffer.get(record(index) + ARCHITECTURE))]; }
+
+    @Override public ArchiveType getArchiveType(final int index) { return ARCHIVE_TYPES[Byte.toUnsignedInt(buffer.get(record(index) + ARCHIVE_TYPE))]; }
+
+    @Override public OperatingSystem getOperatingSystem(final int index) { return OPERATING_SYSTEMS[Byte.toUnsignedInt(buffer.get(record(index) + OPERATING_SYSTEM))]; }
+
+    @Override public LibCType getLibCType(final int index) { return LIB_C_TYPES[Byte.toUnsignedInt(buffer.get(record(index) + LIB_C_TYPE))]; }
+
+    @Override public PackageType getPackageType(final int index) { return PACKAGE_TYPES[Byte.toUnsignedInt(buffer.get(record(index) + PACKAGE_TYPE))]; }
+
+    @Override public ReleaseStatus getReleaseStatus(final int index) { return RELEASE_STATI[Byte.toUnsignedInt(buffer.get(record(index) + RELEASE_STATUS))]; }
+
+    @Override public TermOfSupport getTermOfSupport(final int index) { return TERMS_OF_SUPPORT[Byte.toUnsignedInt(buffer.get(record(index) + TERM_OF_SUPPORT))]; }
+
+    @Override public boolean isJavaFXBundled(final int index) { return (buffer.get(record(index) + FLAGS) & FLAG_JAVAFX) != 0; }
+
+    @Override public boolean isDirectlyDownloadable(final int index) { return (buffer.get(record(index) + FLAGS) & FLAG_DIRECT) != 0; }
+
+    @Override public boolean isLatestBuildAvailable(final int index) { return (buffer.get(record(index) + FLAGS) & FLAG_LATEST_BUILD) != 0; }
+
+    @Override public long getVersionKey(final int index) { return buffer.getLong(record(index) + VERSION_KEY); }
+
+    @Override public long getContentHash(final int index) { return buffer.getLong(record(index) + CONTENT_HASH); }
+
+    @Override public Pkg getPkg(final int index) {
+        final int          majorVersion = Short.toUnsignedInt(buffer.getShort(record(index) + MAJOR_VERSION));
+        final SemVer       javaVersion  = SemVer.fromText(getString(index, 3)).getSemVer1();
+        final String       distroText   = getString(index, 4);
+        return new Pkg(getId(index),
+                       getDistribution(index),
+                       new MajorVersion(majorVersion),
+                       null == javaVersion ? new SemVer(new VersionNumber()) : javaVersion,
+                       distroText.isEmpty() ? new VersionNumber() : VersionNumber.fromText(distroText),
+                       isLatestBuildAvailable(index),
+                       getArchitecture(index),
+                       getOperatingSystem(index),
+                       getLibCType(index),
+                       getPackageType(index),
+                       getReleaseStatus(index),
+                       getArchiveType(index),
+                       getTermOfSupport(index),
+                       isJavaFXBundled(index),
+                       isDirectlyDownloadable(index),
+                       getFileName(index),
+                       getEphemeralId(index));
+    }
+
+    /**
+     * Returns a read only view on the encoded catalog e.g. to persist it
+     */
+    public ByteBuffer getBuffer() { return buffer.asReadOnlyBuffer(); }
+
+    @Override public void close() {
+        // Mapped region stays valid until it is garbage collected, only the backing file is removed
+        if (null != mappedFile) { mappedFile.toFile().delete(); }
+    }
+
+    private int record(final int index) {
+        if (index < 0 || index >= size) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for catalog of size " + size); }
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private int getStringsOffset(final int index) { return buffer.getInt(offsetTableStart + index * Integer.BYTES); }
+
+    private int getStringsLength(final int index) {
+        return (index == size - 1 ? buffer.getInt(12) : getStringsOffset(index + 1)) - getStringsOffset(index);
+    }
+
+    private String getString(final int index, final int field) {
+        int position = stringsStart + getStringsOffset(index);
+        for (int i = 0; i < field; i++) { position += Short.BYTES + Short.toUnsignedInt(buffer.getShort(position)); }
+        final int        length = Short.toUnsignedInt(buffer.getShort(position));
+        final byte[]     bytes  = new byte[length];
+        final ByteBuffer source = buffer.duplicate();
+        source.position(position + Short.BYTES);
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer allocate(final int size, final int stringsLength, final IntFunction<ByteBuffer> allocator) {
+        checkOrdinals(DISTRIBUTIONS, ARCHITECTURES, ARCHIVE_TYPES, OPERATING_SYSTEMS, LIB_C_TYPES, PACKAGE_TYPES, RELEASE_STATI, TERMS_OF_SUPPORT);
+        final ByteBuffer buffer = allocator.apply(HEADER_SIZE + size * (RECORD_SIZE + Integer.BYTES) + stringsLength);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putInt(8, size);
+        buffer.putInt(12, stringsLength);
+        buffer.putInt(16, SCHEMA_HASH);
+        return buffer;
+    }
+
+    // Ordinals are stored in one unsigned byte
+    private static void checkOrdinals(final Enum<?>[]... enums) {
+        for (Enum<?>[] constants : enums) {
+            if (constants.length > 256) { throw new IllegalStateException(constants[0].getDeclaringClass().getSimpleName() + " has more than 256 constants"); }
+        }
+    }
+
+    private static void putRecord(final ByteBuffer buffer, final int index, final Pkg pkg, final long contentHash) {
+        final int record = HEADER_SIZE + index * RECORD_SIZE;
+        final int flags  = (Boolean.TRUE.equals(pkg.isJavaFXBundled())        ? FLAG_JAVAFX       : 0) |
+                           (Boolean.TRUE.equals(pkg.isDirectlyDownloadable())  ? FLAG_DIRECT       : 0) |
+                           (Boolean.TRUE.equals(pkg.isLatestBuildAvailable())  ? FLAG_LATEST_BUILD : 0);
+        buffer.putLong(record + VERSION_KEY, VersionKey.of(pkg.getJavaVersion().getVersionNumber()));
+        buffer.put(record + DISTRIBUTION, (byte) pkg.getDistribution().ordinal());
+        buffer.put(record + ARCHITECTURE, (byte) pkg.getArchitecture().ordinal());
+        buffer.put(record + ARCHIVE_TYPE, (byte) pkg.getArchiveType().ordinal());
+        buffer.put(record + OPERATING_SYSTEM, (byte) pkg.getOperatingSystem().ordinal());
+        buffer.put(record + LIB_C_TYPE, (byte) pkg.getLibCType().ordinal());
+        buffer.put(record + PACKAGE_TYPE, (byte) pkg.getPackageType().ordinal());
+        buffer.put(record + RELEASE_STATUS, (byte) pkg.getReleaseStatus().ordinal());
+        buffer.put(record + TERM_OF_SUPPORT, (byte) pkg.getTermOfSupport().ordinal());
+        buffer.put(record + FLAGS, (byte) flags);
+        buffer.putShort(record + MAJOR_VERSION, (short) pkg.getMajorVersion().getAsInt());
+        buffer.putLong(record + CONTENT_HASH, contentHash);
+    }
+
+    private static void copy(final ByteBuffer source, final int from, final ByteBuffer target, final int to, final int length) {
+        final ByteBuffer src = source.duplicate();
+        src.limit(from + length).position(from);
+        final ByteBuffer dst = target.duplicate();
+        dst.position(to);
+        dst.put(src);
+    }
+
+    private static byte[] encodeStrings(final Pkg pkg) {
+        final String[] fields = { pkg.getId(),
+                                  pkg.getEphemeralId(),
+                                  pkg.getFileName(),
+                                  pkg.getJavaVersion().toString(false),
+                                  pkg.getDistributionVersion().getFeature().isPresent() ? pkg.getDistributionVersion().toString(OutputFormat.FULL, false, true) : "" };
+        final byte[][] encoded = new byte[fields.length][];
+        int length = 0;
+        for (int i = 0; i < fields.length; i++) {
+            final byte[] bytes = (null == fields[i] ? "" : fields[i]).getBytes(StandardCharsets.UTF_8);
+            encoded[i] = bytes.length > 0xFFFF ? Arrays.copyOf(bytes, 0xFFFF) : bytes;
+            length    += Short.BYTES + encoded[i].length;
+        }
+        final ByteBuffer result = ByteBuffer.allocate(length);
+        for (byte[] bytes : encoded) {
+            result.putShort((short) bytes.length);
+            result.put(bytes);
+        }
+        return result.array();
+    }
+
+    private static int schemaHash(final Enum<?>[]... enums) {
+        int hash = 1;
+        for (Enum<?>[] values : enums) {
+            for (Enum<?> value : values) { hash = 31 * hash + value.name().hashCode(); }
+        }
+        return hash;
+    }
+}
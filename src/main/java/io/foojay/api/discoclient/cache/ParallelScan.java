@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+
+/**
+ * Filters and sorts record indices of a catalog. Candidate sets above the threshold are split into
+ * partitions that are processed in parallel on a dedicated ForkJoinPool, smaller sets are processed on
+ * the calling thread. Results always keep the order of the candidates, sorting is stable.
+ */
+public class ParallelScan implements AutoCloseable {
+    public  static final ParallelScan  SEQUENTIAL = new ParallelScan(1, 0);
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+    private        final ForkJoinPool  pool;
+    private        final int           threshold;
+
+
+    // ******************** Constructors **************************************
+    /**
+     * @param parallelism number of worker threads, 1 runs all scans on the calling thread
+     * @param threshold   min number of candidates of a parallel scan, 0 runs all scans on the calling thread
+     */
+    public ParallelScan(final int parallelism, final int threshold) {
+        if (parallelism < 1) { throw new IllegalArgumentException("parallelism must be at least 1"); }
+        if (threshold < 0)   { throw new IllegalArgumentException("threshold must not be negative"); }
+        this.threshold = threshold;
+        if (parallelism > 1 && threshold > 0) {
+            final int poolNumber = POOL_COUNT.incrementAndGet();
+            this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("discoclient-scan-" + poolNumber + "-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        } else {
+            this.pool = null;
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    public static ParallelScan of(final CacheConfig cacheConfig) { return new ParallelScan(cacheConfig.getScanParallelism(), cacheConfig.getParallelScanThreshold()); }
+
+    public boolean isParallel(final int candidates) { return null != pool && candidates >= threshold; }
+
+    /**
+     * @return indices within [from, to) that pass the predicate in ascending order
+     */
+    public int[] filter(final int from, final int to, final IntPredicate predicate) {
+        return run(to - from, () -> IntStream.range(from, to).parallel().filter(predicate).toArray(), () -> IntStream.range(from, to).filter(predicate).toArray());
+    }
+
+    /**
+     * @return candidates that pass the predicate in the order of the candidates
+     */
+    public int[] filter(final int[] candidates, final IntPredicate predicate) {
+        return run(candidates.length, () -> IntStream.of(candidates).parallel().filter(predicate).toArray(), () -> IntStream.of(candidates).filter(predicate).toArray());
+    }
+
+    /**
+     * Sorts the indices with a stable sort, partitions are sorted in parallel and merged.
+     */
+    public int[] sort(final int[] indices, final Comparator<Integer> comparator) {
+        return run(indices.length, () -> IntStream.of(indices).boxed().parallel().sorted(comparator).mapToInt(Integer::intValue).toArray(),
+                   () -> IntStream.of(indices).boxed().sorted(comparator).mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Shuts the pool down, later scans run on the calling thread.
+     */
+    @Override public void close() {
+        if (null != pool) { pool.shutdown(); }
+    }
+
+    // Parallel streams started by a task of the pool fork their partitions into the same pool
+    private int[] run(final int candidates, final Supplier<int[]> parallel, final Supplier<int[]> sequential) {
+        if (!isParallel(candidates)) { return sequential.get(); }
+        try {
+            return pool.submit(parallel::get).join();
+        } catch (RejectedExecutionException e) {
+            return sequential.get();
+        }
+    }
+}
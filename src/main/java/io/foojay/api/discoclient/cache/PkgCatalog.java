@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Architecture;
+import io.foojay.api.discoclient.pkg.ArchiveType;
+import io.foojay.api.discoclient.pkg.Bitness;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.LibCType;
+import io.foojay.api.discoclient.pkg.OperatingSystem;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+import io.foojay.api.discoclient.pkg.TermOfSupport;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+
+/**
+ * Read only, index addressable store of packages sorted by package id.
+ * Query and index code reads the attributes of a record in place by its index,
+ * Pkg objects are only created via getPkg(index) when a result leaves the cache.
+ */
+public interface PkgCatalog extends AutoCloseable {
+    int size();
+
+    String getId(int index);
+
+    String getEphemeralId(int index);
+
+    Distribution getDistribution(int index);
+
+    Architecture getArchitecture(int index);
+
+    default Bitness getBitness(int index) {
+        final Architecture architecture = getArchitecture(index);
+        return Architecture.NOT_FOUND == architecture ? Bitness.NOT_FOUND : architecture.getBitness();
+    }
+
+    ArchiveType getArchiveType(int index);
+
+    OperatingSystem getOperatingSystem(int index);
+
+    LibCType getLibCType(int index);
+
+    PackageType getPackageType(int index);
+
+    ReleaseStatus getReleaseStatus(int index);
+
+    TermOfSupport getTermOfSupport(int index);
+
+    boolean isJavaFXBundled(int index);
+
+    boolean isDirectlyDownloadable(int index);
+
+    boolean isLatestBuildAvailable(int index);
+
+    long getVersionKey(int index);
+
+    /**
+     * @return hash over all stored attributes of the record, used to detect changed packages on refresh
+     */
+    long getContentHash(int index);
+
+    default int getFeatureVersion(int index) { return VersionKey.feature(getVersionKey(index)); }
+
+    Pkg getPkg(int index);
+
+    default int indexOf(final String id) {
+        if (null == id) { return -1; }
+        int low  = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            final int mid     = (low + high) >>> 1;
+            final int compare = getId(mid).compareTo(id);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    default IntStream indices() { return IntStream.range(0, size()); }
+
+    default List<Pkg> getPkgs(final int[] indices) {
+        final List<Pkg> pkgs = new ArrayList<>(indices.length);
+        for (int index : indices) { pkgs.add(getPkg(index)); }
+        return pkgs;
+    }
+
+    default Queue<Pkg> getAllPkgs() {
+        final Queue<Pkg> pkgs = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < size(); i++) { pkgs.add(getPkg(i)); }
+        return pkgs;
+    }
+
+    @Override default void close() {}
+
+
+    static PkgCatalog of(final Collection<Pkg> pkgs, final CatalogStorage storage) {
+        switch (storage) {
+            case DIRECT: return OffHeapPkgCatalog.allocateDirect(pkgs);
+            case MAPPED: return OffHeapPkgCatalog.mapToTempFile(pkgs);
+            case HEAP  :
+            default    : return new HeapPkgCatalog(pkgs);
+        }
+    }
+
+    static PkgCatalog of(final PkgCatalog current, final CatalogDelta delta, final CatalogStorage storage) {
+        if (delta.isEmpty())                          { return current; }
+        if (current instanceof OffHeapPkgCatalog)     { return OffHeapPkgCatalog.merge((OffHeapPkgCatalog) current, delta, storage); }
+        if (CatalogStorage.HEAP == storage)           { return HeapPkgCatalog.merge(current, delta); }
+        return of(delta.getAllPkgs(current), storage);
+    }
+}
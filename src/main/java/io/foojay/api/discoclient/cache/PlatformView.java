@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Platform;
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+
+/**
+ * Precomputed view of the packages of a catalog that are installable on one platform. The records are sorted by
+ * version key descending and their ranking attributes are copied into flat arrays, so a version range is found by a
+ * binary search and ranking its candidates does not touch the catalog.
+ */
+public final class PlatformView {
+    private static final byte       EARLY_ACCESS          = 1;
+    private static final byte       DIRECTLY_DOWNLOADABLE = 2;
+    private        final Platform   platform;
+    private        final int[]      indices;
+    private        final long[]     versionKeys;
+    private        final byte[]     distributions;
+    private        final byte[]     packageTypes;
+    private        final byte[]     archiveTypes;
+    private        final byte[]     flags;
+
+
+    public PlatformView(final PkgCatalog catalog, final Platform platform) {
+        this.platform = platform;
+        // Ties of the version key keep the record order, which is the order of the ids
+        this.indices  = IntStream.range(0, catalog.size())
+                                 .filter(i -> platform.isInstallable(catalog.getOperatingSystem(i), catalog.getArchitecture(i), catalog.getLibCType(i), catalog.getArchiveType(i)))
+                                 .boxed()
+                                 .sorted(Comparator.comparingLong((Integer i) -> catalog.getVersionKey(i)).reversed().thenComparingInt(i -> i))
+                                 .mapToInt(Integer::intValue)
+                                 .toArray();
+        final int size = indices.length;
+        this.versionKeys   = new long[size];
+        this.distributions = new byte[size];
+        this.packageTypes  = new byte[size];
+        this.archiveTypes  = new byte[size];
+        this.flags         = new byte[size];
+        for (int position = 0; position < size; position++) {
+            final int index = indices[position];
+            versionKeys[position]   = catalog.getVersionKey(index);
+            distributions[position] = (byte) catalog.getDistribution(index).ordinal();
+            packageTypes[position]  = (byte) catalog.getPackageType(index).ordinal();
+            archiveTypes[position]  = (byte) catalog.getArchiveType(index).ordinal();
+            flags[position]         = (byte) ((ReleaseStatus.EA == catalog.getReleaseStatus(index) ? EARLY_ACCESS : 0) | (catalog.isDirectlyDownloadable(index) ? DIRECTLY_DOWNLOADABLE : 0));
+        }
+    }
+
+
+    public Platform getPlatform() { return platform; }
+
+    public int size() { return indices.length; }
+
+    /**
+     * @return catalog record index of the package at the given position
+     */
+    public int getIndex(final int position) { return indices[position]; }
+
+    public long getVersionKey(final int position) { return versionKeys[position]; }
+
+    public int getDistributionOrdinal(final int position) { return distributions[position]; }
+
+    public int getPackageTypeOrdinal(final int position) { return packageTypes[position]; }
+
+    public int getArchiveTypeOrdinal(final int position) { return archiveTypes[position]; }
+
+    public boolean isEarlyAccess(final int position) { return 0 != (flags[position] & EARLY_ACCESS); }
+
+    public boolean isDirectlyDownloadable(final int position) { return 0 != (flags[position] & DIRECTLY_DOWNLOADABLE); }
+
+    /**
+     * @return first position with a version key smaller than or equal to the given key
+     */
+    public int fromPosition(final long toKey) {
+        int low  = 0;
+        int high = versionKeys.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (versionKeys[middle] > toKey) { low = middle + 1; } else { high = middle; }
+        }
+        return low;
+    }
+
+    /**
+     * @return first position with a version key smaller than the given key
+     */
+    public int toPosition(final long fromKey) { return Long.MIN_VALUE == fromKey ? versionKeys.length : fromPosition(fromKey - 1); }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+
+/**
+ * Bounded LRU cache for query results keyed by cache generation and query, so queries on a generation
+ * that was pinned before a swap are cached as well. When a newer generation is queried the entries of
+ * generations older than the previous one are dropped, the remaining ones leave by LRU order.
+ */
+public class QueryResultCache<K, V> {
+    private final int                      maxEntries;
+    private final Map<GenerationKey<K>, V> entries;
+    private       long                     generation;
+    private       long                     hits;
+    private       long                     misses;
+
+
+    public QueryResultCache(final int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.entries    = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(final Map.Entry<GenerationKey<K>, V> eldest) { return size() > QueryResultCache.this.maxEntries; }
+        };
+        this.generation = -1;
+    }
+
+
+    /**
+     * Returns the cached result for the given key or computes and caches it. Cached values are shared between
+     * callers and should therefore be immutable.
+     * The supplier is called outside of the lock, concurrent misses on the same key may compute it twice.
+     */
+    public V get(final CacheGeneration cacheGeneration, final K key, final Supplier<V> supplier) {
+        if (0 == maxEntries) { return supplier.get(); }
+        final GenerationKey<K> generationKey = new GenerationKey<>(cacheGeneration.getNumber(), key);
+        synchronized (this) {
+            if (cacheGeneration.getNumber() > generation) {
+                final long previous = generation;
+                entries.keySet().removeIf(entry -> entry.generation < previous);
+                generation = cacheGeneration.getNumber();
+            }
+            final V value = entries.get(generationKey);
+            if (null != value) {
+                hits++;
+                return value;
+            }
+            misses++;
+        }
+        final V value = supplier.get();
+        if (null != value) {
+            synchronized (this) { entries.put(generationKey, value); }
+        }
+        return value;
+    }
+
+    /**
+     * @return the cached result for the given key, null if it is not cached for the given generation
+     */
+    public synchronized V peek(final CacheGeneration cacheGeneration, final K key) { return entries.get(new GenerationKey<>(cacheGeneration.getNumber(), key)); }
+
+    public synchronized void clear() { entries.clear(); }
+
+    public synchronized int size() { return entries.size(); }
+
+    public synchronized long getHits() { return hits; }
+
+    public synchronized long getMisses() { return misses; }
+
+
+    // ******************** Inner Classes *************************************
+    private static final class GenerationKey<K> {
+        private final long generation;
+        private final K    key;
+        private final int  hashCode;
+
+
+        GenerationKey(final long generation, final K key) {
+            this.generation = generation;
+            this.key        = key;
+            this.hashCode   = 31 * Long.hashCode(generation) + Objects.hashCode(key);
+        }
+
+
+        @Override public boolean equals(final Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof GenerationKey)) { return false; }
+            final GenerationKey<?> that = (GenerationKey<?>) o;
+            return generation == that.generation && Objects.equals(key, that.key);
+        }
+
+        @Override public int hashCode() { return hashCode; }
+    }
+}
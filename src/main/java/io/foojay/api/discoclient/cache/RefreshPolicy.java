@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Defines when the cache is refreshed and how long a generation may be served.
+ * ttl       : regular refresh interval, each refresh is shifted by a random offset within +/- jitter
+ * softStale : age after which a query triggers a background revalidation while the current generation is still served
+ * hardExpiry: age after which the current generation is no longer served and queries go to the remote api
+ */
+public class RefreshPolicy {
+    public  static final RefreshPolicy DEFAULT = new Builder().build();
+    private        final Duration      ttl;
+    private        final Duration      jitter;
+    private        final Duration      softStale;
+    private        final Duration      hardExpiry;
+
+
+    private RefreshPolicy(final Builder builder) {
+        this.ttl        = builder.ttl;
+        this.jitter     = builder.jitter;
+        this.softStale  = builder.softStale;
+        this.hardExpiry = builder.hardExpiry;
+    }
+
+
+    public Duration getTtl() { return ttl; }
+
+    public Duration getJitter() { return jitter; }
+
+    public Duration getSoftStale() { return softStale; }
+
+    public Duration getHardExpiry() { return hardExpiry; }
+
+    public boolean isSoftStale(final Duration age) { return age.compareTo(softStale) > 0; }
+
+    public boolean isHardExpired(final Duration age) { return age.compareTo(hardExpiry) > 0; }
+
+    /**
+     * @return ttl shifted by a random offset within +/- jitter, never less than one second
+     */
+    public Duration nextDelay() {
+        final long jitterMillis = jitter.toMillis();
+        final long offset       = 0 == jitterMillis ? 0 : ThreadLocalRandom.current().nextLong(-jitterMillis, jitterMillis + 1);
+        return Duration.ofMillis(Math.max(1000, ttl.toMillis() + offset));
+    }
+
+    public static Builder builder() { return new Builder(); }
+
+    @Override public boolean equals(final Object o) {
+        if (this == o) { return true; }
+        if (o == null || getClass() != o.getClass()) { return false; }
+        RefreshPolicy that = (RefreshPolicy) o;
+        return ttl.equals(that.ttl) && jitter.equals(that.jitter) && softStale.equals(that.softStale) && hardExpiry.equals(that.hardExpiry);
+    }
+
+    @Override public int hashCode() {
+        return Objects.hash(ttl, jitter, softStale, hardExpiry);
+    }
+
+    @Override public String toString() {
+        return new StringBuilder().append("{")
+                                  .append("\"ttl\":\"").append(ttl).append("\",")
+                                  .append("\"jitter\":\"").append(jitter).append("\",")
+                                  .append("\"soft_stale\":\"").append(softStale).append("\",")
+                                  .append("\"hard_expiry\":\"").append(hardExpiry).append("\"")
+                                  .append("}")
+                                  .toString();
+    }
+
+
+    // ******************** Builder *******************************************
+    public static class Builder {
+        private Duration ttl        = Duration.ofHours(1);
+        private Duration jitter     = Duration.ofMinutes(5);
+        private Duration softStale  = Duration.ofMinutes(90);
+        private Duration hardExpiry = Duration.ofDays(7);
+
+
+        private Builder() {}
+
+
+        public Builder ttl(final Duration ttl) {
+            if (null == ttl || ttl.isNegative() || ttl.isZero()) { throw new IllegalArgumentException("ttl must be positive"); }
+            this.ttl = ttl;
+            return this;
+        }
+
+        public Builder jitter(final Duration jitter) {
+            if (null == jitter || jitter.isNegative()) { throw new IllegalArgumentException("jitter must not be negative"); }
+            this.jitter = jitter;
+            return this;
+        }
+
+        public Builder softStale(final Duration softStale) {
+            if (null == softStale || softStale.isNegative()) { throw new IllegalArgumentException("softStale must not be negative"); }
+            this.softStale = softStale;
+            return this;
+        }
+
+        public Builder hardExpiry(final Duration hardExpiry) {
+            if (null == hardExpiry || hardExpiry.isNegative()) { throw new IllegalArgumentException("hardExpiry must not be negative"); }
+            this.hardExpiry = hardExpiry;
+            return this;
+        }
+
+        public RefreshPolicy build() {
+            if (hardExpiry.compareTo(softStale) < 0) { throw new IllegalArgumentException("hardExpiry must not be shorter than softStale"); }
+            return new RefreshPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.Scope;
+import io.foojay.api.discoclient.util.Constants;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+
+/**
+ * Scope membership of the distributions as bitmasks, the requested scopes of a query are compiled once
+ * into a mask over the distributions in scope so scope filtering is a single AND per package.
+ * The masks are computed from Constants.SCOPE_LOOKUP when the class is loaded.
+ */
+public final class ScopeMask {
+    private static final Distribution[] DISTRIBUTIONS          = Distribution.values();
+    private static final int[]          SCOPES_OF_DISTRIBUTION = new int[DISTRIBUTIONS.length];
+    static {
+        if (DISTRIBUTIONS.length > Long.SIZE) { throw new IllegalStateException("Distributions do not fit into a long bitmask"); }
+        Constants.SCOPE_LOOKUP.forEach((distribution, scopes) -> SCOPES_OF_DISTRIBUTION[distribution.ordinal()] = of(scopes));
+    }
+
+
+    private ScopeMask() {}
+
+
+    /**
+     * @return bitmask over the ordinals of the given scopes
+     */
+    public static int of(final Collection<Scope> scopes) {
+        int mask = 0;
+        for (Scope scope : scopes) { mask |= 1 << scope.ordinal(); }
+        return mask;
+    }
+
+    /**
+     * @return bitmask over the ordinals of the scopes the given distribution belongs to
+     */
+    public static int of(final Distribution distribution) { return null == distribution ? 0 : SCOPES_OF_DISTRIBUTION[distribution.ordinal()]; }
+
+    /**
+     * @return bitmask over the ordinals of all distributions that belong to at least one of the given scopes
+     */
+    public static long distributionsInScope(final Collection<Scope> scopes) {
+        final int scopeMask = of(scopes);
+        long      mask      = 0;
+        for (int i = 0; i < DISTRIBUTIONS.length; i++) {
+            if (0 != (SCOPES_OF_DISTRIBUTION[i] & scopeMask)) { mask |= 1L << i; }
+        }
+        return mask;
+    }
+
+    public static boolean contains(final long distributionMask, final Distribution distribution) {
+        return null != distribution && 0 != (distributionMask & (1L << distribution.ordinal()));
+    }
+
+    /**
+     * @return the given distributions that are contained in the mask, in their original order
+     */
+    public static List<Distribution> filter(final Collection<Distribution> distributions, final long distributionMask) {
+        return distributions.stream().filter(distribution -> contains(distributionMask, distribution)).distinct().collect(Collectors.toList());
+    }
+}
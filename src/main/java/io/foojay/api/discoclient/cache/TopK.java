@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+
+
+/**
+ * Bounded selection of the k values with the highest version keys. The values are kept in a binary heap of at
+ * most k entries whose root is the weakest kept entry, so a selection over n candidates costs O(n log k) instead
+ * of the O(n log n) of sorting all of them. Equal version keys are ordered by a rank, the lower rank wins, which
+ * lets callers break ties in the order of their result.
+ */
+public final class TopK {
+    private final int    k;
+    private       long[] keys;
+    private       long[] ranks;
+    private       int[]  values;
+    private       int    size;
+
+
+    // ******************** Constructors **************************************
+    public TopK(final int k) {
+        if (k < 1) { throw new IllegalArgumentException("k must be at least 1"); }
+        this.k      = k;
+        this.keys   = new long[Math.min(k, 16)];
+        this.ranks  = new long[keys.length];
+        this.values = new int[keys.length];
+        this.size   = 0;
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Selects the k values with the highest keys of each group.
+     * @param candidates values to select from
+     * @param key version key of a value
+     * @param rank order of values with equal keys, the lower rank is selected first
+     * @param group group of a value, null selects over all candidates
+     * @return the selected values, grouped in the order the groups were first seen and best first within a group,
+     *         the candidates in their given order if there are not more than k
+     */
+    public static int[] select(final int[] candidates, final IntToLongFunction key, final IntToLongFunction rank, final IntToLongFunction group, final int k) {
+        if (candidates.length <= k) { return candidates.clone(); }
+        if (null == group) {
+            final TopK topK = new TopK(k);
+            for (int value : candidates) { topK.offer(key.applyAsLong(value), rank.applyAsLong(value), value); }
+            return topK.toArray();
+        }
+        final Map<Long, TopK> groups = new LinkedHashMap<>();
+        for (int value : candidates) { groups.computeIfAbsent(group.applyAsLong(value), g -> new TopK(k)).offer(key.applyAsLong(value), rank.applyAsLong(value), value); }
+        final int[] selected = new int[groups.values().stream().mapToInt(TopK::size).sum()];
+        int         offset   = 0;
+        for (TopK topK : groups.values()) {
+            final int[] best = topK.toArray();
+            System.arraycopy(best, 0, selected, offset, best.length);
+            offset += best.length;
+        }
+        return selected;
+    }
+
+    /**
+     * @return true if the value was kept, false if the heap is full and all kept values are better
+     */
+    public boolean offer(final long key, final long rank, final int value) {
+        if (size < k) {
+            if (size == keys.length) { grow(); }
+            set(size, key, rank, value);
+            siftUp(size++);
+            return true;
+        }
+        if (!isBetter(key, rank, keys[0], ranks[0])) { return false; }
+        set(0, key, rank, value);
+        siftDown(0);
+        return true;
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return 0 == size; }
+
+    /**
+     * @return the highest kept key, VersionKey.NONE if nothing was kept
+     */
+    public long getMaxKey() {
+        long max = VersionKey.NONE;
+        for (int i = 0; i < size; i++) { max = Math.max(max, keys[i]); }
+        return max;
+    }
+
+    /**
+     * @return the kept values, best first
+     */
+    public int[] toArray() {
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) { order[i] = i; }
+        Arrays.sort(order, (a, b) -> isBetter(keys[a], ranks[a], keys[b], ranks[b]) ? -1 : isBetter(keys[b], ranks[b], keys[a], ranks[a]) ? 1 : 0);
+        final int[] result = new int[size];
+        for (int i = 0; i < size; i++) { result[i] = values[order[i]]; }
+        return result;
+    }
+
+    private static boolean isBetter(final long key, final long rank, final long otherKey, final long otherRank) {
+        return key > otherKey || (key == otherKey && rank < otherRank);
+    }
+
+    private void set(final int slot, final long key, final long rank, final int value) {
+        keys[slot]   = key;
+        ranks[slot]  = rank;
+        values[slot] = value;
+    }
+
+    private void swap(final int a, final int b) {
+        final long key   = keys[a];
+        final long rank  = ranks[a];
+        final int  value = values[a];
+        set(a, keys[b], ranks[b], values[b]);
+        set(b, key, rank, value);
+    }
+
+    // The root holds the weakest entry, every parent is weaker than its children
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            final int parent = (slot - 1) >>> 1;
+            if (!isBetter(keys[parent], ranks[parent], keys[slot], ranks[slot])) { return; }
+            swap(parent, slot);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        while (true) {
+            final int left    = 2 * slot + 1;
+            final int right   = left + 1;
+            int       weakest = slot;
+            if (left < size && isBetter(keys[weakest], ranks[weakest], keys[left], ranks[left]))    { weakest = left; }
+            if (right < size && isBetter(keys[weakest], ranks[weakest], keys[right], ranks[right])) { weakest = right; }
+            if (weakest == slot) { return; }
+            swap(slot, weakest);
+            slot = weakest;
+        }
+    }
+
+    private void grow() {
+        final int capacity = (int) Math.min(k, 2L * keys.length);
+        keys   = Arrays.copyOf(keys, capacity);
+        ranks  = Arrays.copyOf(ranks, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Bounded concurrent cache whose entries expire after a fixed time to live.
+ * Misses can be cached as negative entries with their own, usually shorter, time to live.
+ */
+public class TtlCache<K, V> {
+    private final Map<K, Entry<V>> entries;
+    private final int              maxEntries;
+    private final long             ttlNanos;
+    private final long             negativeTtlNanos;
+
+
+    public TtlCache(final int maxEntries, final Duration ttl, final Duration negativeTtl) {
+        this.entries          = new ConcurrentHashMap<>();
+        this.maxEntries       = Math.max(0, maxEntries);
+        this.ttlNanos         = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+    }
+
+
+    /**
+     * @return the cached value, a cached miss or Lookup.MISS if there is no valid entry for the key
+     */
+    @SuppressWarnings("unchecked")
+    public Lookup<V> get(final K key) {
+        final Entry<V> entry = entries.get(key);
+        if (null == entry) { return (Lookup<V>) Lookup.MISS; }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(key, entry);
+            return (Lookup<V>) Lookup.MISS;
+        }
+        return null == entry.value ? (Lookup<V>) Lookup.NEGATIVE : new Lookup<>(entry.value);
+    }
+
+    /**
+     * Caches the given value, a null value is cached as negative entry
+     */
+    public void put(final K key, final V value) {
+        final long ttl = null == value ? negativeTtlNanos : ttlNanos;
+        if (0 == maxEntries || ttl <= 0) { return; }
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttl));
+        if (entries.size() > maxEntries) { evict(); }
+    }
+
+    public void remove(final K key) { entries.remove(key); }
+
+    public void clear() { entries.clear(); }
+
+    public int size() { return entries.size(); }
+
+    // Removes expired entries and if still too large the entries that expire next, down to 90% of the max size
+    private synchronized void evict() {
+        final long now = System.nanoTime();
+        entries.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+        final int excess = entries.size() - (maxEntries - maxEntries / 10);
+        if (excess <= 0) { return; }
+        entries.entrySet().stream()
+               .sorted(Comparator.comparingLong(entry -> entry.getValue().expiresAt))
+               .limit(excess)
+               .map(Map.Entry::getKey)
+               .forEach(entries::remove);
+    }
+
+
+    // ******************** Inner Classes *************************************
+    /**
+     * Result of a lookup, either a hit with its value, a negative hit for a cached miss or a miss
+     */
+    public static final class Lookup<V> {
+        public  static final Lookup<?> MISS     = new Lookup<>(null);
+        public  static final Lookup<?> NEGATIVE = new Lookup<>(null);
+        private        final V         value;
+
+
+        private Lookup(final V value) { this.value = value; }
+
+
+        public boolean isHit() { return null != value; }
+
+        public boolean isNegative() { return NEGATIVE == this; }
+
+        public boolean isMiss() { return MISS == this; }
+
+        /**
+         * @return true for hits and negative hits, both need no lookup at the source
+         */
+        public boolean isCached() { return MISS != this; }
+
+        /**
+         * @return the cached value, null for negative hits and misses
+         */
+        public V getValue() { return value; }
+    }
+
+    private static class Entry<V> {
+        private final V    value;
+        private final long expiresAt;
+
+
+        Entry(final V value, final long expiresAt) {
+            this.value     = value;
+            this.expiresAt = expiresAt;
+        }
+
+
+        boolean isExpired(final long now) { return now - expiresAt >= 0; }
+    }
+}
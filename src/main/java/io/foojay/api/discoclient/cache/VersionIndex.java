@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Distribution;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * Record indices of a catalog sorted by version key, overall and per distribution.
+ * A version range is resolved by two binary searches and returned as a contiguous slice.
+ */
+public class VersionIndex {
+    private final Slice                    all;
+    private final Map<Distribution, Slice> perDistribution;
+
+
+    public VersionIndex(final PkgCatalog catalog) {
+        final Integer[] sorted = new Integer[catalog.size()];
+        for (int i = 0; i < sorted.length; i++) { sorted[i] = i; }
+        Arrays.sort(sorted, Comparator.comparingLong(catalog::getVersionKey));
+
+        final int[]                      counts = new int[Distribution.values().length];
+        final Map<Distribution, Integer> fill   = new EnumMap<>(Distribution.class);
+        for (int i = 0; i < sorted.length; i++) { counts[catalog.getDistribution(i).ordinal()]++; }
+
+        this.all             = new Slice(sorted.length);
+        this.perDistribution = new EnumMap<>(Distribution.class);
+        for (Distribution distribution : Distribution.values()) {
+            if (counts[distribution.ordinal()] > 0) { perDistribution.put(distribution, new Slice(counts[distribution.ordinal()])); }
+        }
+        for (int i = 0; i < sorted.length; i++) {
+            final int  index = sorted[i];
+            final long key   = catalog.getVersionKey(index);
+            all.set(i, index, key);
+            final Distribution distribution = catalog.getDistribution(index);
+            final int          position     = fill.merge(distribution, 1, Integer::sum) - 1;
+            perDistribution.get(distribution).set(position, index, key);
+        }
+    }
+
+
+    /**
+     * @return record indices with a version key within [fromKey, toKey], ordered by version key ascending
+     */
+    public IntStream range(final long fromKey, final long toKey) { return all.range(fromKey, toKey); }
+
+    /**
+     * @return record indices of the given distribution with a version key within [fromKey, toKey], ordered by version key ascending
+     */
+    public IntStream range(final Distribution distribution, final long fromKey, final long toKey) {
+        final Slice slice = perDistribution.get(distribution);
+        return null == slice ? IntStream.empty() : slice.range(fromKey, toKey);
+    }
+
+    /**
+     * Lazily walks the records of the given distribution with a version key within [fromKey, toKey] by version key
+     * descending, records with equal version keys are returned in ascending index order.
+     */
+    public IntStream descending(final Distribution distribution, final long fromKey, final long toKey) {
+        final Slice slice = perDistribution.get(distribution);
+        return null == slice ? IntStream.empty() : slice.descending(fromKey, toKey);
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class Slice {
+        private final int[]  indices;
+        private final long[] keys;
+
+
+        Slice(final int size) {
+            this.indices = new int[size];
+            this.keys    = new long[size];
+        }
+
+
+        void set(final int position, final int index, final long key) {
+            indices[position] = index;
+            keys[position]    = key;
+        }
+
+        IntStream range(final long fromKey, final long toKey) {
+            if (fromKey > toKey) { return IntStream.empty(); }
+            final int from = lowerBound(fromKey);
+            final int to   = toKey == Long.MAX_VALUE ? keys.length : lowerBound(toKey + 1);
+            return Arrays.stream(indices, from, to);
+        }
+
+        IntStream descending(final long fromKey, final long toKey) {
+            if (fromKey > toKey) { return IntStream.empty(); }
+            final int from = lowerBound(fromKey);
+            final int to   = toKey == Long.MAX_VALUE ? keys.length : lowerBound(toKey + 1);
+            final PrimitiveIterator.OfInt iterator = new PrimitiveIterator.OfInt() {
+                private int runEnd   = to; // Exclusive end of the next run of equal keys
+                private int position = to;
+                private int end      = to;
+
+                @Override public boolean hasNext() { return position < end || runEnd > from; }
+
+                @Override public int nextInt() {
+                    if (position == end) {
+                        if (runEnd <= from) { throw new NoSuchElementException(); }
+                        end      = runEnd;
+                        position = Math.max(from, lowerBound(keys[end - 1], end));
+                        runEnd   = position;
+                    }
+                    return indices[position++];
+                }
+            };
+            return StreamSupport.intStream(Spliterators.spliterator(iterator, to - from, Spliterator.ORDERED | Spliterator.SIZED | Spliterator.NONNULL), false);
+        }
+
+        // Returns the position of the first key >= the given key
+        private int lowerBound(final long key) { return lowerBound(key, keys.length); }
+        private int lowerBound(final long key, final int limit) {
+            int low  = 0;
+            int high = limit;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
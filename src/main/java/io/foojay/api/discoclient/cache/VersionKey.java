@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+
+
+/**
+ * Packs a VersionNumber into a single long that sorts like the version itself.
+ * Layout (high to low, sign bit unused): feature 9 bit, interim 8 bit, update 10 bit, patch 8 bit,
+ * fifth 8 bit, sixth 8 bit, pre build 12 bit. Components that exceed their width are clamped.
+ * <p>
+ * The pre build field is 0 for an early access build without pre build number, pre build + 1 for an
+ * early access build with one (capped below GA) and 0xFFF for a GA release. So the early access builds
+ * of a version sort before its GA release and after every smaller version, e.g.
+ * 17.0.2 &lt; 18-ea &lt; 18-ea+3 &lt; 18-ea+20 &lt; 18 &lt; 18.0.1-ea+3 &lt; 18.0.1.
+ * <p>
+ * Whenever VersionNumber.compareTo orders two versions the keys are ordered the same way. compareTo also
+ * treats a GA release as equal to all early access builds of the same version, those are exactly the keys
+ * from {@link #equalMin(long)} up to the GA key.
+ */
+public final class VersionKey {
+    public  static final long NONE           = -1L;
+    private static final int  FEATURE_SHIFT  = 54;
+    private static final int  INTERIM_SHIFT  = 46;
+    private static final int  UPDATE_SHIFT   = 36;
+    private static final int  PATCH_SHIFT    = 28;
+    private static final int  FIFTH_SHIFT    = 20;
+    private static final int  SIXTH_SHIFT    = 12;
+    private static final long FEATURE_MASK   = 0x1FF;
+    private static final long INTERIM_MASK   = 0xFF;
+    private static final long UPDATE_MASK    = 0x3FF;
+    private static final long PATCH_MASK     = 0xFF;
+    private static final long FIFTH_MASK     = 0xFF;
+    private static final long SIXTH_MASK     = 0xFF;
+    private static final long PRE_BUILD_MASK = 0xFFF;
+    private static final long GA_PRE_BUILD   = PRE_BUILD_MASK;
+
+
+    private VersionKey() {}
+
+
+    public static long of(final VersionNumber versionNumber) {
+        if (null == versionNumber || versionNumber.getFeature().isEmpty()) { return NONE; }
+        final boolean ea       = versionNumber.getReleaseStatus().isPresent() && ReleaseStatus.EA == versionNumber.getReleaseStatus().get();
+        final long    preBuild = ea ? (versionNumber.getPreBuild().isPresent() ? Math.min(versionNumber.getPreBuild().getAsInt() + 1, GA_PRE_BUILD - 1) : 0) : GA_PRE_BUILD;
+        return of(versionNumber.getFeature().getAsInt(), versionNumber.getInterim().orElse(0), versionNumber.getUpdate().orElse(0), versionNumber.getPatch().orElse(0),
+                  versionNumber.getFifth().orElse(0), versionNumber.getSixth().orElse(0), preBuild);
+    }
+    public static long of(final int feature, final int interim, final int update, final int patch, final int fifth, final int sixth, final long preBuild) {
+        return (Math.min(feature, FEATURE_MASK)    << FEATURE_SHIFT) |
+               (Math.min(interim, INTERIM_MASK)    << INTERIM_SHIFT) |
+               (Math.min(update, UPDATE_MASK)      << UPDATE_SHIFT)  |
+               (Math.min(patch, PATCH_MASK)        << PATCH_SHIFT)   |
+               (Math.min(fifth, FIFTH_MASK)        << FIFTH_SHIFT)   |
+               (Math.min(sixth, SIXTH_MASK)        << SIXTH_SHIFT)   |
+               Math.min(preBuild, PRE_BUILD_MASK);
+    }
+
+    public static int feature(final long key) { return (int) ((key >>> FEATURE_SHIFT) & FEATURE_MASK); }
+
+    public static int interim(final long key) { return (int) ((key >>> INTERIM_SHIFT) & INTERIM_MASK); }
+
+    public static int update(final long key) { return (int) ((key >>> UPDATE_SHIFT) & UPDATE_MASK); }
+
+    public static int patch(final long key) { return (int) ((key >>> PATCH_SHIFT) & PATCH_MASK); }
+
+    public static int fifth(final long key) { return (int) ((key >>> FIFTH_SHIFT) & FIFTH_MASK); }
+
+    public static int sixth(final long key) { return (int) ((key >>> SIXTH_SHIFT) & SIXTH_MASK); }
+
+    public static int preBuild(final long key) { return (int) (key & PRE_BUILD_MASK); }
+
+    public static boolean isGa(final long key) { return NONE != key && (key & PRE_BUILD_MASK) == GA_PRE_BUILD; }
+
+    /**
+     * @return smallest key that VersionNumber.compareTo considers equal to the given key, the early access build
+     * without pre build number of a GA key and the key itself otherwise
+     */
+    public static long equalMin(final long key) { return isGa(key) ? key & ~PRE_BUILD_MASK : key; }
+
+    // Smallest and largest key of the given feature version
+    public static long featureMin(final int feature) { return Math.min(feature, FEATURE_MASK) << FEATURE_SHIFT; }
+    public static long featureMax(final int feature) { return featureMin(feature) | ((1L << FEATURE_SHIFT) - 1); }
+
+    /**
+     * @param components number of leading version components that are fixed, 1 for the feature version up to 6
+     * @return largest key of the versions that share the leading components with the given key, e.g. of all 17.0.x for 17.0
+     */
+    public static long prefixMax(final long key, final int components) {
+        final int[] shifts = { FEATURE_SHIFT, INTERIM_SHIFT, UPDATE_SHIFT, PATCH_SHIFT, FIFTH_SHIFT, SIXTH_SHIFT };
+        if (components < 1 || components > shifts.length) { throw new IllegalArgumentException("components must be between 1 and " + shifts.length); }
+        return key | ((1L << shifts[components - 1]) - 1);
+    }
+}
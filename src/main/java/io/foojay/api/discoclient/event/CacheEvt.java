@@ -25,17 +25,39 @@ public class CacheEvt extends DCEvt {
     public  static final EvtType<CacheEvt> ANY            = new EvtType<>(DCEvt.ANY, "CACHE");
     public  static final EvtType<CacheEvt> CACHE_READY    = new EvtType<>(CacheEvt.ANY, "CACHE_READY");
     public  static final EvtType<CacheEvt> CACHE_UPDATING = new EvtType<>(CacheEvt.ANY, "CACHE_UPDATING");
+    public  static final EvtType<CacheEvt> CACHE_PROGRESS = new EvtType<>(CacheEvt.ANY, "CACHE_PROGRESS");
+
+    private final int slicesLoaded;
+    private final int slicesTotal;
 
 
     public CacheEvt(final Object source, final EvtType<? extends CacheEvt> evtType) {
-        this(source, evtType, EvtPriority.NORMAL);
+        this(source, evtType, 0, 0, EvtPriority.NORMAL);
     }
     public CacheEvt(final Object source, final EvtType<? extends CacheEvt> evtType, final EvtPriority priority) {
+        this(source, evtType, 0, 0, priority);
+    }
+    public CacheEvt(final Object source, final EvtType<? extends CacheEvt> evtType, final int slicesLoaded, final int slicesTotal) {
+        this(source, evtType, slicesLoaded, slicesTotal, EvtPriority.NORMAL);
+    }
+    public CacheEvt(final Object source, final EvtType<? extends CacheEvt> evtType, final int slicesLoaded, final int slicesTotal, final EvtPriority priority) {
         super(source, evtType, priority);
+        this.slicesLoaded = slicesLoaded;
+        this.slicesTotal  = slicesTotal;
     }
 
 
     public EvtType<? extends CacheEvt> getEvtType() {
         return (EvtType<? extends CacheEvt>) super.getEvtType();
     }
+
+    /**
+     * @return number of catalog slices that are loaded, only set for CACHE_PROGRESS events
+     */
+    public final int getSlicesLoaded() { return slicesLoaded; }
+
+    /**
+     * @return number of catalog slices of the running load, only set for CACHE_PROGRESS events
+     */
+    public final int getSlicesTotal() { return slicesTotal; }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.event;
+
+import io.foojay.api.discoclient.PkgQuery;
+import io.foojay.api.discoclient.pkg.Pkg;
+
+import java.util.List;
+
+
+public class PkgChangeEvt extends DCEvt {
+    public  static final EvtType<PkgChangeEvt> ANY          = new EvtType<>(DCEvt.ANY, "PKG_CHANGE");
+    public  static final EvtType<PkgChangeEvt> PKGS_CHANGED = new EvtType<>(PkgChangeEvt.ANY, "PKGS_CHANGED");
+
+    private final PkgQuery  query;
+    private final List<Pkg> added;
+    private final List<Pkg> removed;
+    private final long      generationNumber;
+
+
+    public PkgChangeEvt(final Object source, final EvtType<? extends PkgChangeEvt> evtType, final PkgQuery query, final List<Pkg> added, final List<Pkg> removed, final long generationNumber) {
+        this(source, evtType, query, added, removed, generationNumber, EvtPriority.NORMAL);
+    }
+    public PkgChangeEvt(final Object source, final EvtType<? extends PkgChangeEvt> evtType, final PkgQuery query, final List<Pkg> added, final List<Pkg> removed, final long generationNumber,
+                        final EvtPriority priority) {
+        super(source, evtType, priority);
+        this.query            = query;
+        this.added            = List.copyOf(added);
+        this.removed          = List.copyOf(removed);
+        this.generationNumber = generationNumber;
+    }
+
+
+    public EvtType<? extends PkgChangeEvt> getEvtType() {
+        return (EvtType<? extends PkgChangeEvt>) super.getEvtType();
+    }
+
+    /**
+     * @return the standing query whose result changed
+     */
+    public final PkgQuery getQuery() { return query; }
+
+    /**
+     * @return packages that match the query in the new cache generation but did not match before
+     */
+    public final List<Pkg> getAdded() { return added; }
+
+    /**
+     * @return packages that matched the query before but do not match in the new cache generation
+     */
+    public final List<Pkg> getRemoved() { return removed; }
+
+    /**
+     * @return number of the cache generation the change was detected in
+     */
+    public final long getGenerationNumber() { return generationNumber; }
+}
@@ -51,6 +51,11 @@ public class MajorVersion {
         this.termOfSupport = termOfSupport;
         this.maintained    = false;
     }
+    public MajorVersion(final int majorVersion, final TermOfSupport termOfSupport, final boolean maintained, final List<SemVer> versions) {
+        this(majorVersion, termOfSupport);
+        this.maintained = maintained;
+        if (null != versions) { this.versions.addAll(versions); }
+    }
     public MajorVersion(final String jsonText) {
         if (null == jsonText || jsonText.isEmpty()) { throw new IllegalArgumentException("json text cannot be null or empty"); }
         final Gson       gson = new Gson();
@@ -96,6 +96,28 @@ public class Pkg {
         this.fileName             = json.has(FIELD_FILENAME)               ? json.get(FIELD_FILENAME).getAsString()                                     : "";
         this.ephemeralId          = json.has(FIELD_EPHEMERAL_ID)           ? json.get(FIELD_EPHEMERAL_ID).getAsString()                                 : "";
     }
+    public Pkg(final String id, final Distribution distribution, final MajorVersion majorVersion, final SemVer javaVersion, final VersionNumber distributionVersion,
+               final Boolean latestBuildAvailable, final Architecture architecture, final OperatingSystem operatingSystem, final LibCType libcType, final PackageType packageType,
+               final ReleaseStatus releaseStatus, final ArchiveType archiveType, final TermOfSupport termOfSupport, final Boolean javafxBundled, final Boolean directlyDownloadable,
+               final String fileName, final String ephemeralId) {
+        this.id                   = null == id                   ? ""                        : id;
+        this.distribution         = null == distribution         ? Distribution.NOT_FOUND    : distribution;
+        this.majorVersion         = null == majorVersion         ? new MajorVersion(1)       : majorVersion;
+        this.javaVersion          = null == javaVersion          ? new SemVer(new VersionNumber()) : javaVersion;
+        this.distributionVersion  = null == distributionVersion  ? new VersionNumber()       : distributionVersion;
+        this.latestBuildAvailable = null == latestBuildAvailable ? Boolean.FALSE             : latestBuildAvailable;
+        this.architecture         = null == architecture         ? Architecture.NOT_FOUND    : architecture;
+        this.operatingSystem      = null == operatingSystem      ? OperatingSystem.NOT_FOUND : operatingSystem;
+        this.libcType             = null == libcType             ? LibCType.NOT_FOUND        : libcType;
+        this.packageType          = null == packageType          ? PackageType.NOT_FOUND     : packageType;
+        this.releaseStatus        = null == releaseStatus        ? ReleaseStatus.NOT_FOUND   : releaseStatus;
+        this.archiveType          = null == archiveType          ? ArchiveType.NOT_FOUND     : archiveType;
+        this.termOfSupport        = null == termOfSupport        ? TermOfSupport.NOT_FOUND   : termOfSupport;
+        this.javafxBundled        = null == javafxBundled        ? Boolean.FALSE             : javafxBundled;
+        this.directlyDownloadable = null == directlyDownloadable ? Boolean.FALSE             : directlyDownloadable;
+        this.fileName             = null == fileName             ? ""                        : fileName;
+        this.ephemeralId          = null == ephemeralId          ? ""                        : ephemeralId;
+    }
 
 
     public String getId() { return id; }
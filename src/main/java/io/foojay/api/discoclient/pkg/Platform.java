@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.pkg;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+
+/**
+ * Operating system, architecture and c library of a host. Packages are installable on a platform if they
+ * were built for the same operating system family, c library and architecture, aliases like amd64 for x64
+ * and arm64 for aarch64 are treated as the same architecture.
+ */
+public final class Platform {
+    private static final List<OperatingSystem> LINUX_FAMILY = List.of(OperatingSystem.LINUX, OperatingSystem.LINUX_MUSL, OperatingSystem.ALPINE_LINUX);
+    private static final Platform              CURRENT      = detect();
+    private        final OperatingSystem       operatingSystem;
+    private        final Architecture          architecture;
+    private        final LibCType              libCType;
+
+
+    // ******************** Constructors **************************************
+    private Platform(final OperatingSystem operatingSystem, final Architecture architecture, final LibCType libCType) {
+        this.operatingSystem = operatingSystem;
+        this.architecture    = architecture;
+        this.libCType        = libCType;
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * @return the platform of the running jvm, detected once when the class is loaded
+     */
+    public static Platform current() { return CURRENT; }
+
+    public static Platform of(final OperatingSystem operatingSystem, final Architecture architecture) { return of(operatingSystem, architecture, operatingSystem.getLibCType()); }
+    public static Platform of(final OperatingSystem operatingSystem, final Architecture architecture, final LibCType libCType) {
+        return new Platform(Objects.requireNonNull(operatingSystem), normalize(Objects.requireNonNull(architecture)), Objects.requireNonNull(libCType));
+    }
+
+    public OperatingSystem getOperatingSystem() { return operatingSystem; }
+
+    public Architecture getArchitecture() { return architecture; }
+
+    public LibCType getLibCType() { return libCType; }
+
+    /**
+     * @return operating systems whose packages run on this platform if their c library matches, all linux variants for linux
+     */
+    public List<OperatingSystem> getOperatingSystemFamily() { return LINUX_FAMILY.contains(operatingSystem) ? LINUX_FAMILY : List.of(operatingSystem); }
+
+    /**
+     * @return true if a package with the given attributes can be installed on this platform
+     */
+    public boolean isInstallable(final OperatingSystem operatingSystem, final Architecture architecture, final LibCType libCType, final ArchiveType archiveType) {
+        if (ArchiveType.SRC_TAR == archiveType) { return false; }
+        if (this.architecture != normalize(architecture)) { return false; }
+        if (!getOperatingSystemFamily().contains(operatingSystem)) { return false; }
+        final LibCType pkgLibCType = LibCType.NONE == libCType || LibCType.NOT_FOUND == libCType ? operatingSystem.getLibCType() : libCType;
+        return this.libCType == pkgLibCType;
+    }
+
+    @Override public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Platform platform = (Platform) o;
+        return operatingSystem == platform.operatingSystem && architecture == platform.architecture && libCType == platform.libCType;
+    }
+
+    @Override public int hashCode() { return Objects.hash(operatingSystem, architecture, libCType); }
+
+    @Override public String toString() { return operatingSystem.getApiString() + "-" + architecture.getApiString() + "-" + libCType.getApiString(); }
+
+    private static Architecture normalize(final Architecture architecture) {
+        switch (architecture) {
+            case AMD64: return Architecture.X64;
+            case ARM64: return Architecture.AARCH64;
+            default   : return architecture;
+        }
+    }
+
+    /**
+     * @return operating system of the running jvm taken from the os.name property, LINUX for every linux distribution
+     */
+    public static OperatingSystem detectOperatingSystem() {
+        final String os = System.getProperty("os.name", "").toLowerCase(Locale.ENGLISH);
+        if (os.contains("win")) {
+            return OperatingSystem.WINDOWS;
+        } else if (os.contains("mac")) {
+            return OperatingSystem.MACOS;
+        } else if (os.contains("nix") || os.contains("nux")) {
+            return OperatingSystem.LINUX;
+        } else if (os.contains("sunos")) {
+            return OperatingSystem.SOLARIS;
+        } else if (os.contains("aix")) {
+            return OperatingSystem.AIX;
+        } else {
+            return OperatingSystem.NONE;
+        }
+    }
+
+    private static Platform detect() {
+        final OperatingSystem operatingSystem = detectOperatingSystem();
+        return of(OperatingSystem.LINUX == operatingSystem && isMusl() ? OperatingSystem.LINUX_MUSL : operatingSystem, Architecture.fromText(System.getProperty("os.arch", "")));
+    }
+
+    // Musl based distributions like Alpine ship the musl dynamic loader instead of the glibc one
+    private static boolean isMusl() {
+        final Path lib = Path.of("/lib");
+        if (!Files.isDirectory(lib)) { return false; }
+        try (Stream<Path> files = Files.list(lib)) {
+            return files.anyMatch(file -> file.getFileName().toString().startsWith("ld-musl-"));
+        } catch (IOException | SecurityException e) {
+            return false;
+        }
+    }
+}
@@ -87,32 +87,43 @@ public class Helper {
 
     // ******************** REST calls ****************************************
     public static final String get(final String uri) {
+        final HttpResponse<String> response = getResponse(uri);
+        if (null == response) { return ""; }
+        if (response.statusCode() == 200) {
+            return response.body();
+        } else {
+            // Problem with url request
+            LOGGER.debug("Error executing get request {}", uri);
+            LOGGER.debug("Response ({}) {} ", response.statusCode(), response.body());
+            return "";
+        }
+    }
+
+    /**
+     * @return the response of the get request with its status code, null if the request failed
+     */
+    public static final HttpResponse<String> getResponse(final String uri) {
         HttpClient  client  = HttpClient.newBuilder().followRedirects(Redirect.NEVER).version(java.net.http.HttpClient.Version.HTTP_2).build();
         HttpRequest request = HttpRequest.newBuilder()
                                          .uri(URI.create(uri))
                                          .build();
         try {
-            HttpResponse<String> response  = client.send(request, BodyHandlers.ofString());
-            if (response.statusCode() == 200) {
-                return response.body();
-            } else {
-                // Problem with url request
-                LOGGER.debug("Error executing get request {}", uri);
-                LOGGER.debug("Response ({}) {} ", response.statusCode(), response.body());
-                return "";
-            }
+            return client.send(request, BodyHandlers.ofString());
         } catch (InterruptedException | IOException e) {
             LOGGER.error("Error executing get request {} : {}", uri, e.getMessage());
-            return "";
+            return null;
         }
     }
 
     public static final CompletableFuture<String> getAsync(final String uri) {
+        return getResponseAsync(uri).thenApply(HttpResponse::body);
+    }
+
+    public static final CompletableFuture<HttpResponse<String>> getResponseAsync(final String uri) {
         HttpClient  client  = HttpClient.newBuilder().followRedirects(Redirect.NEVER).version(java.net.http.HttpClient.Version.HTTP_2).build();
         HttpRequest request = HttpRequest.newBuilder()
                                          .uri(URI.create(uri))
                                          .build();
-        return client.sendAsync(request, BodyHandlers.ofString())
-                     .thenApply(HttpResponse::body);
+        return client.sendAsync(request, BodyHandlers.ofString());
     }
 }
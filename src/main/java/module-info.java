@@ -12,6 +12,7 @@ module io.foojay.api.discoclient {
     requires com.google.gson;
 
     exports io.foojay.api.discoclient;
+    exports io.foojay.api.discoclient.cache;
     exports io.foojay.api.discoclient.event;
     exports io.foojay.api.discoclient.pkg;
     exports io.foojay.api.discoclient.util;
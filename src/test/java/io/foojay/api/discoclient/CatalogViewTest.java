@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.CacheConfig;
+import io.foojay.api.discoclient.cache.CacheEngine;
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class CatalogViewTest {
+
+    @Test public void answersFromPinnedGenerationUntilClosed() throws Exception {
+        final List<Pkg>                    oldPkgs = TestPkgs.create(500, 5, QueryPlanTest.JAVA_VERSIONS);
+        final List<Pkg>                    newPkgs = TestPkgs.create(700, 6, QueryPlanTest.JAVA_VERSIONS);
+        final StandingQueryTest.TestLoader loader  = new StandingQueryTest.TestLoader(oldPkgs);
+        final CacheEngine                  engine  = CacheEngine.acquire("test://view", CacheConfig.builder().progressiveLoading(false).build(), loader);
+        try {
+            final CacheGeneration oldGeneration = engine.refreshNow().get(5, TimeUnit.SECONDS);
+            final PkgQuery        query         = PkgQuery.builder().version(new VersionNumber(17)).build();
+            final List<String>    oldResult     = ids(query.compile().execute(oldGeneration));
+            // Views only read the generation, queries that go through the client are covered elsewhere
+            final CatalogView     view          = new CatalogView(null, engine.pinGeneration());
+            assertSame(oldGeneration, view.getGeneration());
+
+            loader.pkgs = newPkgs;
+            final CacheGeneration newGeneration = engine.refreshNow().get(5, TimeUnit.SECONDS);
+            assertSame(newGeneration, engine.getGeneration());
+            assertNotEquals(oldResult, ids(query.compile().execute(newGeneration)));
+
+            // The refresh released the engine's reference, the view still reads the old catalog
+            assertSame(oldGeneration, view.getGeneration());
+            assertEquals(oldPkgs.size(), view.getAllPackages().size());
+            assertEquals(oldResult, view.streamPkgs(query).map(Pkg::getId).collect(Collectors.toList()));
+            assertTrue(oldGeneration.retain());
+            oldGeneration.release();
+
+            // Closing the view drops the last reference
+            view.close();
+            assertFalse(oldGeneration.retain());
+            try {
+                view.getAllPackages();
+                fail("Closed view must not be readable");
+            } catch (IllegalStateException e) {
+                assertEquals("CatalogView is closed", e.getMessage());
+            }
+        } finally {
+            engine.release();
+        }
+    }
+
+
+    private static List<String> ids(final List<Pkg> pkgs) { return pkgs.stream().map(Pkg::getId).collect(Collectors.toList()); }
+}
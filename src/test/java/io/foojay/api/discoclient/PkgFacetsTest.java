@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.PkgFacets.Facet;
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.cache.ParallelScan;
+import io.foojay.api.discoclient.pkg.ApiFeature;
+import io.foojay.api.discoclient.pkg.Bitness;
+import io.foojay.api.discoclient.pkg.Latest;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.util.Comparison;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Compares the counts of each facet with the result of the query without the filter of the facet
+ */
+public class PkgFacetsTest {
+
+    @Test public void countsMatchQueryWithoutFacetFilter() {
+        final CacheGeneration generation = QueryPlanTest.createGeneration();
+        final Random          random     = new Random(29);
+        for (int run = 0; run < 300; run++) {
+            final PkgQuery  query  = QueryPlanTest.randomQuery(random).toBuilder().latest(Latest.NONE).build();
+            final PkgFacets facets = query.compile().facets(generation, ParallelScan.SEQUENTIAL);
+            assertEquals(query.toString(), query.compile().execute(generation).size(), facets.getTotal());
+            for (Facet facet : Facet.values()) {
+                final List<Pkg> result = without(query, facet).compile().execute(generation);
+                if (Facet.FEATURE_VERSION == facet) {
+                    assertEquals(facet + " " + query, count(result, pkg -> pkg.getJavaVersion().getVersionNumber().getFeature().getAsInt()), facets.getFeatureVersionCounts());
+                } else {
+                    assertEquals(facet + " " + query, count(result, pkg -> value(facet, pkg)), facets.getCounts(facet));
+                }
+            }
+        }
+    }
+
+
+    // The query with the filter of the facet removed, scopes still restrict the distributions
+    private static PkgQuery without(final PkgQuery query, final Facet facet) {
+        final PkgQuery.Builder builder = query.toBuilder();
+        switch (facet) {
+            case DISTRIBUTION    : return builder.distributions(List.of()).build();
+            case OPERATING_SYSTEM: return builder.operatingSystems(List.of()).build();
+            case ARCHITECTURE    : return builder.architectures(List.of()).build();
+            case ARCHIVE_TYPE    : return builder.archiveTypes(List.of()).build();
+            case LIBC_TYPE       : return builder.libCTypes(List.of()).build();
+            case PACKAGE_TYPE    : return builder.packageType(PackageType.NONE).build();
+            case RELEASE_STATUS  : return builder.releaseStatus(List.of()).build();
+            case TERM_OF_SUPPORT : return builder.termsOfSupport(List.of()).build();
+            case BITNESS         : return builder.bitness(Bitness.NONE).build();
+            case FEATURE_VERSION :
+            default              : return builder.version(null, Comparison.EQUAL).build();
+        }
+    }
+
+    private static ApiFeature value(final Facet facet, final Pkg pkg) {
+        switch (facet) {
+            case DISTRIBUTION    : return pkg.getDistribution();
+            case OPERATING_SYSTEM: return pkg.getOperatingSystem();
+            case ARCHITECTURE    : return pkg.getArchitecture();
+            case ARCHIVE_TYPE    : return pkg.getArchiveType();
+            case LIBC_TYPE       : return pkg.getLibCType();
+            case PACKAGE_TYPE    : return pkg.getPackageType();
+            case RELEASE_STATUS  : return pkg.getReleaseStatus();
+            case TERM_OF_SUPPORT : return pkg.getTermOfSupport();
+            case BITNESS         :
+            default              : return pkg.getBitness();
+        }
+    }
+
+    private static <K> Map<K, Integer> count(final List<Pkg> pkgs, final Function<Pkg, K> key) {
+        return pkgs.stream().collect(Collectors.groupingBy(key, Collectors.summingInt(pkg -> 1)));
+    }
+}
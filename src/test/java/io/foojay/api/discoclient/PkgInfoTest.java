@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.TtlCache;
+import io.foojay.api.discoclient.pkg.SemVer;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import io.foojay.api.discoclient.util.PkgInfo;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class PkgInfoTest {
+    private static final SemVer JAVA_VERSION = new SemVer(new VersionNumber(17, 0, 1));
+    private static final String BODY         = "{ \"filename\": \"jdk.tar.gz\", \"direct_download_uri\": \"https://example.com/jdk.tar.gz\", \"download_site_uri\": \"https://example.com\" }";
+
+
+    @Test public void cachesFoundPkgInfo() {
+        final TtlCache<String, PkgInfo> cache   = newCache();
+        final PkgInfo                   pkgInfo = DiscoClient.toPkgInfo(cache, "e1", 200, BODY, JAVA_VERSION);
+        assertEquals("jdk.tar.gz", pkgInfo.getFileName());
+        assertEquals("https://example.com/jdk.tar.gz", pkgInfo.getDirectDownloadUri());
+        assertTrue(cache.get("e1").isHit());
+    }
+
+    @Test public void cachesNotFoundAsMiss() {
+        final TtlCache<String, PkgInfo> cache = newCache();
+        assertNull(DiscoClient.toPkgInfo(cache, "e1", 404, "", JAVA_VERSION));
+        assertTrue(cache.get("e1").isNegative());
+    }
+
+    @Test public void doesNotCacheFailedOrEmptyResponses() {
+        final TtlCache<String, PkgInfo> cache = newCache();
+        assertNull(DiscoClient.toPkgInfo(cache, "e1", 500, "", JAVA_VERSION));
+        assertNull(DiscoClient.toPkgInfo(cache, "e2", 503, BODY, JAVA_VERSION));
+        assertNull(DiscoClient.toPkgInfo(cache, "e3", 200, "", JAVA_VERSION));
+        assertNull(DiscoClient.toPkgInfo(cache, "e4", 200, "[]", JAVA_VERSION));
+        assertEquals(0, cache.size());
+        assertTrue(cache.get("e1").isMiss());
+    }
+
+
+    private static TtlCache<String, PkgInfo> newCache() { return new TtlCache<>(16, Duration.ofMinutes(10), Duration.ofSeconds(30)); }
+}
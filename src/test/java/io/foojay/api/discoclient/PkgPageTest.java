@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.cache.HeapPkgCatalog;
+import io.foojay.api.discoclient.pkg.Latest;
+import io.foojay.api.discoclient.pkg.OperatingSystem;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import io.foojay.api.discoclient.util.Comparison;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class PkgPageTest {
+    private static final int LIMIT = 37;
+
+
+    @Test public void pagesCoverResult() {
+        final CacheGeneration generation = QueryPlanTest.createGeneration();
+        for (PkgQuery query : queries()) {
+            final QueryPlan plan   = query.compile();
+            final List<Pkg> pkgs   = new ArrayList<>();
+            PkgPage         page   = plan.page(generation, 0, LIMIT);
+            pkgs.addAll(page.getPkgs());
+            while (page.hasMore()) {
+                page = plan.page(generation, page.getNextCursor(), LIMIT);
+                assertFalse(page.isGenerationChanged());
+                pkgs.addAll(page.getPkgs());
+            }
+            assertEquals(query.toString(), ids(plan.execute(generation)), ids(pkgs));
+            assertEquals(plan.page(generation, LIMIT, LIMIT).getPkgs(), plan.page(generation, plan.page(generation, 0, LIMIT).getNextCursor(), LIMIT).getPkgs());
+        }
+    }
+
+    @Test public void cursorSurvivesGenerationSwap() {
+        final CacheGeneration before = QueryPlanTest.createGeneration();
+        // Same seed, so the first packages are those of the first generation, every 7th of them is removed
+        final List<Pkg> pkgs = TestPkgs.create(QueryPlanTest.PKGS.size() + 300, 11, QueryPlanTest.JAVA_VERSIONS);
+        final List<Pkg> kept = IntStream.range(0, pkgs.size()).filter(i -> i >= QueryPlanTest.PKGS.size() || i % 7 != 0).mapToObj(pkgs::get).collect(Collectors.toList());
+        final CacheGeneration after = new CacheGeneration(new HeapPkgCatalog(kept), QueryPlanTest.MAJOR_VERSIONS, Map.of(), Instant.now());
+
+        for (PkgQuery query : queries()) {
+            final QueryPlan    plan      = query.compile();
+            final List<String> beforeIds = ids(plan.execute(before));
+            final List<String> afterIds  = ids(plan.execute(after));
+            final List<String> paged     = new ArrayList<>();
+            PkgPage page = plan.page(before, 0, LIMIT);
+            paged.addAll(ids(page.getPkgs()));
+            page = plan.page(before, page.getNextCursor(), LIMIT);
+            paged.addAll(ids(page.getPkgs()));
+            assertEquals(query.toString(), beforeIds.subList(0, paged.size()), paged);
+
+            final int swappedAt = paged.size();
+            page = plan.page(after, page.getNextCursor(), LIMIT);
+            assertTrue(page.isGenerationChanged());
+            assertEquals(after.getNumber(), page.getGenerationNumber());
+            paged.addAll(ids(page.getPkgs()));
+            while (page.hasMore()) {
+                page = plan.page(after, page.getNextCursor(), LIMIT);
+                assertFalse(page.isGenerationChanged());
+                paged.addAll(ids(page.getPkgs()));
+            }
+
+            // Nothing is repeated, packages of both generations are not skipped and the pages after the swap are those of the new generation
+            assertEquals(query.toString(), paged.size(), new HashSet<>(paged).size());
+            final Set<String> common = new HashSet<>(beforeIds);
+            common.retainAll(afterIds);
+            assertTrue(query.toString(), paged.containsAll(common));
+            final List<String> rest = paged.subList(swappedAt, paged.size());
+            assertEquals(query.toString(), afterIds.subList(afterIds.size() - rest.size(), afterIds.size()), rest);
+        }
+    }
+
+
+    // Lazily streamed version index and bitmap paths and a latest view whose result is computed completely
+    private static List<PkgQuery> queries() {
+        return List.of(PkgQuery.builder().build(),
+                       PkgQuery.builder().version(new VersionNumber(11), Comparison.GREATER_THAN_OR_EQUAL).operatingSystems(List.of(OperatingSystem.LINUX)).build(),
+                       PkgQuery.builder().version(new VersionNumber(17)).build(),
+                       PkgQuery.builder().version(new VersionNumber(17)).latest(Latest.PER_VERSION).build());
+    }
+
+    private static List<String> ids(final List<Pkg> pkgs) { return pkgs.stream().map(Pkg::getId).collect(Collectors.toList()); }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.cache.ParallelScan;
+import io.foojay.api.discoclient.pkg.Latest;
+import io.foojay.api.discoclient.pkg.Pkg;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Compares the results of queries that are evaluated together in one traversal with the result of each plan on its own
+ */
+public class QueryBatchTest {
+
+    @Test public void batchMatchesEachPlan() {
+        final CacheGeneration generation = QueryPlanTest.createGeneration();
+        final Random          random     = new Random(23);
+        int shared = 0;
+        for (int run = 0; run < 100; run++) {
+            final List<QueryPlan> plans = new ArrayList<>();
+            final int             count = 1 + random.nextInt(20);
+            while (plans.size() < count) {
+                final PkgQuery query = QueryPlanTest.randomQuery(random);
+                if (Latest.NONE != query.getLatest()) { continue; }
+                final PkgQuery.Grouping grouping = PkgQuery.Grouping.values()[random.nextInt(PkgQuery.Grouping.values().length)];
+                plans.add(0 == random.nextInt(4) ? query.toBuilder().newest(1 + random.nextInt(10), grouping).build().compile() : query.compile());
+            }
+            final List<List<Pkg>> results = QueryBatch.execute(generation, plans, ParallelScan.SEQUENTIAL);
+            assertEquals(plans.size(), results.size());
+            for (int i = 0; i < plans.size(); i++) {
+                final QueryPlan plan = plans.get(i);
+                assertEquals(plan.getQuery().toString(), ids(plan.execute(generation)), ids(results.get(i)));
+                if (plan.isSharedScan(generation)) { shared++; }
+            }
+        }
+        assertTrue(shared > 0);
+    }
+
+    @Test public void emptyBatch() { assertEquals(List.of(), QueryBatch.execute(QueryPlanTest.createGeneration(), List.of(), ParallelScan.SEQUENTIAL)); }
+
+
+    private static List<String> ids(final List<Pkg> pkgs) { return pkgs.stream().map(Pkg::getId).collect(Collectors.toList()); }
+}
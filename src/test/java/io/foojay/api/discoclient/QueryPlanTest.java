@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.QueryPlan.AccessPath;
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.cache.HeapPkgCatalog;
+import io.foojay.api.discoclient.cache.ParallelScan;
+import io.foojay.api.discoclient.cache.VersionKey;
+import io.foojay.api.discoclient.pkg.Architecture;
+import io.foojay.api.discoclient.pkg.ArchiveType;
+import io.foojay.api.discoclient.pkg.Bitness;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.LibCType;
+import io.foojay.api.discoclient.pkg.Latest;
+import io.foojay.api.discoclient.pkg.MajorVersion;
+import io.foojay.api.discoclient.pkg.OperatingSystem;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+import io.foojay.api.discoclient.pkg.Scope;
+import io.foojay.api.discoclient.pkg.TermOfSupport;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import io.foojay.api.discoclient.util.Comparison;
+import io.foojay.api.discoclient.util.Constants;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Compares the results of all access paths with the full filter of the packages that the client used before query plans
+ */
+public class QueryPlanTest {
+    // compareTo treats a GA release as equal to its early access builds, 18-ea+3 and 18-ea+20 are part of the latest 18
+    static final String[]               JAVA_VERSIONS  = { "8.0.312", "11.0.13", "11.0.14", "17", "17.0.1", "17.0.2", "18-ea+3", "18-ea+20", "18", "18.0.1-ea+3", "18.0.1", "19-ea+1", "19-ea+5" };
+    // An early access version that equals a GA release in compareTo and differs from the other early access builds is no key range, queries use the GA release
+    static final String[]               QUERY_VERSIONS = { "8.0.312", "11.0.13", "11.0.14", "17", "17.0.1", "17.0.2", "18", "18.0.1", "19-ea+1", "19-ea+5" };
+    static final List<Pkg>              PKGS          = TestPkgs.create(5000, 11, JAVA_VERSIONS);
+    static final List<MajorVersion>     MAJOR_VERSIONS = Stream.of(19, 18, 17, 11, 8).map(MajorVersion::new).collect(Collectors.toList());
+    private static final Set<Distribution> NOT_IN_OVERALL = EnumSet.of(Distribution.GRAALVM_CE8, Distribution.GRAALVM_CE11, Distribution.LIBERICA_NATIVE, Distribution.MANDREL);
+    // compareTo is not transitive across early access builds and their GA release, the version key orders them consistently
+    private static final Comparator<Pkg>   RESULT_ORDER   = Comparator.comparing(Pkg::getDistributionName).reversed()
+                                                                      .thenComparing(Comparator.comparingLong((Pkg pkg) -> VersionKey.of(pkg.getJavaVersion().getVersionNumber())).reversed());
+    // Of versions that compareTo treats as equal the GA release is the newest, so the maximum does not depend on the order of the packages
+    private static final Comparator<VersionNumber> NEWEST = Comparator.<VersionNumber>naturalOrder()
+                                                                      .thenComparing(version -> version.getReleaseStatus().filter(ReleaseStatus.EA::equals).isEmpty());
+
+
+    @Test public void everyAccessPathMatchesFullFilter() {
+        final CacheGeneration       generation = createGeneration();
+        final Random                random     = new Random(13);
+        final Map<AccessPath, Integer> paths   = new HashMap<>();
+        final List<PkgQuery>        queries    = new ArrayList<>(List.of(PkgQuery.builder().build(),
+                                                                          PkgQuery.builder().javafxBundled(false).build(),
+                                                                          PkgQuery.builder().distributions(List.of(Distribution.GRAALVM_CE11)).scopes(List.of(Scope.BUILD_OF_OPEN_JDK)).build()));
+        for (int i = 0; i < 3000; i++) { queries.add(randomQuery(random)); }
+        for (PkgQuery query : queries) {
+            final AccessPath path     = query.compile().explain(generation).getAccessPath();
+            final List<Pkg>  result   = query.compile().execute(generation);
+            final List<Pkg>  expected = fullFilter(query);
+            paths.merge(path, 1, Integer::sum);
+            assertEquals(path + " " + query, ids(expected), ids(result));
+            assertEquals(path + " " + query, expected.size(), result.size());
+            final Comparator<Pkg> order = Latest.PER_DISTRIBUTION == query.getLatest() && Comparison.EQUAL == query.getComparison() ? perDistributionOrder(query) : RESULT_ORDER;
+            for (int j = 1; j < result.size(); j++) { assertTrue(path + " " + query, order.compare(result.get(j - 1), result.get(j)) <= 0); }
+        }
+        for (AccessPath path : AccessPath.values()) { assertTrue(path + " not covered " + paths, paths.containsKey(path)); }
+    }
+
+
+    @Test public void newestMatchesSortedResult() {
+        final CacheGeneration generation = createGeneration();
+        final Random          random     = new Random(17);
+        for (int i = 0; i < 1000; i++) {
+            final PkgQuery           query    = randomQuery(random);
+            final PkgQuery.Grouping  grouping = PkgQuery.Grouping.values()[random.nextInt(PkgQuery.Grouping.values().length)];
+            final int                newest   = 1 + random.nextInt(20);
+            final List<Pkg>          result   = query.compile().execute(generation);
+            final List<Pkg>          selected = query.toBuilder().newest(newest, grouping).build().compile().execute(generation);
+
+            // The newest packages of each group by a full sort of the result, ties in result order, kept in result order
+            final Map<Object, Integer> counts   = new HashMap<>();
+            final List<Integer>        kept     = new ArrayList<>();
+            final List<Integer>        byNewest = IntStream.range(0, result.size()).boxed()
+                                                           .sorted(Comparator.comparingLong((Integer p) -> VersionKey.of(result.get(p).getJavaVersion().getVersionNumber())).reversed())
+                                                           .collect(Collectors.toList());
+            for (int position : byNewest) {
+                final Pkg    pkg   = result.get(position);
+                final Object group = PkgQuery.Grouping.PER_DISTRIBUTION == grouping ? pkg.getDistribution() : PkgQuery.Grouping.PER_VERSION == grouping ? feature(pkg) : "";
+                if (counts.merge(group, 1, Integer::sum) <= newest) { kept.add(position); }
+            }
+            kept.sort(Comparator.naturalOrder());
+            final List<String> expected = kept.stream().map(p -> result.get(p).getId()).collect(Collectors.toList());
+            assertEquals(grouping + " " + newest + " " + query, expected, selected.stream().map(Pkg::getId).collect(Collectors.toList()));
+        }
+    }
+
+
+    @Test public void executesInParallelLikeSequential() {
+        final CacheGeneration generation = createGeneration();
+        final Random          random     = new Random(19);
+        try (ParallelScan scan = new ParallelScan(4, 100)) {
+            for (int i = 0; i < 300; i++) {
+                final PkgQuery query = randomQuery(random);
+                assertEquals(query.toString(), query.compile().execute(generation), query.compile().execute(generation, scan));
+            }
+        }
+    }
+
+    @Test public void rejectsNoneAndNotFoundValues() {
+        final List<Runnable> builders = List.of(() -> PkgQuery.builder().distributions(Distribution.ZULU, Distribution.NONE),
+                                                () -> PkgQuery.builder().architectures(Architecture.NOT_FOUND),
+                                                () -> PkgQuery.builder().operatingSystems(List.of(OperatingSystem.NONE)),
+                                                () -> PkgQuery.builder().libCTypes(LibCType.NOT_FOUND),
+                                                () -> PkgQuery.builder().scopes(Scope.PUBLIC, Scope.NONE));
+        for (Runnable builder : builders) {
+            try {
+                builder.run();
+                fail("NONE and NOT_FOUND must be rejected");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("NONE") || e.getMessage().contains("NOT_FOUND"));
+            }
+        }
+        assertTrue(PkgQuery.builder().distributions(List.of()).scopes(List.of()).build().getDistributions().isEmpty());
+    }
+
+
+    static CacheGeneration createGeneration() { return new CacheGeneration(new HeapPkgCatalog(PKGS), MAJOR_VERSIONS, Map.of(), Instant.now()); }
+
+    static PkgQuery randomQuery(final Random random) {
+        final PkgQuery.Builder builder = PkgQuery.builder();
+        VersionNumber versionNumber = 0 == random.nextInt(3) ? null : random.nextBoolean() ? new VersionNumber(MAJOR_VERSIONS.get(random.nextInt(MAJOR_VERSIONS.size())).getAsInt())
+                                                                                            : VersionNumber.fromText(QUERY_VERSIONS[random.nextInt(QUERY_VERSIONS.length)]);
+        final Comparison comparison = 0 == random.nextInt(3) ? Comparison.values()[random.nextInt(Comparison.values().length)] : Comparison.EQUAL;
+        if (Comparison.EQUAL != comparison && null == versionNumber) { versionNumber = new VersionNumber(17); }
+        if (null != versionNumber) { builder.version(versionNumber, comparison); }
+        if (Comparison.EQUAL == comparison) {
+            final Latest latest = new Latest[] { Latest.NONE, Latest.NONE, Latest.OVERALL, Latest.PER_DISTRIBUTION, Latest.PER_VERSION }[random.nextInt(5)];
+            builder.latest(Latest.PER_VERSION == latest && null == versionNumber ? Latest.NONE : latest);
+        }
+        builder.distributions(pick(random, new Distribution[] { Distribution.ZULU, Distribution.DRAGONWELL, Distribution.LIBERICA, Distribution.CORRETTO,
+                                                                Distribution.SAP_MACHINE, Distribution.MANDREL, Distribution.GRAALVM_CE11, Distribution.ORACLE }, 2))
+               .architectures(pick(random, new Architecture[] { Architecture.X64, Architecture.AARCH64, Architecture.X86 }, 2))
+               .archiveTypes(pick(random, new ArchiveType[] { ArchiveType.TAR_GZ, ArchiveType.ZIP, ArchiveType.MSI }, 1))
+               .operatingSystems(pick(random, new OperatingSystem[] { OperatingSystem.LINUX, OperatingSystem.ALPINE_LINUX, OperatingSystem.WINDOWS, OperatingSystem.MACOS }, 2))
+               .libCTypes(pick(random, new LibCType[] { LibCType.GLIBC, LibCType.MUSL, LibCType.C_STD_LIB }, 1))
+               .releaseStatus(pick(random, new ReleaseStatus[] { ReleaseStatus.GA, ReleaseStatus.EA }, 1))
+               .termsOfSupport(pick(random, new TermOfSupport[] { TermOfSupport.LTS, TermOfSupport.STS }, 1))
+               .packageType(new PackageType[] { PackageType.NONE, PackageType.NONE, PackageType.JDK, PackageType.JRE }[random.nextInt(4)])
+               .bitness(new Bitness[] { Bitness.NONE, Bitness.NONE, Bitness.BIT_64, Bitness.BIT_32 }[random.nextInt(4)])
+               .javafxBundled(new Boolean[] { null, null, true, false }[random.nextInt(4)])
+               .directlyDownloadable(new Boolean[] { null, null, true, false }[random.nextInt(4)])
+               .scopes(pick(random, new Scope[] { Scope.PUBLIC, Scope.BUILD_OF_OPEN_JDK, Scope.DIRECTLY_DOWNLOADABLE }, 2));
+        return builder.build();
+    }
+
+    // The filter of the packages as the client evaluated it before query plans, empty scopes select all distributions
+    static List<Pkg> fullFilter(final PkgQuery query) {
+        final VersionNumber  versionNumber = query.getVersionNumber();
+        final Predicate<Pkg> requested     = pkg -> query.getDistributions().isEmpty() || query.getDistributions().contains(pkg.getDistribution());
+        final Predicate<Pkg> inScope       = pkg -> inScope(query, pkg.getDistribution());
+        final Predicate<Pkg> attributes    = pkg -> matchesAttributes(query, pkg);
+        final Predicate<Pkg> selected      = requested.and(inScope).and(attributes);
+        if (Comparison.EQUAL == query.getComparison()) {
+            switch (query.getLatest()) {
+                case OVERALL: {
+                    final boolean       featurePresent = null != versionNumber && versionNumber.getFeature().isPresent();
+                    final VersionNumber maxNumber      = PKGS.stream()
+                                                             .filter(selected)
+                                                             .filter(pkg -> featurePresent ? versionNumber.getFeature().getAsInt() == feature(pkg)
+                                                                                           : !query.getDistributions().isEmpty() || !NOT_IN_OVERALL.contains(pkg.getDistribution()))
+                                                             .map(pkg -> pkg.getJavaVersion().getVersionNumber())
+                                                             .max(NEWEST)
+                                                             .orElse(versionNumber);
+                    if (null == maxNumber) { return List.of(); }
+                    return sort(PKGS.stream().filter(selected).filter(pkg -> pkg.getJavaVersion().getVersionNumber().compareTo(maxNumber) == 0));
+                }
+                case PER_DISTRIBUTION: {
+                    final List<Pkg> result = new ArrayList<>();
+                    for (Distribution distribution : distributionsToCheck(query)) {
+                        final Predicate<Pkg> ofDistribution = pkg -> pkg.getDistribution() == distribution;
+                        PKGS.stream().filter(ofDistribution.and(attributes)).map(pkg -> pkg.getJavaVersion().getVersionNumber()).max(NEWEST)
+                            .ifPresent(max -> result.addAll(sort(PKGS.stream().filter(ofDistribution.and(attributes)).filter(pkg -> pkg.getJavaVersion().getVersionNumber().equals(max)))));
+                    }
+                    return result;
+                }
+                case PER_VERSION:
+                    return sort(PKGS.stream().filter(selected).filter(pkg -> feature(pkg) == versionNumber.getFeature().getAsInt()).filter(Pkg::isLatestBuildAvailable));
+                default:
+                    return sort(PKGS.stream().filter(selected).filter(pkg -> null == versionNumber || pkg.getJavaVersion().getVersionNumber().compareTo(versionNumber) == 0));
+            }
+        }
+        final VersionNumber min = new VersionNumber(6);
+        final VersionNumber max = new VersionNumber(MAJOR_VERSIONS.get(0).getAsInt());
+        final Predicate<VersionNumber> range;
+        switch (query.getComparison()) {
+            case LESS_THAN            : range = version -> version.compareTo(min) >= 0 && version.compareTo(versionNumber) < 0; break;
+            case LESS_THAN_OR_EQUAL   : range = version -> version.compareTo(min) >= 0 && version.compareTo(versionNumber) <= 0; break;
+            case GREATER_THAN         : range = version -> version.compareTo(versionNumber) > 0 && version.compareTo(max) <= 0; break;
+            case GREATER_THAN_OR_EQUAL:
+            default                   : range = version -> version.compareTo(versionNumber) >= 0 && version.compareTo(max) <= 0; break;
+        }
+        return sort(PKGS.stream().filter(selected).filter(pkg -> range.test(pkg.getJavaVersion().getVersionNumber())));
+    }
+
+    static Set<String> ids(final List<Pkg> pkgs) { return pkgs.stream().map(Pkg::getId).collect(Collectors.toSet()); }
+
+    private static boolean matchesAttributes(final PkgQuery query, final Pkg pkg) {
+        return (query.getArchitectures().isEmpty()    || query.getArchitectures().contains(pkg.getArchitecture())) &&
+               (query.getArchiveTypes().isEmpty()     || query.getArchiveTypes().contains(pkg.getArchiveType())) &&
+               (query.getOperatingSystems().isEmpty() || query.getOperatingSystems().contains(pkg.getOperatingSystem())) &&
+               (query.getLibCTypes().isEmpty()        || query.getLibCTypes().contains(pkg.getLibCType())) &&
+               (query.getTermsOfSupport().isEmpty()   || query.getTermsOfSupport().contains(pkg.getTermOfSupport())) &&
+               (query.getReleaseStatus().isEmpty()    || query.getReleaseStatus().contains(pkg.getReleaseStatus())) &&
+               (PackageType.NONE == query.getPackageType() ? PackageType.NONE != pkg.getPackageType() : query.getPackageType() == pkg.getPackageType()) &&
+               (Bitness.NONE == query.getBitness()         ? Bitness.NONE != pkg.getBitness()         : query.getBitness() == pkg.getBitness()) &&
+               (null == query.getJavafxBundled()        || query.getJavafxBundled().equals(pkg.isJavaFXBundled())) &&
+               (null == query.getDirectlyDownloadable() || query.getDirectlyDownloadable().equals(pkg.isDirectlyDownloadable()));
+    }
+
+    private static boolean inScope(final PkgQuery query, final Distribution distribution) {
+        return query.getScopes().isEmpty() || Constants.SCOPE_LOOKUP.getOrDefault(distribution, List.of()).stream().anyMatch(query.getScopes()::contains);
+    }
+
+    private static List<Distribution> distributionsToCheck(final PkgQuery query) {
+        return (query.getDistributions().isEmpty() ? Distribution.getAsList() : query.getDistributions()).stream().filter(distribution -> inScope(query, distribution)).collect(Collectors.toList());
+    }
+
+    private static Comparator<Pkg> perDistributionOrder(final PkgQuery query) {
+        final List<Distribution> distributions = distributionsToCheck(query);
+        return Comparator.comparingInt((Pkg pkg) -> distributions.indexOf(pkg.getDistribution())).thenComparing(RESULT_ORDER);
+    }
+
+    private static int feature(final Pkg pkg) { return pkg.getJavaVersion().getVersionNumber().getFeature().getAsInt(); }
+
+    private static List<Pkg> sort(final Stream<Pkg> pkgs) { return pkgs.sorted(RESULT_ORDER).collect(Collectors.toList()); }
+
+    private static <T> List<T> pick(final Random random, final T[] values, final int max) {
+        final List<T> picked = new ArrayList<>();
+        final int     count  = random.nextInt(max + 1);
+        for (int i = 0; i < count; i++) {
+            final T value = values[random.nextInt(values.length)];
+            if (!picked.contains(value)) { picked.add(value); }
+        }
+        return picked;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.cache.HeapPkgCatalog;
+import io.foojay.api.discoclient.cache.PkgCatalog;
+import io.foojay.api.discoclient.pkg.Architecture;
+import io.foojay.api.discoclient.pkg.ArchiveType;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.LibCType;
+import io.foojay.api.discoclient.pkg.OperatingSystem;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.Platform;
+import io.foojay.api.discoclient.pkg.ReleaseStatus;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ResolveBestTest {
+    private static final List<Pkg>                            PKGS      = TestPkgs.create(3000, 21);
+    private static final List<Platform>                       PLATFORMS = List.of(Platform.of(OperatingSystem.LINUX, Architecture.X64),
+                                                                                  Platform.of(OperatingSystem.LINUX_MUSL, Architecture.AMD64),
+                                                                                  Platform.of(OperatingSystem.ALPINE_LINUX, Architecture.AARCH64),
+                                                                                  Platform.of(OperatingSystem.WINDOWS, Architecture.X64),
+                                                                                  Platform.of(OperatingSystem.MACOS, Architecture.ARM64));
+    private static final List<ResolvePreferences>             PREFERENCES = List.of(ResolvePreferences.DEFAULT,
+                                                                                    ResolvePreferences.builder().distributions(Distribution.CORRETTO, Distribution.ZULU).packageTypes(PackageType.JRE)
+                                                                                                      .archiveTypes(ArchiveType.ZIP, ArchiveType.TAR_GZ).build(),
+                                                                                    ResolvePreferences.builder().distributions(Distribution.SAP_MACHINE).includeEarlyAccess(true).build(),
+                                                                                    ResolvePreferences.builder().archiveTypes(ArchiveType.MSI).directlyDownloadableOnly(true).build());
+    private static final Map<String, Predicate<VersionNumber>> SPECS     = new LinkedHashMap<>();
+    static {
+        SPECS.put("",       version -> true);
+        SPECS.put("17",     version -> 17 == version.getFeature().getAsInt());
+        SPECS.put("17.0.1", version -> 17 == version.getFeature().getAsInt() && 0 == version.getInterim().orElse(0) && 1 == version.getUpdate().orElse(0));
+        SPECS.put(">=11",   version -> version.getFeature().getAsInt() >= 11);
+        SPECS.put("<17",    version -> version.getFeature().getAsInt() < 17);
+        SPECS.put("18",     version -> 18 == version.getFeature().getAsInt());
+        SPECS.put("19",     version -> 19 == version.getFeature().getAsInt());
+    }
+
+
+    @Test public void selectsBestOfRankedScan() {
+        final CacheGeneration generation = createGeneration(PKGS);
+        int found = 0;
+        for (Platform platform : PLATFORMS) {
+            for (ResolvePreferences preferences : PREFERENCES) {
+                for (Map.Entry<String, Predicate<VersionNumber>> spec : SPECS.entrySet()) {
+                    final Pkg expected = best(generation.getCatalog(), platform, spec.getValue(), preferences);
+                    final Pkg resolved = DiscoClient.resolveBest(generation, spec.getKey(), preferences, platform);
+                    assertEquals(platform + " " + spec.getKey() + " " + preferences, id(expected), id(resolved));
+                    if (null != resolved) { found++; }
+                }
+            }
+        }
+        assertTrue(found > 0);
+    }
+
+    @Test public void resolvesRemoteResponseLikeCache() {
+        final CacheGeneration generation = createGeneration(PKGS);
+        for (Platform platform : PLATFORMS) {
+            // The disco api returns the packages that match the platform query, they are ranked in a view of their own
+            final CacheGeneration response = createGeneration(DiscoClient.toPlatformQuery(platform).compile().execute(generation));
+            for (ResolvePreferences preferences : PREFERENCES) {
+                for (String spec : SPECS.keySet()) {
+                    assertEquals(platform + " " + spec + " " + preferences, id(DiscoClient.resolveBest(generation, spec, preferences, platform)),
+                                 id(DiscoClient.resolveBest(response, spec, preferences, platform)));
+                }
+            }
+        }
+    }
+
+    @Test public void resolvesMuslPkgsOfEveryLinuxVariant() {
+        final List<Pkg> pkgs = List.of(TestPkgs.create("a", "ea", "zulu", "17.0.1", "alpine_linux", "musl", "x64", "jdk", "tar.gz", false, true, true),
+                                       TestPkgs.create("b", "eb", "zulu", "17.0.2+8", "linux", "glibc", "x64", "jdk", "tar.gz", false, true, true));
+        final Platform        platform   = Platform.of(OperatingSystem.LINUX_MUSL, Architecture.X64);
+        final CacheGeneration generation = createGeneration(pkgs);
+        assertEquals(List.of(OperatingSystem.LINUX, OperatingSystem.LINUX_MUSL, OperatingSystem.ALPINE_LINUX), platform.getOperatingSystemFamily());
+        assertEquals(LibCType.MUSL, platform.getLibCType());
+        final Pkg resolved = DiscoClient.resolveBest(createGeneration(DiscoClient.toPlatformQuery(platform).compile().execute(generation)), "17", ResolvePreferences.DEFAULT, platform);
+        assertNotNull(resolved);
+        assertEquals("a", resolved.getId());
+    }
+
+    @Test public void requestsAllPkgsOfUndetectedPlatform() {
+        final PkgQuery query = DiscoClient.toPlatformQuery(Platform.of(OperatingSystem.NOT_FOUND, Architecture.NOT_FOUND, LibCType.NOT_FOUND));
+        assertTrue(query.getOperatingSystems().isEmpty());
+        assertTrue(query.getArchitectures().isEmpty());
+    }
+
+
+    private static CacheGeneration createGeneration(final List<Pkg> pkgs) { return new CacheGeneration(new HeapPkgCatalog(pkgs), QueryPlanTest.MAJOR_VERSIONS, Map.of(), Instant.now()); }
+
+    // Ranks all installable packages as ResolvePreferences documents it, ties are broken by the record order
+    private static Pkg best(final PkgCatalog catalog, final Platform platform, final Predicate<VersionNumber> spec, final ResolvePreferences preferences) {
+        return IntStream.range(0, catalog.size())
+                        .filter(i -> platform.isInstallable(catalog.getOperatingSystem(i), catalog.getArchitecture(i), catalog.getLibCType(i), catalog.getArchiveType(i)))
+                        .filter(i -> spec.test(catalog.getPkg(i).getJavaVersion().getVersionNumber()))
+                        .filter(i -> preferences.isIncludeEarlyAccess() || ReleaseStatus.EA != catalog.getReleaseStatus(i))
+                        .filter(i -> !preferences.isDirectlyDownloadableOnly() || catalog.isDirectlyDownloadable(i))
+                        .boxed()
+                        .min(Comparator.comparingInt((Integer i) -> rank(preferences.getDistributions(), catalog.getDistribution(i)))
+                                       .thenComparingInt(i -> rank(preferences.getPackageTypes(), catalog.getPackageType(i)))
+                                       .thenComparing(Comparator.comparingLong((Integer i) -> catalog.getVersionKey(i)).reversed())
+                                       .thenComparingInt(i -> rank(preferences.getArchiveTypes(), catalog.getArchiveType(i)))
+                                       .thenComparingInt(i -> i))
+                        .map(catalog::getPkg)
+                        .orElse(null);
+    }
+
+    private static <E> int rank(final List<E> values, final E value) {
+        final int rank = values.indexOf(value);
+        return -1 == rank ? values.size() : rank;
+    }
+
+    private static String id(final Pkg pkg) { return null == pkg ? null : pkg.getId(); }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import io.foojay.api.discoclient.cache.CacheConfig;
+import io.foojay.api.discoclient.cache.CacheEngine;
+import io.foojay.api.discoclient.cache.CacheGeneration;
+import io.foojay.api.discoclient.event.PkgChangeEvt;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.Latest;
+import io.foojay.api.discoclient.pkg.MajorVersion;
+import io.foojay.api.discoclient.pkg.OperatingSystem;
+import io.foojay.api.discoclient.pkg.PackageType;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class StandingQueryTest {
+
+    @Test public void reportsAddedAndRemovedPkgs() throws Exception {
+        final List<Pkg> oldPkgs   = TestPkgs.create(2000, 3, QueryPlanTest.JAVA_VERSIONS);
+        final List<Pkg> changed   = TestPkgs.create(2000, 4, QueryPlanTest.JAVA_VERSIONS);
+        final List<Pkg> extended  = TestPkgs.create(2100, 3, QueryPlanTest.JAVA_VERSIONS);
+        final List<Pkg> newPkgs   = new ArrayList<>();
+        // Every 5th package is removed, every 3rd changes its content under the same id and 100 packages are new
+        for (int i = 0; i < oldPkgs.size(); i++) {
+            if (i % 5 == 0) { continue; }
+            newPkgs.add(i % 3 == 0 ? changed.get(i) : oldPkgs.get(i));
+        }
+        newPkgs.addAll(extended.subList(oldPkgs.size(), extended.size()));
+
+        final TestLoader  loader = new TestLoader(oldPkgs);
+        final CacheEngine engine = CacheEngine.acquire("test://standing", CacheConfig.builder().progressiveLoading(false).build(), loader);
+        try {
+            final CacheGeneration     oldGeneration = engine.refreshNow().get(5, TimeUnit.SECONDS);
+            final List<StandingQuery> standing      = queries().stream().map(query -> new StandingQuery(query, oldGeneration, (g, q) -> q.compile().execute(g))).collect(Collectors.toList());
+            final List<List<Pkg>>     oldResults    = queries().stream().map(query -> query.compile().execute(oldGeneration)).collect(Collectors.toList());
+            final List<PkgChangeEvt>  evts          = new ArrayList<>();
+            engine.addChangeListener(change -> standing.forEach(query -> evts.add(query.apply(this, change))));
+
+            loader.pkgs = newPkgs;
+            final CacheGeneration newGeneration = engine.refreshNow().get(5, TimeUnit.SECONDS);
+            assertEquals(standing.size(), evts.size());
+            for (int i = 0; i < standing.size(); i++) {
+                final PkgQuery     query   = standing.get(i).getQuery();
+                final Set<String>  oldIds  = ids(oldResults.get(i));
+                final Set<String>  newIds  = ids(query.compile().execute(newGeneration));
+                final Set<String>  added   = new HashSet<>(newIds);
+                final Set<String>  removed = new HashSet<>(oldIds);
+                added.removeAll(oldIds);
+                removed.removeAll(newIds);
+                final PkgChangeEvt evt     = evts.get(i);
+                if (added.isEmpty() && removed.isEmpty()) {
+                    assertNull(query.toString(), evt);
+                    continue;
+                }
+                assertEquals(PkgChangeEvt.PKGS_CHANGED, evt.getEvtType());
+                assertEquals(query, evt.getQuery());
+                assertEquals(newGeneration.getNumber(), evt.getGenerationNumber());
+                assertEquals(query.toString(), added, ids(evt.getAdded()));
+                assertEquals(query.toString(), removed, ids(evt.getRemoved()));
+            }
+            assertTrue(evts.stream().anyMatch(evt -> null != evt && !evt.getAdded().isEmpty() && !evt.getRemoved().isEmpty()));
+        } finally {
+            engine.release();
+        }
+    }
+
+
+    // Incrementally evaluated queries and queries whose result is recomputed
+    private static List<PkgQuery> queries() {
+        return List.of(PkgQuery.builder().version(new VersionNumber(17)).operatingSystems(List.of(OperatingSystem.LINUX)).build(),
+                       PkgQuery.builder().packageType(PackageType.JDK).javafxBundled(true).build(),
+                       PkgQuery.builder().distributions(List.of(Distribution.CORRETTO)).latest(Latest.PER_DISTRIBUTION).build(),
+                       PkgQuery.builder().version(new VersionNumber(18)).latest(Latest.PER_VERSION).build(),
+                       PkgQuery.builder().newest(3, PkgQuery.Grouping.PER_DISTRIBUTION).build());
+    }
+
+    private static Set<String> ids(final List<Pkg> pkgs) { return pkgs.stream().map(Pkg::getId).collect(Collectors.toSet()); }
+
+
+    // ******************** Inner Classes *************************************
+    static class TestLoader implements CacheEngine.Loader {
+        volatile List<Pkg> pkgs;
+
+
+        TestLoader(final List<Pkg> pkgs) { this.pkgs = pkgs; }
+
+
+        @Override public CompletableFuture<Queue<Pkg>> loadPkgs() { return CompletableFuture.completedFuture(new LinkedList<>(pkgs)); }
+
+        @Override public CompletableFuture<Queue<Pkg>> loadPkgs(final Distribution distribution) {
+            return CompletableFuture.completedFuture(pkgs.stream().filter(pkg -> pkg.getDistribution() == distribution).collect(Collectors.toCollection(LinkedList::new)));
+        }
+
+        @Override public CompletableFuture<List<MajorVersion>> loadMajorVersions() { return CompletableFuture.completedFuture(QueryPlanTest.MAJOR_VERSIONS); }
+
+        @Override public CompletableFuture<Map<Distribution, List<VersionNumber>>> loadVersionsPerDistribution() { return CompletableFuture.completedFuture(Map.of()); }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient;
+
+import com.google.gson.JsonObject;
+import io.foojay.api.discoclient.pkg.Pkg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Creates reproducible packages for tests that must not depend on the discovery api
+ */
+public final class TestPkgs {
+    public  static final String[] JAVA_VERSIONS     = { "8.0.312+7", "11.0.13", "11.0.14+9", "17", "17.0.1", "17.0.2+8", "18-ea+3", "18-ea+20", "18", "18.0.1-ea+3", "18.0.1", "19-ea+1" };
+    private static final String[] DISTRIBUTIONS     = { "zulu", "dragonwell", "liberica", "corretto", "sapmachine", "mandrel", "graalvm_ce11" };
+    private static final String[] OPERATING_SYSTEMS = { "linux", "alpine_linux", "linux_musl", "windows", "macos" };
+    private static final String[] LIB_C_TYPES       = { "glibc", "musl", "musl", "c_std_lib", "libc" };
+    private static final String[] ARCHITECTURES     = { "x64", "aarch64", "x86" };
+    private static final String[] PACKAGE_TYPES     = { "jdk", "jre" };
+    private static final String[] ARCHIVE_TYPES     = { "tar.gz", "zip", "msi", "src.tar.gz" };
+
+
+    private TestPkgs() {}
+
+
+    public static List<Pkg> create(final int count, final long seed) { return create(count, seed, JAVA_VERSIONS); }
+    public static List<Pkg> create(final int count, final long seed, final String[] javaVersions) {
+        final Random    random = new Random(seed);
+        final List<Pkg> pkgs   = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int os = random.nextInt(OPERATING_SYSTEMS.length);
+            pkgs.add(create("id" + i, "e" + i, DISTRIBUTIONS[random.nextInt(DISTRIBUTIONS.length)], javaVersions[random.nextInt(javaVersions.length)],
+                            OPERATING_SYSTEMS[os], LIB_C_TYPES[os], ARCHITECTURES[random.nextInt(ARCHITECTURES.length)],
+                            PACKAGE_TYPES[random.nextInt(PACKAGE_TYPES.length)], ARCHIVE_TYPES[random.nextInt(ARCHIVE_TYPES.length)],
+                            random.nextBoolean(), random.nextInt(4) > 0, random.nextBoolean()));
+        }
+        return pkgs;
+    }
+
+    public static Pkg create(final String id, final String ephemeralId, final String distribution, final String javaVersion, final String operatingSystem, final String libCType,
+                             final String architecture, final String packageType, final String archiveType, final boolean javafxBundled, final boolean directlyDownloadable,
+                             final boolean latestBuildAvailable) {
+        final int        majorVersion = Integer.parseInt(javaVersion.split("[.+-]")[0]);
+        final JsonObject json         = new JsonObject();
+        json.addProperty(Pkg.FIELD_ID, id);
+        json.addProperty(Pkg.FIELD_EPHEMERAL_ID, ephemeralId);
+        json.addProperty(Pkg.FIELD_DISTRIBUTION, distribution);
+        json.addProperty(Pkg.FIELD_DISTRIBUTION_VERSION, javaVersion);
+        json.addProperty(Pkg.FIELD_MAJOR_VERSION, majorVersion);
+        json.addProperty(Pkg.FIELD_JAVA_VERSION, javaVersion);
+        json.addProperty(Pkg.FIELD_RELEASE_STATUS, javaVersion.contains("-ea") ? "ea" : "ga");
+        json.addProperty(Pkg.FIELD_TERM_OF_SUPPORT, majorVersion == 8 || majorVersion == 11 || majorVersion == 17 ? "lts" : "sts");
+        json.addProperty(Pkg.FIELD_OPERATING_SYSTEM, operatingSystem);
+        json.addProperty(Pkg.FIELD_LIB_C_TYPE, libCType);
+        json.addProperty(Pkg.FIELD_ARCHITECTURE, architecture);
+        json.addProperty(Pkg.FIELD_PACKAGE_TYPE, packageType);
+        json.addProperty(Pkg.FIELD_ARCHIVE_TYPE, archiveType);
+        json.addProperty(Pkg.FIELD_JAVAFX_BUNDLED, javafxBundled);
+        json.addProperty(Pkg.FIELD_DIRECTLY_DOWNLOADABLE, directlyDownloadable);
+        json.addProperty(Pkg.FIELD_LATEST_BUILD_AVAILABLE, latestBuildAvailable);
+        json.addProperty(Pkg.FIELD_FILENAME, id + "." + archiveType);
+        return new Pkg(json.toString());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.TestPkgs;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.MajorVersion;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class CacheEngineTest {
+
+    @Test public void sharesEngineOfApiUrl() {
+        final CacheConfig config = CacheConfig.builder().progressiveLoading(false).build();
+        final CacheEngine engine = CacheEngine.acquire("test://shared", config, new TestLoader(TestPkgs.create(100, 1)));
+        try {
+            final CacheEngine other = CacheEngine.acquire("test://shared", CacheConfig.builder().progressiveLoading(false).build(), new TestLoader(List.of()));
+            assertSame(engine, other);
+            other.release();
+        } finally {
+            engine.release();
+        }
+    }
+
+    @Test public void createsEngineOfDifferentConfig() {
+        final CacheEngine engine = CacheEngine.acquire("test://config", CacheConfig.builder().queryCacheSize(10).build(), new TestLoader(List.of()));
+        try {
+            final CacheEngine other = CacheEngine.acquire("test://config", CacheConfig.builder().queryCacheSize(20).build(), new TestLoader(List.of()));
+            assertNotSame(engine, other);
+            assertEquals(20, other.getCacheConfig().getQueryCacheSize());
+            other.release();
+            // Releasing the other engine must not remove the engine of the first config
+            final CacheEngine same = CacheEngine.acquire("test://config", CacheConfig.builder().queryCacheSize(10).build(), new TestLoader(List.of()));
+            assertSame(engine, same);
+            same.release();
+        } finally {
+            engine.release();
+        }
+    }
+
+    @Test public void completesRefreshWhenAStepThrows() throws Exception {
+        final CacheEngine engine = CacheEngine.acquire("test://failing", CacheConfig.builder().progressiveLoading(false).build(), new TestLoader(TestPkgs.create(10, 1)) {
+            @Override public CompletableFuture<Queue<Pkg>> loadPkgs() {
+                return CompletableFuture.completedFuture(new LinkedList<>(TestPkgs.create(10, 1)) {
+                    @Override public <T> T[] toArray(final T[] array) { throw new IllegalStateException("Broken response"); }
+                });
+            }
+        });
+        try {
+            final CompletableFuture<CacheGeneration> failed = engine.refreshNow();
+            try {
+                failed.get(5, TimeUnit.SECONDS);
+                fail("Refresh must fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertNotSame(failed, engine.refreshNow());
+        } finally {
+            engine.release();
+        }
+    }
+
+    @Test public void publishesSlicesOnlyAfterMeaningfulGrowth() throws Exception {
+        final List<Distribution> distributions = Distribution.getDistributions();
+        final List<Pkg>          pkgs          = new ArrayList<>();
+        for (Distribution distribution : distributions) {
+            for (int i = 0; i < 100; i++) {
+                pkgs.add(TestPkgs.create(distribution.getApiString() + i, "e" + distribution.getApiString() + i, distribution.getApiString(), "17.0.1", "linux", "glibc", "x64", "jdk",
+                                         "tar.gz", false, true, false));
+            }
+        }
+        final List<CacheGeneration> partialGenerations = new CopyOnWriteArrayList<>();
+        final CacheEngine           engine             = CacheEngine.acquire("test://slices", CacheConfig.builder().progressiveLoading(true).build(), new TestLoader(pkgs));
+        try {
+            engine.addChangeListener(change -> { if (!change.getNewGeneration().isComplete()) { partialGenerations.add(change.getNewGeneration()); } });
+            final CacheGeneration generation = engine.refreshNow().get(5, TimeUnit.SECONDS);
+            assertTrue(generation.isComplete());
+            assertEquals(pkgs.size(), generation.getCatalog().size());
+            assertTrue(partialGenerations.size() + " partial generations", !partialGenerations.isEmpty() && partialGenerations.size() < distributions.size() / 2);
+            for (int i = 1; i < partialGenerations.size(); i++) {
+                assertTrue(partialGenerations.get(i).getCatalog().size() >= partialGenerations.get(i - 1).getCatalog().size() * 3 / 2);
+            }
+        } finally {
+            engine.release();
+        }
+    }
+
+    @Test public void publishesSlicesInConfiguredStorage() throws Exception {
+        final List<Pkg> pkgs = new ArrayList<>();
+        for (Distribution distribution : Distribution.getDistributions()) {
+            pkgs.add(TestPkgs.create(distribution.getApiString(), "e" + distribution.getApiString(), distribution.getApiString(), "17.0.1", "linux", "glibc", "x64", "jdk", "tar.gz",
+                                     false, true, false));
+        }
+        final List<CacheGeneration> partialGenerations = new CopyOnWriteArrayList<>();
+        final CacheEngine           engine             = CacheEngine.acquire("test://slices-direct", CacheConfig.builder().progressiveLoading(true).catalogStorage(CatalogStorage.DIRECT).build(),
+                                                                             new TestLoader(pkgs));
+        try {
+            engine.addChangeListener(change -> { if (!change.getNewGeneration().isComplete()) { partialGenerations.add(change.getNewGeneration()); } });
+            assertTrue(engine.refreshNow().get(5, TimeUnit.SECONDS).getCatalog() instanceof OffHeapPkgCatalog);
+            assertFalse(partialGenerations.isEmpty());
+            for (CacheGeneration partialGeneration : partialGenerations) { assertTrue(partialGeneration.getCatalog() instanceof OffHeapPkgCatalog); }
+        } finally {
+            engine.release();
+        }
+    }
+
+
+    // ******************** Inner Classes *************************************
+    static class TestLoader implements CacheEngine.Loader {
+        private final List<Pkg> pkgs;
+
+
+        TestLoader(final List<Pkg> pkgs) { this.pkgs = pkgs; }
+
+
+        @Override public CompletableFuture<Queue<Pkg>> loadPkgs() { return CompletableFuture.completedFuture(new LinkedList<>(pkgs)); }
+
+        @Override public CompletableFuture<Queue<Pkg>> loadPkgs(final Distribution distribution) {
+            return CompletableFuture.completedFuture(pkgs.stream().filter(pkg -> pkg.getDistribution() == distribution).collect(Collectors.toCollection(LinkedList::new)));
+        }
+
+        @Override public CompletableFuture<List<MajorVersion>> loadMajorVersions() { return CompletableFuture.completedFuture(List.of()); }
+
+        @Override public CompletableFuture<Map<Distribution, List<VersionNumber>>> loadVersionsPerDistribution() { return CompletableFuture.completedFuture(Map.of()); }
+    }
+}
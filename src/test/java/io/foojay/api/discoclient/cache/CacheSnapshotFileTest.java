@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.TestPkgs;
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.MajorVersion;
+import io.foojay.api.discoclient.pkg.Pkg;
+import io.foojay.api.discoclient.pkg.SemVer;
+import io.foojay.api.discoclient.pkg.TermOfSupport;
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class CacheSnapshotFileTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test public void roundTripsEveryStorage() throws Exception {
+        final List<Pkg>       pkgs       = TestPkgs.create(500, 42);
+        final CacheGeneration generation = createGeneration(pkgs);
+        final Path            snapshot   = folder.getRoot().toPath().resolve("cache.bin");
+        assertTrue(CacheSnapshotFile.write(generation, snapshot));
+
+        for (CatalogStorage storage : new CatalogStorage[] { CatalogStorage.HEAP, CatalogStorage.DIRECT, CatalogStorage.MAPPED }) {
+            final CacheGeneration restored = CacheSnapshotFile.read(snapshot, storage);
+            assertNotNull(storage.name(), restored);
+            assertEquals(generation.getCreatedAt(), restored.getCreatedAt());
+            assertEquals(generation.getVersionsPerDistribution().keySet(), restored.getVersionsPerDistribution().keySet());
+            assertEquals(generation.getMajorVersions().size(), restored.getMajorVersions().size());
+            assertEquals(17, restored.getMajorVersions().get(0).getAsInt());
+            assertEquals(TermOfSupport.LTS, restored.getMajorVersions().get(0).getTermOfSupport());
+            assertCatalogEquals(pkgs, restored.getCatalog());
+            restored.close();
+        }
+    }
+
+    @Test public void rewritesWarmStartedGeneration() throws Exception {
+        final List<Pkg> pkgs     = TestPkgs.create(200, 7);
+        final Path      snapshot = folder.getRoot().toPath().resolve("cache.bin");
+        assertTrue(CacheSnapshotFile.write(createGeneration(pkgs), snapshot));
+
+        for (CatalogStorage storage : new CatalogStorage[] { CatalogStorage.HEAP, CatalogStorage.DIRECT }) {
+            final CacheGeneration warmStarted = CacheSnapshotFile.read(snapshot, storage);
+            final Path            rewritten   = folder.getRoot().toPath().resolve(storage.name() + ".bin");
+            assertTrue(CacheSnapshotFile.write(warmStarted, rewritten));
+            assertCatalogEquals(pkgs, warmStarted.getCatalog());
+            assertCatalogEquals(pkgs, CacheSnapshotFile.read(rewritten, storage).getCatalog());
+        }
+    }
+
+    @Test public void defaultSnapshotFileDependsOnApiUrl() {
+        assertEquals(CacheConfig.defaultSnapshotFile("https://api.foojay.io"), CacheConfig.defaultSnapshotFile("https://api.foojay.io"));
+        assertNotEquals(CacheConfig.defaultSnapshotFile("https://api.foojay.io"), CacheConfig.defaultSnapshotFile("https://localhost:8080"));
+        assertEquals(null, CacheConfig.DEFAULT.getSnapshotFile());
+    }
+
+
+    static CacheGeneration createGeneration(final List<Pkg> pkgs) {
+        final List<MajorVersion>                     majorVersions           = List.of(new MajorVersion(17, TermOfSupport.LTS, true, List.of(SemVer.fromText("17.0.1").getSemVer1())),
+                                                                                       new MajorVersion(18, TermOfSupport.STS, false, List.of()));
+        final Map<Distribution, List<VersionNumber>> versionsPerDistribution = Map.of(Distribution.ZULU, List.of(VersionNumber.fromText("17.0.1"), VersionNumber.fromText("18-ea+20")));
+        return new CacheGeneration(new HeapPkgCatalog(pkgs), majorVersions, versionsPerDistribution, Instant.now().truncatedTo(ChronoUnit.MILLIS));
+    }
+
+    static void assertCatalogEquals(final List<Pkg> expected, final PkgCatalog catalog) {
+        assertEquals(expected.size(), catalog.size());
+        final Map<String, Pkg> expectedById = expected.stream().collect(Collectors.toMap(Pkg::getId, Function.identity()));
+        for (int i = 0; i < catalog.size(); i++) {
+            final Pkg pkg         = catalog.getPkg(i);
+            final Pkg expectedPkg = expectedById.get(pkg.getId());
+            assertNotNull(pkg.getId(), expectedPkg);
+            assertEquals(expectedPkg, pkg);
+            assertEquals(expectedPkg.getFileName(), pkg.getFileName());
+            assertEquals(expectedPkg.isDirectlyDownloadable(), pkg.isDirectlyDownloadable());
+            assertEquals(expectedPkg.getMajorVersion().getAsInt(), pkg.getMajorVersion().getAsInt());
+            assertEquals(expectedPkg.getLibCType(), pkg.getLibCType());
+            assertEquals(expectedPkg.getEphemeralId(), catalog.getEphemeralId(i));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.TestPkgs;
+import io.foojay.api.discoclient.pkg.Pkg;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class CatalogDeltaTest {
+
+    @Test public void countsChanges() {
+        final List<Pkg>    current = TestPkgs.create(1000, 3);
+        final CatalogDelta delta   = CatalogDelta.compute(new HeapPkgCatalog(current), fetched(current));
+        assertEquals(10, delta.getAdded());
+        assertEquals(50, delta.getChanged());
+        assertEquals(100, delta.getRemoved());
+        assertEquals(910, delta.size());
+        assertEquals(60, delta.getPkgs().size());
+    }
+
+    @Test public void emptyDeltaKeepsCatalog() {
+        final List<Pkg>      current = TestPkgs.create(500, 4);
+        final HeapPkgCatalog catalog = new HeapPkgCatalog(current);
+        final CatalogDelta   delta   = CatalogDelta.compute(catalog, new ArrayList<>(current));
+        assertTrue(delta.isEmpty());
+        assertSame(catalog, PkgCatalog.of(catalog, delta, CatalogStorage.HEAP));
+    }
+
+    @Test public void mergeEqualsRebuild() {
+        final List<Pkg>  current  = TestPkgs.create(1000, 5);
+        final List<Pkg>  fetched  = fetched(current);
+        final PkgCatalog expected = new HeapPkgCatalog(fetched);
+        for (CatalogStorage from : new CatalogStorage[] { CatalogStorage.HEAP, CatalogStorage.DIRECT, CatalogStorage.MAPPED }) {
+            for (CatalogStorage to : new CatalogStorage[] { CatalogStorage.HEAP, CatalogStorage.DIRECT, CatalogStorage.MAPPED }) {
+                final PkgCatalog   catalog = PkgCatalog.of(current, from);
+                final CatalogDelta delta   = CatalogDelta.compute(catalog, fetched);
+                final PkgCatalog   merged  = PkgCatalog.of(catalog, delta, to);
+                assertEquals(from + " -> " + to, expected.size(), merged.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.getId(i), merged.getId(i));
+                    assertEquals(expected.getEphemeralId(i), merged.getEphemeralId(i));
+                    assertEquals(expected.getVersionKey(i), merged.getVersionKey(i));
+                    assertEquals(expected.getContentHash(i), merged.getContentHash(i));
+                    assertEquals(expected.getPkg(i), merged.getPkg(i));
+                }
+                merged.close();
+                catalog.close();
+            }
+        }
+    }
+
+
+    // Removes every 10th package, changes the ephemeral id of every 20th remaining one and adds 10 new packages
+    private static List<Pkg> fetched(final List<Pkg> current) {
+        final List<Pkg> fetched = new ArrayList<>();
+        for (int i = 0; i < current.size(); i++) {
+            if (0 == i % 10) { continue; }
+            final Pkg pkg = current.get(i);
+            fetched.add(1 == i % 20 ? new Pkg(pkg.getId(), pkg.getDistribution(), pkg.getMajorVersion(), pkg.getJavaVersion(), pkg.getDistributionVersion(),
+                                              pkg.isLatestBuildAvailable(), pkg.getArchitecture(), pkg.getOperatingSystem(), pkg.getLibCType(), pkg.getPackageType(),
+                                              pkg.getReleaseStatus(), pkg.getArchiveType(), pkg.getTermOfSupport(), pkg.isJavaFXBundled(), pkg.isDirectlyDownloadable(),
+                                              pkg.getFileName(), pkg.getEphemeralId() + "x")
+                                    : pkg);
+        }
+        fetched.addAll(TestPkgs.create(10, 6).stream().map(pkg -> TestPkgs.create("new-" + pkg.getId(), pkg.getEphemeralId(), "zulu", "17.0.1", "linux", "glibc", "x64", "jdk",
+                                                                                     "tar.gz", false, true, false))
+                                         .collect(Collectors.toList()));
+        return fetched;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.TestPkgs;
+import io.foojay.api.discoclient.pkg.Pkg;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class OffHeapPkgCatalogTest {
+
+    @Test public void matchesHeapCatalog() {
+        final List<Pkg>      pkgs = TestPkgs.create(1000, 1);
+        final HeapPkgCatalog heap = new HeapPkgCatalog(pkgs);
+        for (OffHeapPkgCatalog offHeap : new OffHeapPkgCatalog[] { OffHeapPkgCatalog.allocateDirect(pkgs), OffHeapPkgCatalog.mapToTempFile(pkgs),
+                                                                   OffHeapPkgCatalog.wrap(OffHeapPkgCatalog.encode(pkgs, ByteBuffer::allocate)) }) {
+            assertEquals(heap.size(), offHeap.size());
+            for (int i = 0; i < heap.size(); i++) {
+                assertEquals(heap.getId(i), offHeap.getId(i));
+                assertEquals(heap.getEphemeralId(i), offHeap.getEphemeralId(i));
+                assertEquals(heap.getDistribution(i), offHeap.getDistribution(i));
+                assertEquals(heap.getOperatingSystem(i), offHeap.getOperatingSystem(i));
+                assertEquals(heap.getLibCType(i), offHeap.getLibCType(i));
+                assertEquals(heap.getArchitecture(i), offHeap.getArchitecture(i));
+                assertEquals(heap.getArchiveType(i), offHeap.getArchiveType(i));
+                assertEquals(heap.getPackageType(i), offHeap.getPackageType(i));
+                assertEquals(heap.getReleaseStatus(i), offHeap.getReleaseStatus(i));
+                assertEquals(heap.getTermOfSupport(i), offHeap.getTermOfSupport(i));
+                assertEquals(heap.isJavaFXBundled(i), offHeap.isJavaFXBundled(i));
+                assertEquals(heap.isDirectlyDownloadable(i), offHeap.isDirectlyDownloadable(i));
+                assertEquals(heap.isLatestBuildAvailable(i), offHeap.isLatestBuildAvailable(i));
+                assertEquals(heap.getVersionKey(i), offHeap.getVersionKey(i));
+                assertEquals(heap.getContentHash(i), offHeap.getContentHash(i));
+            }
+            CacheSnapshotFileTest.assertCatalogEquals(pkgs, offHeap);
+            offHeap.close();
+        }
+    }
+
+    @Test public void roundTripsMajorVersion() {
+        final Pkg               pkg     = TestPkgs.create("id", "e", "zulu", "8.0.312+7", "linux", "glibc", "x64", "jdk", "tar.gz", false, true, false);
+        final OffHeapPkgCatalog catalog = OffHeapPkgCatalog.allocateDirect(List.of(pkg));
+        assertEquals(8, catalog.getPkg(0).getMajorVersion().getAsInt());
+        assertEquals(pkg.getMajorVersion().getTermOfSupport(), catalog.getPkg(0).getMajorVersion().getTermOfSupport());
+        catalog.close();
+    }
+}
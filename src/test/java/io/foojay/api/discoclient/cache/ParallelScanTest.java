@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ParallelScanTest {
+
+    @Test public void matchesSequentialScan() {
+        final Random       random  = new Random(31);
+        final int[]        keys    = random.ints(50_000, 0, 100).toArray(); // many ties to check that the sort is stable
+        final Set<String>  threads = ConcurrentHashMap.newKeySet();
+        final IntPredicate even    = i -> {
+            threads.add(Thread.currentThread().getName());
+            return keys[i] % 2 == 0;
+        };
+        final Comparator<Integer> byKey      = Comparator.comparingInt(i -> keys[i]);
+        final int[]               candidates = IntStream.range(0, keys.length).filter(i -> random.nextBoolean()).toArray();
+        try (ParallelScan scan = new ParallelScan(4, 1000)) {
+            assertTrue(scan.isParallel(1000));
+            assertFalse(scan.isParallel(999));
+            assertArrayEquals(ParallelScan.SEQUENTIAL.filter(0, keys.length, even), scan.filter(0, keys.length, even));
+            assertArrayEquals(ParallelScan.SEQUENTIAL.filter(candidates, even), scan.filter(candidates, even));
+            assertArrayEquals(ParallelScan.SEQUENTIAL.sort(candidates, byKey), scan.sort(candidates, byKey));
+            assertArrayEquals(ParallelScan.SEQUENTIAL.filter(0, 500, even), scan.filter(0, 500, even));
+        }
+        assertTrue(threads.toString(), threads.stream().anyMatch(name -> name.startsWith("discoclient-scan-")));
+    }
+
+    @Test public void runsOnCallingThreadAfterClose() {
+        final ParallelScan scan = new ParallelScan(4, 10);
+        scan.close();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final int[]       result  = scan.filter(0, 10_000, i -> {
+            threads.add(Thread.currentThread().getName());
+            return i % 3 == 0;
+        });
+        assertArrayEquals(IntStream.range(0, 10_000).filter(i -> i % 3 == 0).toArray(), result);
+        assertTrue(threads.toString(), threads.stream().noneMatch(name -> name.startsWith("discoclient-scan-")));
+        assertArrayEquals(new int[] { 2, 0, 1 }, scan.sort(new int[] { 0, 1, 2 }, Comparator.comparingInt(i -> 0 == i ? 1 : 2 == i ? 0 : 1)));
+    }
+
+    @Test public void sequentialWithoutThreshold() {
+        try (ParallelScan scan = new ParallelScan(4, 0)) { assertFalse(scan.isParallel(Integer.MAX_VALUE)); }
+        assertFalse(ParallelScan.SEQUENTIAL.isParallel(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class QueryResultCacheTest {
+
+    @Test public void cachesEveryGenerationSeparately() {
+        final QueryResultCache<String, String> cache    = new QueryResultCache<>(16);
+        final CacheGeneration                  previous = createGeneration();
+        final CacheGeneration                  current  = createGeneration();
+        assertEquals("current", cache.get(current, "query", () -> "current"));
+        assertEquals("previous", cache.get(previous, "query", () -> "previous"));
+        assertEquals("previous", cache.get(previous, "query", () -> "recomputed"));
+        assertEquals("current", cache.get(current, "query", () -> "recomputed"));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals("previous", cache.peek(previous, "query"));
+    }
+
+    @Test public void dropsGenerationsOlderThanThePreviousOne() {
+        final QueryResultCache<String, String> cache  = new QueryResultCache<>(16);
+        final CacheGeneration                  first  = createGeneration();
+        final CacheGeneration                  second = createGeneration();
+        final CacheGeneration                  third  = createGeneration();
+        cache.get(first, "query", () -> "first");
+        cache.get(second, "query", () -> "second");
+        cache.get(third, "query", () -> "third");
+        assertNull(cache.peek(first, "query"));
+        assertEquals("second", cache.peek(second, "query"));
+        assertEquals("third", cache.peek(third, "query"));
+    }
+
+    @Test public void evictsLeastRecentlyUsed() {
+        final QueryResultCache<Integer, Integer> cache      = new QueryResultCache<>(2);
+        final CacheGeneration                    generation = createGeneration();
+        cache.get(generation, 1, () -> 1);
+        cache.get(generation, 2, () -> 2);
+        cache.get(generation, 1, () -> -1);
+        cache.get(generation, 3, () -> 3);
+        assertEquals(2, cache.size());
+        assertEquals(Integer.valueOf(1), cache.peek(generation, 1));
+        assertNull(cache.peek(generation, 2));
+    }
+
+
+    private static CacheGeneration createGeneration() { return new CacheGeneration(HeapPkgCatalog.EMPTY, List.of(), Map.of(), Instant.now()); }
+}
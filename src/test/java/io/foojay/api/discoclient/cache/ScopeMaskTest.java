@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.Distribution;
+import io.foojay.api.discoclient.pkg.Scope;
+import io.foojay.api.discoclient.util.Constants;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class ScopeMaskTest {
+
+    @Test public void matchesScopeLookupForEveryScope() {
+        for (Scope scope : Scope.values()) {
+            final long mask = ScopeMask.distributionsInScope(List.of(scope));
+            for (Distribution distribution : Distribution.values()) {
+                assertEquals(scope + " " + distribution, inScope(distribution, Set.of(scope)), ScopeMask.contains(mask, distribution));
+            }
+        }
+    }
+
+    @Test public void matchesScopeLookupForEveryPairOfScopes() {
+        for (Scope first : Scope.values()) {
+            for (Scope second : Scope.values()) {
+                final long mask = ScopeMask.distributionsInScope(List.of(first, second));
+                for (Distribution distribution : Distribution.values()) {
+                    assertEquals(first + " " + second + " " + distribution, inScope(distribution, EnumSet.of(first, second)), ScopeMask.contains(mask, distribution));
+                }
+            }
+        }
+    }
+
+    @Test public void matchesScopesOfEveryDistribution() {
+        for (Distribution distribution : Distribution.values()) {
+            final Set<Scope> scopes = EnumSet.noneOf(Scope.class);
+            scopes.addAll(Constants.SCOPE_LOOKUP.getOrDefault(distribution, List.of()));
+            assertEquals(distribution.name(), ScopeMask.of(scopes), ScopeMask.of(distribution));
+        }
+        assertEquals(0, ScopeMask.of((Distribution) null));
+        assertEquals(0, ScopeMask.distributionsInScope(List.of()));
+    }
+
+
+    private static boolean inScope(final Distribution distribution, final Set<Scope> scopes) {
+        return Constants.SCOPE_LOOKUP.getOrDefault(distribution, List.of()).stream().anyMatch(scopes::contains);
+    }
+}
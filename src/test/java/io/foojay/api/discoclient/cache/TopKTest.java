@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class TopKTest {
+
+    @Test public void selectsLikeFullSort() {
+        final Random random = new Random(5);
+        for (int run = 0; run < 500; run++) {
+            final int    n      = random.nextInt(300);
+            final long[] keys   = random.longs(n, 0, 1 + random.nextInt(40)).toArray(); // few distinct keys, many ties
+            final long[] ranks  = random.longs(n).toArray();
+            final long[] groups = random.longs(n, 0, 1 + random.nextInt(5)).toArray();
+            final int[]  values = IntStream.range(0, n).map(i -> n - 1 - i).toArray();
+            final int    k      = 1 + random.nextInt(20);
+            final Comparator<Integer> best = Comparator.comparingLong((Integer i) -> keys[i]).reversed().thenComparingLong(i -> ranks[i]);
+
+            final int[] expected = Arrays.stream(values).boxed().sorted(best).limit(k).mapToInt(Integer::intValue).toArray();
+            final int[] selected = TopK.select(values, i -> keys[i], i -> ranks[i], null, k);
+            assertArrayEquals(n <= k ? values : expected, selected);
+
+            final Map<Long, List<Integer>> byGroup = new LinkedHashMap<>();
+            for (int value : values) { byGroup.computeIfAbsent(groups[value], g -> new ArrayList<>()).add(value); }
+            final int[] expectedGroups = byGroup.values().stream().flatMap(group -> group.stream().sorted(best).limit(k)).mapToInt(Integer::intValue).toArray();
+            final int[] selectedGroups = TopK.select(values, i -> keys[i], i -> ranks[i], i -> groups[i], k);
+            if (n > k) { assertArrayEquals(expectedGroups, selectedGroups); }
+        }
+    }
+
+    @Test public void keepsOnlyBetterValuesWhenFull() {
+        final TopK topK = new TopK(2);
+        assertTrue(topK.isEmpty());
+        assertEquals(VersionKey.NONE, topK.getMaxKey());
+        assertTrue(topK.offer(10, 0, 1));
+        assertTrue(topK.offer(20, 0, 2));
+        assertFalse(topK.offer(5, 0, 3));
+        assertFalse(topK.offer(10, 1, 4));
+        assertTrue(topK.offer(10, -1, 5));
+        assertEquals(2, topK.size());
+        assertEquals(20, topK.getMaxKey());
+        assertArrayEquals(new int[] { 2, 5 }, topK.toArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void rejectsEmptySelection() { new TopK(0); }
+}
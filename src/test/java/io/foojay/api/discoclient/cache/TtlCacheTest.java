@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class TtlCacheTest {
+
+    @Test public void distinguishesHitNegativeAndMiss() {
+        final TtlCache<String, String> cache = new TtlCache<>(16, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        cache.put("hit", "value");
+        cache.put("negative", null);
+
+        final TtlCache.Lookup<String> hit = cache.get("hit");
+        assertTrue(hit.isHit());
+        assertTrue(hit.isCached());
+        assertEquals("value", hit.getValue());
+
+        final TtlCache.Lookup<String> negative = cache.get("negative");
+        assertTrue(negative.isNegative());
+        assertTrue(negative.isCached());
+        assertFalse(negative.isHit());
+        assertNull(negative.getValue());
+
+        final TtlCache.Lookup<String> miss = cache.get("unknown");
+        assertTrue(miss.isMiss());
+        assertFalse(miss.isCached());
+        assertNull(miss.getValue());
+    }
+
+    @Test public void expiresEntries() throws InterruptedException {
+        final TtlCache<String, String> cache = new TtlCache<>(16, Duration.ofMinutes(1), Duration.ofMillis(1));
+        cache.put("hit", "value");
+        cache.put("negative", null);
+        Thread.sleep(5);
+        assertTrue(cache.get("hit").isHit());
+        assertTrue(cache.get("negative").isMiss());
+        assertEquals(1, cache.size());
+    }
+
+    @Test public void staysWithinMaxEntries() {
+        final TtlCache<Integer, Integer> cache = new TtlCache<>(10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        for (int i = 0; i < 100; i++) { cache.put(i, i); }
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.get(99).isHit());
+
+        final TtlCache<Integer, Integer> disabled = new TtlCache<>(0, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        disabled.put(1, 1);
+        assertTrue(disabled.get(1).isMiss());
+    }
+}
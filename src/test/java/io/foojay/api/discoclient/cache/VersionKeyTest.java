@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021, Azul
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer
+ *   in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Azul nor the names of its contributors may be used to endorse or promote products derived
+ *   from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL AZUL BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY,
+ * OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.foojay.api.discoclient.cache;
+
+import io.foojay.api.discoclient.pkg.VersionNumber;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class VersionKeyTest {
+    private static final List<String> VERSIONS = List.of("6", "7.0.321", "8.0.312", "8.0.312+7", "11", "11.0.2", "11.0.13", "11.0.14.1", "11.0.14.1.2", "17-ea", "17-ea+3",
+                                                         "17-ea+35", "17", "17.0.1", "17.0.2-ea+1", "17.0.2-ea+8", "17.0.2", "18-ea", "18-ea+3", "18-ea+20", "18",
+                                                         "18.0.1-ea+3", "18.0.1", "18.0.1.1", "19-ea+1", "19-ea+40", "19");
+
+
+    @Test public void ordersLikeCompareTo() {
+        for (String a : VERSIONS) {
+            for (String b : VERSIONS) {
+                final VersionNumber versionA = VersionNumber.fromText(a);
+                final VersionNumber versionB = VersionNumber.fromText(b);
+                final long          keyA     = VersionKey.of(versionA);
+                final long          keyB     = VersionKey.of(versionB);
+                final int           expected = Integer.signum(versionA.compareTo(versionB));
+                if (0 == expected) {
+                    // compareTo treats a GA release as equal to its early access builds
+                    final boolean equalRange = keyA == keyB || (VersionKey.isGa(keyA) && keyB >= VersionKey.equalMin(keyA) && keyB < keyA) ||
+                                               (VersionKey.isGa(keyB) && keyA >= VersionKey.equalMin(keyB) && keyA < keyB);
+                    assertTrue(a + " = " + b, equalRange);
+                } else {
+                    assertEquals(a + " <> " + b, expected, Long.signum(Long.compare(keyA, keyB)));
+                }
+            }
+        }
+    }
+
+    @Test public void ordersEarlyAccessBeforeGa() {
+        final List<String> ordered = List.of("17.0.2", "18-ea", "18-ea+3", "18-ea+20", "18", "18.0.1-ea+3", "18.0.1");
+        for (int i = 1; i < ordered.size(); i++) {
+            assertTrue(ordered.get(i - 1) + " < " + ordered.get(i), VersionKey.of(VersionNumber.fromText(ordered.get(i - 1))) < VersionKey.of(VersionNumber.fromText(ordered.get(i))));
+        }
+    }
+
+    @Test public void equalMinCoversEarlyAccessBuilds() {
+        final long ga = VersionKey.of(VersionNumber.fromText("18"));
+        assertTrue(VersionKey.isGa(ga));
+        assertFalse(VersionKey.isGa(VersionKey.of(VersionNumber.fromText("18-ea+20"))));
+        assertEquals(VersionKey.of(VersionNumber.fromText("18-ea")), VersionKey.equalMin(ga));
+        final long ea = VersionKey.of(VersionNumber.fromText("18-ea+20"));
+        assertEquals(ea, VersionKey.equalMin(ea));
+        assertTrue(VersionKey.of(VersionNumber.fromText("17.0.2")) < VersionKey.equalMin(ga));
+    }
+
+    @Test public void decodesComponents() {
+        final long key = VersionKey.of(VersionNumber.fromText("11.0.14.1.2"));
+        assertEquals(11, VersionKey.feature(key));
+        assertEquals(0, VersionKey.interim(key));
+        assertEquals(14, VersionKey.update(key));
+        assertEquals(1, VersionKey.patch(key));
+        assertEquals(2, VersionKey.fifth(key));
+        assertEquals(18, VersionKey.preBuild(VersionKey.of(VersionNumber.fromText("17-ea+17"))));
+        assertTrue(VersionKey.prefixMax(VersionKey.of(VersionNumber.fromText("17")), 1) < VersionKey.of(VersionNumber.fromText("18-ea")));
+        assertTrue(VersionKey.prefixMax(VersionKey.of(VersionNumber.fromText("17.0")), 2) > VersionKey.of(VersionNumber.fromText("17.0.14.1")));
+    }
+}